@@ -0,0 +1,213 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Location;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Villager;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Builds a plugin instance and lightweight stand-ins for server objects
+ * 
+ * JavaPlugin refuses to be constructed outside a plugin class loader, so the
+ * plugin is allocated without running its constructor and wired up by hand
+ * from the bundled config.yml. Worlds, villagers and their persistent data
+ * containers are dynamic proxies that answer the handful of calls the
+ * naming path makes; anything else returns a default value.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class BenchmarkFixtures {
+    
+    private BenchmarkFixtures() {
+    }
+    
+    /**
+     * Creates a plugin with all naming components but no scheduled tasks
+     * 
+     * @param overrides Config values to replace, by path
+     * @param dataFolder Folder for the name registry
+     * @return The plugin
+     */
+    static NamedVillagers createPlugin(Map<String, Object> overrides, File dataFolder) throws Exception {
+        return createPlugin(overrides, dataFolder, new StandInScheduler(0));
+    }
+    
+    /**
+     * Creates a plugin whose tasks go through the given scheduler
+     * 
+     * @param overrides Config values to replace, by path
+     * @param dataFolder Folder for the name registry
+     * @param scheduler The scheduler stand-in
+     * @return The plugin
+     */
+    static NamedVillagers createPlugin(Map<String, Object> overrides, File dataFolder, TaskScheduler scheduler)
+            throws Exception {
+        NamedVillagers plugin = (NamedVillagers) unsafe().allocateInstance(NamedVillagers.class);
+        setField(NamedVillagers.class, null, "customNameKey", new NamespacedKey("namedvillagers", "custom_name"));
+        setField(NamedVillagers.class, null, "componentsKey", new NamespacedKey("namedvillagers", "name_components"));
+        setField(NamedVillagers.class, null, "nameDataKey", new NamespacedKey("namedvillagers", "name"));
+        setField(JavaPlugin.class, plugin, "dataFolder", dataFolder);
+        setField(NamedVillagers.class, plugin, "taskScheduler", scheduler);
+        
+        YamlConfiguration config;
+        try (InputStreamReader reader = new InputStreamReader(
+                NamedVillagers.class.getResourceAsStream("/config.yml"), StandardCharsets.UTF_8)) {
+            config = YamlConfiguration.loadConfiguration(reader);
+        }
+        for (Map.Entry<String, Object> override : overrides.entrySet()) {
+            config.set(override.getKey(), override.getValue());
+        }
+        
+        setField(NamedVillagers.class, plugin, "namePoolIds", new NamePoolIds(plugin));
+        setField(NamedVillagers.class, plugin, "configManager", new ConfigManager(plugin, config));
+        setField(NamedVillagers.class, plugin, "metrics", new PluginMetrics(plugin));
+        setField(NamedVillagers.class, plugin, "nameGenerator", new NameGenerator(plugin));
+        setField(NamedVillagers.class, plugin, "nameSupply", new NameSupply(plugin));
+        setField(NamedVillagers.class, plugin, "uniquenessIndex", new NameUniquenessIndex());
+        setField(NamedVillagers.class, plugin, "familyIndex", new FamilyIndex());
+        setField(NamedVillagers.class, plugin, "nameStore", new NameStore(plugin));
+        setField(NamedVillagers.class, plugin, "nameRegistry", new NameRegistry(plugin));
+        setField(NamedVillagers.class, plugin, "nameHistory", new NameHistory(plugin));
+        setField(NamedVillagers.class, plugin, "namingQueue", new NamingQueue(plugin));
+        setField(NamedVillagers.class, plugin, "nametagManager", new NametagManager(plugin));
+        setField(NamedVillagers.class, plugin, "bypassTracker", new BypassTracker(plugin));
+        return plugin;
+    }
+    
+    /**
+     * Creates a world stand-in where every block has the same biome
+     * 
+     * @param name The world name
+     * @param biome The biome
+     * @return The world
+     */
+    static World world(String name, Biome biome) {
+        UUID id = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("getName", name);
+        answers.put("getUID", id);
+        answers.put("getSeed", 42L);
+        answers.put("getBiome", biome);
+        answers.put("getFullTime", 0L);
+        answers.put("getPlayers", Collections.emptyList());
+        return standIn(World.class, answers);
+    }
+    
+    /**
+     * Creates a villager stand-in with an empty persistent data container
+     * 
+     * @param world The world the villager stands in
+     * @param profession The profession
+     * @param level The level
+     * @param data Backing map of the villager's persistent data
+     * @return The villager
+     */
+    static Villager villager(World world, Villager.Profession profession, int level, Map<NamespacedKey, Object> data) {
+        Location location = new Location(world, 0, 64, 0);
+        String[] customName = new String[1];
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("getType", EntityType.VILLAGER);
+        answers.put("getUniqueId", UUID.randomUUID());
+        answers.put("getProfession", profession);
+        answers.put("getVillagerLevel", level);
+        answers.put("getLocation", location);
+        answers.put("getWorld", world);
+        answers.put("isValid", true);
+        answers.put("getPersistentDataContainer", container(data));
+        answers.put("setCustomName", (Answer) args -> customName[0] = (String) args[0]);
+        answers.put("getCustomName", (Answer) args -> customName[0]);
+        return standIn(Villager.class, answers);
+    }
+    
+    /**
+     * Creates a persistent data container stand-in backed by a map
+     */
+    private static PersistentDataContainer container(Map<NamespacedKey, Object> data) {
+        Map<String, Object> answers = new HashMap<>();
+        answers.put("set", (Answer) args -> data.put((NamespacedKey) args[0], args[2]));
+        answers.put("get", (Answer) args -> data.get((NamespacedKey) args[0]));
+        answers.put("has", (Answer) args -> data.containsKey((NamespacedKey) args[0]));
+        answers.put("remove", (Answer) args -> data.remove((NamespacedKey) args[0]));
+        return standIn(PersistentDataContainer.class, answers);
+    }
+    
+    /**
+     * Creates a proxy answering calls by method name
+     * 
+     * Values are returned as is, Answer values are invoked with the call's
+     * arguments, and unknown methods return null, false or zero.
+     */
+    private static <T> T standIn(Class<T> type, Map<String, Object> answers) {
+        Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, (self, method, args) -> {
+            Object answer = answers.get(method.getName());
+            if (answer instanceof Answer) {
+                return ((Answer) answer).apply(args);
+            }
+            if (answer != null) {
+                return answer;
+            }
+            
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(self);
+                case "equals":
+                    return self == args[0];
+                case "toString":
+                    return type.getSimpleName();
+                default:
+                    break;
+            }
+            
+            Class<?> returnType = method.getReturnType();
+            if (returnType == boolean.class) {
+                return false;
+            }
+            if (returnType.isPrimitive() && returnType != void.class) {
+                return returnType == long.class ? (Object) 0L : returnType == double.class ? (Object) 0.0 : (Object) 0;
+            }
+            return null;
+        });
+        return type.cast(proxy);
+    }
+    
+    /**
+     * Sets a field that has no setter
+     */
+    private static void setField(Class<?> owner, Object target, String name, Object value) throws Exception {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+    
+    /**
+     * Gets the Unsafe instance used to skip the JavaPlugin constructor
+     */
+    private static sun.misc.Unsafe unsafe() throws Exception {
+        Field field = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+        field.setAccessible(true);
+        return (sun.misc.Unsafe) field.get(null);
+    }
+    
+    /**
+     * A computed stand-in answer
+     */
+    private interface Answer {
+        Object apply(Object[] args);
+    }
+}
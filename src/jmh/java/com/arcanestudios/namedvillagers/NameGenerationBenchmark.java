@@ -0,0 +1,103 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.entity.Villager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures name generation under each format and generator mode
+ * 
+ * The name supply is disabled so every call draws and renders a fresh name.
+ * In markov mode every first and last name is walked out of a trained model,
+ * so the two modes show what invented names cost over picked ones. The batch
+ * benchmark names a list of contexts through one call, the way other plugins
+ * set up many NPCs at once through the NameService.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameGenerationBenchmark {
+    
+    private static final int VILLAGERS = 64;
+    private static final int BATCH = 1024;
+    private static final Biome[] BIOMES = {Biome.PLAINS, Biome.DESERT, Biome.TAIGA, Biome.JUNGLE, Biome.SNOWY_PLAINS};
+    private static final Villager.Profession[] PROFESSIONS = Villager.Profession.values();
+    
+    @Param({"simple", "titled", "fullname"})
+    public String format;
+    
+    @Param({"list", "markov"})
+    public String mode;
+    
+    private NameGenerator generator;
+    private Villager[] villagers;
+    private int next;
+    private long seed;
+    private List<NameContext> contexts;
+    
+    @Setup
+    public void setup() throws Exception {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("settings.format", format);
+        overrides.put("generator.mode", mode);
+        overrides.put("name-supply.enabled", false);
+        File dataFolder = Files.createTempDirectory("namedvillagers-bench").toFile();
+        NamedVillagers plugin = BenchmarkFixtures.createPlugin(overrides, dataFolder);
+        generator = plugin.getNameGenerator();
+        
+        // Mix professions, levels and biomes so every pool gets used
+        villagers = new Villager[VILLAGERS];
+        for (int i = 0; i < VILLAGERS; i++) {
+            World world = BenchmarkFixtures.world("world", BIOMES[i % BIOMES.length]);
+            villagers[i] = BenchmarkFixtures.villager(world, PROFESSIONS[i % PROFESSIONS.length], 1 + i % 5, new HashMap<>());
+        }
+        
+        contexts = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            contexts.add(new NameContext(PROFESSIONS[i % PROFESSIONS.length], 1 + i % 5, BIOMES[i % BIOMES.length], i));
+        }
+    }
+    
+    @Benchmark
+    public String generateName() {
+        return generator.generateName(villagers[next++ & (VILLAGERS - 1)]);
+    }
+    
+    @Benchmark
+    public String generateNameWithoutEntity() {
+        int i = next++ & (VILLAGERS - 1);
+        return generator.generateName(PROFESSIONS[i % PROFESSIONS.length], 1 + i % 5, BIOMES[i % BIOMES.length], seed++);
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<String> generateNamesBatch() {
+        return generator.generateNames(contexts);
+    }
+}
@@ -0,0 +1,65 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.block.Biome;
+import org.bukkit.entity.Villager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures name pool and biome category lookups
+ * 
+ * Resolves the pools of every profession from the compiled snapshot the
+ * generator uses, and maps every server biome to its category.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolLookupBenchmark {
+    
+    private static final Villager.Profession[] PROFESSIONS = Villager.Profession.values();
+    private static final Biome[] BIOMES = Biome.values();
+    
+    private NamePoolSnapshot snapshot;
+    
+    @Setup
+    public void setup() throws Exception {
+        NamedVillagers plugin = BenchmarkFixtures.createPlugin(Collections.emptyMap(),
+            Files.createTempDirectory("namedvillagers-bench").toFile());
+        snapshot = plugin.getConfigManager().getSnapshot();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(15)
+    public void snapshotPools(Blackhole blackhole) {
+        for (int profession = 0; profession < PROFESSIONS.length; profession++) {
+            blackhole.consume(snapshot.getFirstNames(0, profession));
+        }
+    }
+    
+    @Benchmark
+    public void biomeCategoryAllBiomes(Blackhole blackhole) {
+        for (Biome biome : BIOMES) {
+            blackhole.consume(snapshot.getBiomeCategory(biome));
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.arcanestudios.namedvillagers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures drawing an index from uniform and weighted pools
+ * 
+ * Weighted pools sample through their alias table and should stay level
+ * with uniform ones however large the pool grows.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolSamplingBenchmark {
+    
+    @Param({"16", "10000", "100000"})
+    public int size;
+    
+    @Param({"false", "true"})
+    public boolean weighted;
+    
+    private NamePool pool;
+    private NameRandom random;
+    
+    @Setup
+    public void setup() {
+        String[] names = new String[size];
+        double[] weights = new double[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = "Name" + i;
+            weights[i] = 1 + i % 17;
+        }
+        pool = new NamePool(0, names, weighted ? weights : null);
+        random = new NameRandom(42L);
+    }
+    
+    @Benchmark
+    public int sample() {
+        return pool.sample(random);
+    }
+}
@@ -0,0 +1,222 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.entity.Villager;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress-tests the spawn path on a simulated region-threaded server
+ * 
+ * Every benchmark thread plays a region firing spawn events, and all of them
+ * drain the shared queue, which hands the requests to stand-in region threads
+ * that generate and apply the names in parallel. Unique names are on, so the
+ * uniqueness index, registry and metrics all see concurrent writers.
+ * 
+ * After every iteration the run is checked for correctness, and fails on
+ * an exception on a region thread, a queued request that was never served,
+ * a villager left unnamed, two villagers sharing a full name, or a villager
+ * tracked more or less than once by the uniqueness index. A batch that
+ * stays unnamed for ten seconds also fails, rather than spinning forever.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RegionSchedulingBenchmark {
+    
+    private static final int BATCH = 64;
+    private static final long NAMING_TIMEOUT = TimeUnit.SECONDS.toNanos(10);
+    
+    @Param({"1", "4"})
+    public int regions;
+    
+    private NamedVillagers plugin;
+    private VillagerListener listener;
+    private StandInScheduler scheduler;
+    private World world;
+    private final AtomicInteger villagers = new AtomicInteger();
+    private final Queue<Spawner> spawners = new ConcurrentLinkedQueue<>();
+    
+    @Setup
+    public void setup() throws Exception {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("name-supply.enabled", false);
+        overrides.put("uniqueness.enabled", true);
+        // The shipped plains lists only make 48 full names; with 1024 and 64 attempts a
+        // duplicate can only come from a race, not from running out of candidates
+        overrides.put("settings.format", "fullname");
+        overrides.put("uniqueness.max-attempts", 64);
+        overrides.put("biomes.plains.first", names("First", 32));
+        overrides.put("biomes.plains.last", names("Last", 32));
+        overrides.put("naming-queue.tick-budget-micros", Integer.MAX_VALUE);
+        File dataFolder = Files.createTempDirectory("namedvillagers-bench").toFile();
+        scheduler = new StandInScheduler(regions);
+        plugin = BenchmarkFixtures.createPlugin(overrides, dataFolder, scheduler);
+        plugin.getNameRegistry().open();
+        listener = new VillagerListener(plugin);
+        world = BenchmarkFixtures.world("world", Biome.PLAINS);
+    }
+    
+    /**
+     * Checks the state every thread left behind once all region work is done
+     */
+    @TearDown(Level.Iteration)
+    public void verify() {
+        scheduler.awaitIdle();
+        
+        Throwable failure = scheduler.getFailures().peek();
+        if (failure != null) {
+            throw new IllegalStateException(scheduler.getFailures().size() + " region tasks failed", failure);
+        }
+        
+        NamingQueue queue = plugin.getNamingQueue();
+        if (queue.size() != 0 || queue.getDropped() != 0) {
+            throw new IllegalStateException(queue.size() + " requests left queued and " + queue.getDropped()
+                + " dropped");
+        }
+        
+        Map<String, Villager> owners = new HashMap<>();
+        for (Spawner spawner : spawners) {
+            for (Villager villager : spawner.villagers) {
+                String name = plugin.getNameStore().getStoredName(villager);
+                if (name == null) {
+                    throw new IllegalStateException("Villager " + villager.getUniqueId() + " was never named");
+                }
+                Villager owner = owners.putIfAbsent(name, villager);
+                if (owner != null) {
+                    throw new IllegalStateException("Villagers " + owner.getUniqueId() + " and "
+                        + villager.getUniqueId() + " are both named " + name);
+                }
+            }
+        }
+        
+        int tracked = plugin.getUniquenessIndex().size();
+        if (tracked != villagers.get()) {
+            throw new IllegalStateException("Uniqueness index tracks " + tracked + " of " + villagers.get() + " villagers");
+        }
+    }
+    
+    @TearDown
+    public void tearDown() {
+        verify();
+        scheduler.close();
+        plugin.getNameRegistry().close();
+    }
+    
+    /**
+     * Makes a list of distinct names
+     */
+    private static List<String> names(String stem, int count) {
+        List<String> names = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            names.add(stem + i);
+        }
+        return names;
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int spawnAndName(Spawner spawner) {
+        for (CreatureSpawnEvent event : spawner.events) {
+            listener.onVillagerSpawn(event);
+        }
+        
+        // Other threads may be serving this batch too; keep draining until all of it is named
+        NamingQueue queue = plugin.getNamingQueue();
+        long deadline = System.nanoTime() + NAMING_TIMEOUT;
+        while (!spawner.isNamed()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalStateException("Batch still unnamed after ten seconds, requests were lost");
+            }
+            queue.drain();
+            Thread.onSpinWait();
+        }
+        return queue.size();
+    }
+    
+    /**
+     * The villagers one benchmark thread spawns, unnamed again before each invocation
+     */
+    @State(Scope.Thread)
+    public static class Spawner {
+        
+        private CreatureSpawnEvent[] events;
+        private Villager[] villagers;
+        private Map<NamespacedKey, Object>[] containers;
+        private RegionSchedulingBenchmark benchmark;
+        
+        @Setup
+        @SuppressWarnings("unchecked")
+        public void setup(RegionSchedulingBenchmark benchmark) {
+            this.benchmark = benchmark;
+            Villager.Profession[] professions = Villager.Profession.values();
+            events = new CreatureSpawnEvent[BATCH];
+            villagers = new Villager[BATCH];
+            containers = new Map[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                // Written on region threads and read here, so the data must be safely shared
+                containers[i] = new ConcurrentHashMap<>();
+                villagers[i] = BenchmarkFixtures.villager(benchmark.world, professions[i % professions.length], 1,
+                    containers[i]);
+                events[i] = new CreatureSpawnEvent(villagers[i], CreatureSpawnEvent.SpawnReason.NATURAL);
+            }
+            benchmark.villagers.addAndGet(BATCH);
+            benchmark.spawners.add(this);
+        }
+        
+        @Setup(Level.Invocation)
+        public void unname() {
+            for (Map<NamespacedKey, Object> container : containers) {
+                container.clear();
+            }
+            benchmark.plugin.getNameRegistry().flush();
+        }
+        
+        /**
+         * Checks if every villager of the batch has a stored name
+         */
+        private boolean isNamed() {
+            for (Map<NamespacedKey, Object> container : containers) {
+                if (container.isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Biome;
+import org.bukkit.entity.Villager;
+import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full spawn path: the spawn handler plus the queue drain that
+ * generates, stores and displays the names
+ * 
+ * Each invocation spawns a batch of unnamed villagers; their persistent data
+ * is cleared and the registry flushed between invocations, outside the
+ * measurement.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpawnHandlerBenchmark {
+    
+    private static final int BATCH = 256;
+    
+    private NamedVillagers plugin;
+    private VillagerListener listener;
+    private CreatureSpawnEvent[] events;
+    private Map<NamespacedKey, Object>[] containers;
+    
+    @Setup
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public void setup() throws Exception {
+        Map<String, Object> overrides = new HashMap<>();
+        overrides.put("name-supply.enabled", false);
+        overrides.put("naming-queue.tick-budget-micros", Integer.MAX_VALUE);
+        File dataFolder = Files.createTempDirectory("namedvillagers-bench").toFile();
+        plugin = BenchmarkFixtures.createPlugin(overrides, dataFolder);
+        plugin.getNameRegistry().open();
+        listener = new VillagerListener(plugin);
+        
+        World world = BenchmarkFixtures.world("world", Biome.PLAINS);
+        Villager.Profession[] professions = Villager.Profession.values();
+        events = new CreatureSpawnEvent[BATCH];
+        containers = new Map[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            containers[i] = new HashMap<>();
+            Villager villager = BenchmarkFixtures.villager(world, professions[i % professions.length], 1, containers[i]);
+            events[i] = new CreatureSpawnEvent(villager, CreatureSpawnEvent.SpawnReason.NATURAL);
+        }
+    }
+    
+    @Setup(Level.Invocation)
+    public void unname() {
+        for (Map<NamespacedKey, Object> container : containers) {
+            container.clear();
+        }
+        plugin.getNameRegistry().flush();
+    }
+    
+    @TearDown
+    public void tearDown() {
+        plugin.getNameRegistry().close();
+    }
+    
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int spawnAndName() {
+        for (CreatureSpawnEvent event : events) {
+            listener.onVillagerSpawn(event);
+        }
+        NamingQueue queue = plugin.getNamingQueue();
+        queue.drain();
+        return queue.size();
+    }
+}
@@ -0,0 +1,151 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scheduler stand-in with a thread per simulated region
+ * 
+ * With no regions every task runs inline on the calling thread, which is
+ * how the single-threaded benchmarks drive the plugin. With regions, each
+ * entity and chunk belongs to one region thread picked by hash, the way a
+ * region-threaded server assigns them, and plugin-wide tasks run on a
+ * separate global thread. Repeating tasks are never started; benchmarks call
+ * the drain methods themselves.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class StandInScheduler implements TaskScheduler {
+    
+    private static final Task NOT_STARTED = () -> { };
+    
+    private final ExecutorService[] regions;
+    private final ExecutorService global;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Creates the scheduler
+     * 
+     * @param regionCount Number of region threads, 0 to run everything inline
+     */
+    StandInScheduler(int regionCount) {
+        this.regions = new ExecutorService[regionCount];
+        for (int i = 0; i < regionCount; i++) {
+            String name = "region-" + i;
+            regions[i] = Executors.newSingleThreadExecutor(task -> daemon(task, name));
+        }
+        this.global = regionCount > 0 ? Executors.newSingleThreadExecutor(task -> daemon(task, "global")) : null;
+    }
+    
+    @Override
+    public void run(Runnable task) {
+        submit(global, task);
+    }
+    
+    @Override
+    public Task runTimer(Runnable task, long delay, long period) {
+        return NOT_STARTED;
+    }
+    
+    @Override
+    public void runAsync(Runnable task) {
+        submit(global, task);
+    }
+    
+    @Override
+    public Task runTimerAsync(Runnable task, long delay, long period) {
+        return NOT_STARTED;
+    }
+    
+    @Override
+    public boolean runFor(Entity entity, Runnable task) {
+        submit(regionOf(entity.getUniqueId().hashCode()), task);
+        return true;
+    }
+    
+    @Override
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        submit(regionOf(31 * chunkX + chunkZ), task);
+    }
+    
+    @Override
+    public boolean isRegionThreaded() {
+        return regions.length > 0;
+    }
+    
+    /**
+     * Waits until every submitted task has finished
+     */
+    void awaitIdle() {
+        while (pending.get() > 0) {
+            Thread.onSpinWait();
+        }
+    }
+    
+    /**
+     * Gets the exceptions thrown by tasks
+     * 
+     * @return The failures, oldest first
+     */
+    Queue<Throwable> getFailures() {
+        return failures;
+    }
+    
+    /**
+     * Stops all threads
+     */
+    void close() {
+        for (ExecutorService region : regions) {
+            region.shutdownNow();
+        }
+        if (global != null) {
+            global.shutdownNow();
+        }
+    }
+    
+    /**
+     * Picks the region thread for a hash
+     */
+    private ExecutorService regionOf(int hash) {
+        return regions.length > 0 ? regions[Math.floorMod(hash, regions.length)] : null;
+    }
+    
+    /**
+     * Runs a task on an executor, or inline without one, recording failures
+     */
+    private void submit(ExecutorService executor, Runnable task) {
+        pending.incrementAndGet();
+        Runnable tracked = () -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                failures.add(e);
+            } finally {
+                pending.decrementAndGet();
+            }
+        };
+        
+        if (executor == null) {
+            tracked.run();
+        } else {
+            executor.execute(tracked);
+        }
+    }
+    
+    /**
+     * Creates a daemon thread so a failed run cannot keep the fork alive
+     */
+    private static Thread daemon(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,155 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.block.Biome;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Precomputed lookup from Biome to name pool category
+ * 
+ * The substring rules from the biome-mappings section are evaluated once per
+ * biome when the configuration is compiled, leaving a plain ordinal-indexed
+ * array for the spawn path.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class BiomeCategoryTable {
+    
+    /** Rules used when config.yml has no biome-mappings section: category, substrings... */
+    private static final String[][] DEFAULT_RULES = {
+        {"desert", "desert"},
+        {"plains", "plains"},
+        {"taiga", "taiga", "forest"},
+        {"jungle", "jungle"},
+        {"swamp", "swamp"},
+        {"savanna", "savanna"},
+        {"snowy", "snow", "frozen", "ice"},
+        {"mountains", "mountain", "peak", "hill"},
+        {"mushroom_fields", "mushroom"}
+    };
+    
+    private static final String DEFAULT_CATEGORY = "plains";
+    private static final Biome[] BIOMES = Biome.values();
+    
+    private final int[] categoryByBiome;
+    
+    private BiomeCategoryTable(int[] categoryByBiome) {
+        this.categoryByBiome = categoryByBiome;
+    }
+    
+    /**
+     * Compiles the biome-mappings section into a lookup table
+     * 
+     * Categories referenced by the mappings are appended to the category list
+     * if they are not already in it.
+     * 
+     * @param mappings The biome-mappings section, or null for the built-in rules
+     * @param categories Known category names, extended in place
+     * @param warnings Receives problems found in the section
+     * @return The compiled table
+     */
+    static BiomeCategoryTable compile(ConfigurationSection mappings, List<String> categories, List<String> warnings) {
+        // Read rules in declaration order; the first matching rule wins
+        List<String> ruleCategories = new ArrayList<>();
+        List<String[]> ruleNeedles = new ArrayList<>();
+        ConfigurationSection rules = mappings != null ? mappings.getConfigurationSection("rules") : null;
+        if (rules != null) {
+            for (String category : rules.getKeys(false)) {
+                List<String> needles = rules.getStringList(category);
+                String[] lowered = new String[needles.size()];
+                for (int i = 0; i < lowered.length; i++) {
+                    lowered[i] = needles.get(i).toLowerCase(Locale.ROOT);
+                }
+                ruleCategories.add(category.toLowerCase(Locale.ROOT));
+                ruleNeedles.add(lowered);
+            }
+        } else {
+            for (String[] rule : DEFAULT_RULES) {
+                ruleCategories.add(rule[0]);
+                String[] needles = new String[rule.length - 1];
+                System.arraycopy(rule, 1, needles, 0, needles.length);
+                ruleNeedles.add(needles);
+            }
+        }
+        
+        String fallback = mappings != null
+            ? mappings.getString("default", DEFAULT_CATEGORY).toLowerCase(Locale.ROOT)
+            : DEFAULT_CATEGORY;
+        int fallbackIndex = indexOf(categories, fallback);
+        
+        int[] table = new int[BIOMES.length];
+        for (Biome biome : BIOMES) {
+            String biomeName = biome.name().toLowerCase(Locale.ROOT);
+            int category = fallbackIndex;
+            
+            // First matching rule wins, even when it names the fallback category
+            boolean matched = false;
+            for (int rule = 0; rule < ruleCategories.size() && !matched; rule++) {
+                for (String needle : ruleNeedles.get(rule)) {
+                    if (biomeName.contains(needle)) {
+                        category = indexOf(categories, ruleCategories.get(rule));
+                        matched = true;
+                        break;
+                    }
+                }
+            }
+            
+            table[biome.ordinal()] = category;
+        }
+        
+        // Exact overrides replace whatever the rules decided
+        ConfigurationSection overrides = mappings != null ? mappings.getConfigurationSection("overrides") : null;
+        if (overrides != null) {
+            for (String biomeName : overrides.getKeys(false)) {
+                Biome biome = findBiome(biomeName);
+                if (biome == null) {
+                    warnings.add("biome-mappings.overrides: unknown biome '" + biomeName + "'");
+                    continue;
+                }
+                String category = overrides.getString(biomeName, fallback).toLowerCase(Locale.ROOT);
+                table[biome.ordinal()] = indexOf(categories, category);
+            }
+        }
+        
+        return new BiomeCategoryTable(table);
+    }
+    
+    /**
+     * Finds the index of a category, registering it if it is new
+     */
+    private static int indexOf(List<String> categories, String category) {
+        int index = categories.indexOf(category);
+        if (index < 0) {
+            categories.add(category);
+            index = categories.size() - 1;
+        }
+        return index;
+    }
+    
+    /**
+     * Looks up a biome by name, ignoring case
+     */
+    private static Biome findBiome(String name) {
+        String upper = name.toUpperCase(Locale.ROOT);
+        for (Biome biome : BIOMES) {
+            if (biome.name().equals(upper)) {
+                return biome;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Gets the category of a biome
+     * 
+     * @param biome The biome
+     * @return The category index
+     */
+    int getCategory(Biome biome) {
+        return categoryByBiome[biome.ordinal()];
+    }
+}
@@ -0,0 +1,62 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+
+/**
+ * Runs tasks through the Bukkit scheduler, where all world work shares the
+ * main thread
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class BukkitTaskScheduler implements TaskScheduler {
+    
+    private final Plugin plugin;
+    private final BukkitScheduler scheduler;
+    
+    BukkitTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+        this.scheduler = plugin.getServer().getScheduler();
+    }
+    
+    @Override
+    public void run(Runnable task) {
+        scheduler.runTask(plugin, task);
+    }
+    
+    @Override
+    public Task runTimer(Runnable task, long delay, long period) {
+        return scheduler.runTaskTimer(plugin, task, delay, period)::cancel;
+    }
+    
+    @Override
+    public void runAsync(Runnable task) {
+        scheduler.runTaskAsynchronously(plugin, task);
+    }
+    
+    @Override
+    public Task runTimerAsync(Runnable task, long delay, long period) {
+        return scheduler.runTaskTimerAsynchronously(plugin, task, delay, period)::cancel;
+    }
+    
+    @Override
+    public boolean runFor(Entity entity, Runnable task) {
+        // Every entity is owned by the main thread here, so the entity only matters on Folia.
+        // Tasks still run if it is removed meanwhile; they check validity themselves.
+        scheduler.runTask(plugin, task);
+        return true;
+    }
+    
+    @Override
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        scheduler.runTask(plugin, task);
+    }
+    
+    @Override
+    public boolean isRegionThreaded() {
+        return false;
+    }
+}
@@ -0,0 +1,147 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the positions of online players with the bypass permission
+ * 
+ * Once a second each online player is sampled on the thread that owns it:
+ * players holding namedvillagers.bypass publish where they stand, everyone
+ * else is left out. A spawn then only compares its location with the few
+ * published positions, instead of reading every player in the world, and
+ * never touches a player entity owned by another region.
+ * 
+ * Positions are up to a second old, which is well within the bypass radius
+ * for a walking player.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class BypassTracker {
+    
+    static final String BYPASS_PERMISSION = "namedvillagers.bypass";
+    private static final long UPDATE_INTERVAL = 20L;
+    
+    private final NamedVillagers plugin;
+    private final Map<UUID, Position> positions = new ConcurrentHashMap<>();
+    
+    private TaskScheduler.Task task;
+    
+    public BypassTracker(NamedVillagers plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Starts sampling players
+     */
+    public void start() {
+        task = plugin.getTaskScheduler().runTimer(this::update, 1L, UPDATE_INTERVAL);
+    }
+    
+    /**
+     * Stops sampling and forgets all positions
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        positions.clear();
+    }
+    
+    /**
+     * Checks if a bypassing player was last seen near a location
+     * 
+     * @param location The location
+     * @param radiusSquared The squared bypass radius
+     * @return true if a bypassing player is within the radius
+     */
+    public boolean isNear(Location location, double radiusSquared) {
+        if (positions.isEmpty()) {
+            return false;
+        }
+        
+        UUID world = location.getWorld().getUID();
+        for (Position position : positions.values()) {
+            if (position.world.equals(world) && position.distanceSquared(location) <= radiusSquared) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Gets the number of bypassing players being tracked
+     * 
+     * @return Tracked player count
+     */
+    public int size() {
+        return positions.size();
+    }
+    
+    /**
+     * Samples every online player and drops the ones who left
+     */
+    private void update() {
+        if (!plugin.getConfigManager().getSnapshot().getNamingPolicy().hasBypassRadius()) {
+            positions.clear();
+            return;
+        }
+        
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            if (scheduler.isRegionThreaded()) {
+                // Permission and position belong to the player's region
+                if (!scheduler.runFor(player, () -> sample(player))) {
+                    positions.remove(player.getUniqueId());
+                }
+            } else {
+                sample(player);
+            }
+        }
+        positions.keySet().removeIf(id -> plugin.getServer().getPlayer(id) == null);
+    }
+    
+    /**
+     * Publishes or withdraws one player's position
+     */
+    private void sample(Player player) {
+        if (player.isOnline() && player.hasPermission(BYPASS_PERMISSION)) {
+            Location location = player.getLocation();
+            positions.put(player.getUniqueId(), new Position(location.getWorld().getUID(), location.getX(),
+                location.getY(), location.getZ()));
+        } else {
+            positions.remove(player.getUniqueId());
+        }
+    }
+    
+    /**
+     * Where a bypassing player was last seen
+     */
+    private static final class Position {
+        
+        private final UUID world;
+        private final double x;
+        private final double y;
+        private final double z;
+        
+        private Position(UUID world, double x, double y, double z) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+        
+        private double distanceSquared(Location location) {
+            double dx = location.getX() - x;
+            double dy = location.getY() - y;
+            double dz = location.getZ() - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+    }
+}
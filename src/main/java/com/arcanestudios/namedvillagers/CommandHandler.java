@@ -1,5 +1,8 @@
 package com.arcanestudios.namedvillagers;
 
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -7,13 +10,17 @@ import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Villager;
-import org.bukkit.persistence.PersistentDataContainer;
-import org.bukkit.persistence.PersistentDataType;
 import org.bukkit.util.RayTraceResult;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
 
 /**
  * Handles all plugin commands
@@ -23,7 +30,11 @@ import java.util.List;
  */
 public class CommandHandler implements CommandExecutor, TabCompleter {
     
+    private static final List<String> SUB_COMMANDS = Arrays.asList(
+        "random", "restore", "reload", "supply", "queue", "stats", "find", "list", "history", "regenerate", "pack");
+        
     private final NamedVillagers plugin;
+    private RegenerateJob regenerateJob;
     
     public CommandHandler(NamedVillagers plugin) {
         this.plugin = plugin;
@@ -36,6 +47,27 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             if (args.length > 0 && args[0].equalsIgnoreCase("reload")) {
                 return handleReload(sender);
             }
+            if (args.length > 0 && args[0].equalsIgnoreCase("supply")) {
+                return handleSupply(sender);
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("regenerate")) {
+                return handleRegenerate(sender, args);
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("queue")) {
+                return handleQueue(sender);
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("stats")) {
+                return handleStats(sender);
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("find")) {
+                return handleFind(sender, args);
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("pack")) {
+                return handlePack(sender, args);
+            }
+            if (args.length > 0 && args[0].equalsIgnoreCase("history")) {
+                return handleHistory(sender, args);
+            }
             sender.sendMessage(plugin.getConfigManager().getMessage("invalid-usage"));
             return true;
         }
@@ -57,6 +89,33 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             case "random":
                 return handleRandomName(player);
                 
+            case "restore":
+                return handleRestoreName(player);
+                
+            case "supply":
+                return handleSupply(sender);
+                
+            case "regenerate":
+                return handleRegenerate(sender, args);
+                
+            case "queue":
+                return handleQueue(sender);
+                
+            case "stats":
+                return handleStats(sender);
+                
+            case "find":
+                return handleFind(sender, args);
+                
+            case "list":
+                return handleList(player, args);
+                
+            case "pack":
+                return handlePack(sender, args);
+                
+            case "history":
+                return handleHistory(sender, args);
+                
             default:
                 // Treat as custom name
                 return handleCustomName(player, String.join(" ", args));
@@ -72,11 +131,425 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             return true;
         }
         
-        plugin.reloadPlugin();
-        sender.sendMessage(plugin.getConfigManager().getMessage("config-reloaded"));
+        boolean started = plugin.reloadPlugin(result -> {
+            if (!result.isSuccess()) {
+                String message = plugin.getConfigManager().getMessage("config-reload-failed");
+                sender.sendMessage(message.replace("{error}", result.getError()));
+                return;
+            }
+            
+            ConfigManager config = plugin.getConfigManager();
+            String message = config.getMessage("config-reloaded")
+                .replace("{time}", String.format("%.1f", result.getTotalMillis()))
+                .replace("{tick}", String.format("%.2f", result.getTickMillis()));
+            sender.sendMessage(message);
+            
+            for (String warning : result.getWarnings()) {
+                sender.sendMessage(config.getMessage("config-reload-warning").replace("{warning}", warning));
+            }
+        });
+        
+        if (!started) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("config-reload-busy"));
+        }
+        return true;
+    }
+    
+    /**
+     * Handles the pack subcommand, which compiles a text name pack into a binary pack
+     */
+    private boolean handlePack(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("namedvillagers.reload")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        // Only plain file names, so the command cannot reach outside the packs folder
+        ConfigManager config = plugin.getConfigManager();
+        if (args.length < 2 || args[1].contains("/") || args[1].contains("\\") || args[1].startsWith(".")) {
+            sender.sendMessage(config.getMessage("pack-usage"));
+            return true;
+        }
+        
+        File source = new File(plugin.getPackFolder(), args[1]);
+        String baseName = args[1].contains(".") ? args[1].substring(0, args[1].lastIndexOf('.')) : args[1];
+        File target = new File(plugin.getPackFolder(), baseName + NamePack.BINARY_EXTENSION);
+        if (!source.isFile() || source.equals(target)) {
+            sender.sendMessage(config.getMessage("pack-usage"));
+            return true;
+        }
+        
+        // Reading and writing large packs is file work, keep it off the main thread
+        plugin.getTaskScheduler().runAsync(() -> {
+            long start = System.nanoTime();
+            String message;
+            try {
+                int count = NamePack.build(source, target);
+                message = config.getMessage("pack-built")
+                    .replace("{pack}", target.getName())
+                    .replace("{count}", String.valueOf(count))
+                    .replace("{time}", String.format("%.1f", (System.nanoTime() - start) / 1_000_000.0));
+            } catch (IOException e) {
+                message = config.getMessage("pack-failed")
+                    .replace("{pack}", source.getName())
+                    .replace("{error}", String.valueOf(e.getMessage()));
+            }
+            
+            String result = message;
+            plugin.getTaskScheduler().run(() -> sender.sendMessage(result));
+        });
+        return true;
+    }
+    
+    /**
+     * Handles the supply subcommand, showing the pre-generated name buffers
+     */
+    private boolean handleSupply(CommandSender sender) {
+        if (!sender.hasPermission("namedvillagers.stats")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        NameSupply supply = plugin.getNameSupply();
+        long hits = supply.getHits();
+        long total = hits + supply.getMisses();
+        double hitRate = total == 0 ? 0.0 : hits * 100.0 / total;
+        
+        String message = plugin.getConfigManager().getMessage("supply-status")
+            .replace("{buffers}", String.valueOf(supply.getActiveBuffers()))
+            .replace("{ready}", String.valueOf(supply.getBufferedNames()))
+            .replace("{hits}", String.valueOf(hits))
+            .replace("{misses}", String.valueOf(supply.getMisses()))
+            .replace("{rate}", String.format("%.1f", hitRate))
+            .replace("{generated}", String.valueOf(supply.getGenerated()));
+        sender.sendMessage(message);
+        return true;
+    }
+    
+    /**
+     * Handles the regenerate subcommand, which re-rolls names in loaded chunks over several ticks
+     */
+    private boolean handleRegenerate(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("namedvillagers.regenerate")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        ConfigManager config = plugin.getConfigManager();
+        if (args.length < 2) {
+            sender.sendMessage(config.getMessage("regenerate-usage"));
+            return true;
+        }
+        
+        String scope = args[1].toLowerCase();
+        if (scope.equals("cancel")) {
+            if (regenerateJob == null || !regenerateJob.isRunning()) {
+                sender.sendMessage(config.getMessage("regenerate-not-running"));
+                return true;
+            }
+            regenerateJob.cancel();
+            sender.sendMessage(config.getMessage("regenerate-cancelled"));
+            return true;
+        }
+        
+        if (regenerateJob != null && regenerateJob.isRunning()) {
+            sender.sendMessage(config.getMessage("regenerate-busy"));
+            return true;
+        }
+        
+        boolean onlyGenerated = args.length > 2 && args[2].equalsIgnoreCase("--only-auto");
+        List<Chunk> chunks = new ArrayList<>();
+        
+        if (scope.equals("all")) {
+            for (World world : plugin.getServer().getWorlds()) {
+                chunks.addAll(Arrays.asList(world.getLoadedChunks()));
+            }
+        } else if (!(sender instanceof Player)) {
+            // Radius and world are relative to the player
+            sender.sendMessage(config.getMessage("regenerate-usage"));
+            return true;
+        } else if (scope.equals("world")) {
+            chunks.addAll(Arrays.asList(((Player) sender).getWorld().getLoadedChunks()));
+        } else {
+            int radius;
+            try {
+                radius = Integer.parseInt(scope);
+            } catch (NumberFormatException e) {
+                sender.sendMessage(config.getMessage("regenerate-usage"));
+                return true;
+            }
+            
+            if (radius < 0) {
+                sender.sendMessage(config.getMessage("regenerate-negative-radius"));
+                return true;
+            }
+            
+            // Filter the loaded chunks instead of probing the square, so a huge radius costs no more than "world"
+            Player player = (Player) sender;
+            int centerX = player.getLocation().getBlockX() >> 4;
+            int centerZ = player.getLocation().getBlockZ() >> 4;
+            for (Chunk chunk : player.getWorld().getLoadedChunks()) {
+                if (Math.abs(chunk.getX() - centerX) <= radius && Math.abs(chunk.getZ() - centerZ) <= radius) {
+                    chunks.add(chunk);
+                }
+            }
+        }
+        
+        regenerateJob = new RegenerateJob(plugin, sender, chunks, onlyGenerated);
+        regenerateJob.start();
+        sender.sendMessage(config.getMessage("regenerate-started").replace("{chunks}", String.valueOf(chunks.size())));
+        return true;
+    }
+    
+    /**
+     * Handles the queue subcommand, showing the naming work queue
+     */
+    private boolean handleQueue(CommandSender sender) {
+        if (!sender.hasPermission("namedvillagers.stats")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        NamingQueue queue = plugin.getNamingQueue();
+        String message = plugin.getConfigManager().getMessage("queue-status")
+            .replace("{urgent}", String.valueOf(queue.getUrgentSize()))
+            .replace("{refresh}", String.valueOf(queue.getRefreshSize()))
+            .replace("{backfill}", String.valueOf(queue.getBackfillSize()))
+            .replace("{named}", String.valueOf(queue.getNamed()))
+            .replace("{refreshed}", String.valueOf(queue.getRefreshed()))
+            .replace("{dropped}", String.valueOf(queue.getDropped()))
+            .replace("{avg}", String.format("%.1f", queue.getAverageLatencyMillis()))
+            .replace("{max}", String.format("%.1f", queue.getMaxLatencyMillis()));
+        sender.sendMessage(message);
+        return true;
+    }
+    
+    /**
+     * Handles the stats subcommand, showing event counters and latency percentiles
+     */
+    private boolean handleStats(CommandSender sender) {
+        if (!sender.hasPermission("namedvillagers.stats")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        ConfigManager config = plugin.getConfigManager();
+        PluginMetrics metrics = plugin.getMetrics();
+        sender.sendMessage(config.getMessage("stats-counters")
+            .replace("{spawns}", String.valueOf(metrics.getSpawns()))
+            .replace("{named}", String.valueOf(metrics.getNamed()))
+            .replace("{stored}", String.valueOf(metrics.getSkippedStored()))
+            .replace("{display}", String.valueOf(metrics.getSkippedDisplayName()))
+            .replace("{policy}", String.valueOf(metrics.getSkippedPolicy()))
+            .replace("{cured}", String.valueOf(metrics.getCured()))
+            .replace("{writes}", String.valueOf(metrics.getPdcWrites())));
+        NametagManager nametags = plugin.getNametagManager();
+        sender.sendMessage(config.getMessage("stats-nametags")
+            .replace("{tracked}", String.valueOf(nametags.size()))
+            .replace("{shown}", String.valueOf(nametags.getShownCount()))
+            .replace("{pending}", String.valueOf(nametags.getPendingCount()))
+            .replace("{toggles}", String.valueOf(metrics.getNametagToggles()))
+            .replace("{peak}", String.valueOf(metrics.getNametagTogglesPeak())));
+        sendLatency(sender, "onVillagerSpawn", metrics.getSpawnHandler());
+        sendLatency(sender, "generateName", metrics.getGenerate());
+        sendLatency(sender, "apply", metrics.getApply());
+        return true;
+    }
+    
+    /**
+     * Sends one latency histogram as a chat line
+     */
+    private void sendLatency(CommandSender sender, String name, LatencyHistogram histogram) {
+        sender.sendMessage(plugin.getConfigManager().getMessage("stats-latency")
+            .replace("{name}", name)
+            .replace("{count}", String.valueOf(histogram.getCount()))
+            .replace("{mean}", formatMicros(histogram.getMean()))
+            .replace("{p50}", formatMicros(histogram.getPercentile(50)))
+            .replace("{p99}", formatMicros(histogram.getPercentile(99)))
+            .replace("{max}", formatMicros(histogram.getMax())));
+    }
+    
+    /**
+     * Formats nanoseconds as microseconds with one decimal
+     */
+    private String formatMicros(double nanos) {
+        return String.format("%.1f", nanos / 1000.0);
+    }
+    
+    /**
+     * Handles the find subcommand, looking villagers up by name in the registry
+     */
+    private boolean handleFind(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("namedvillagers.find")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        if (args.length < 2) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("find-usage"));
+            return true;
+        }
+        
+        String query = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        ConfigManager config = plugin.getConfigManager();
+        List<NameRegistry.Entry> results = plugin.getNameRegistry().find(query, config.getSnapshot().getRegistryMaxResults());
+        
+        if (results.isEmpty()) {
+            sender.sendMessage(config.getMessage("find-none").replace("{query}", query));
+            return true;
+        }
+        
+        sender.sendMessage(config.getMessage("find-header").replace("{query}", query));
+        for (NameRegistry.Entry entry : results) {
+            sendRegistryEntry(sender, entry);
+        }
+        return true;
+    }
+    
+    /**
+     * Handles the list subcommand, showing registered villagers around the player
+     */
+    private boolean handleList(Player player, String[] args) {
+        if (!player.hasPermission("namedvillagers.find")) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        ConfigManager config = plugin.getConfigManager();
+        int maxRadius = config.getSnapshot().getRegistryMaxListRadius();
+        
+        // "chunk" lists the current chunk, a number lists the chunks around it
+        int radius;
+        if (args.length < 2 || args[1].equalsIgnoreCase("chunk")) {
+            radius = 0;
+        } else {
+            try {
+                radius = Integer.parseInt(args[1]);
+            } catch (NumberFormatException e) {
+                player.sendMessage(config.getMessage("list-usage"));
+                return true;
+            }
+            if (radius < 0 || radius > maxRadius) {
+                player.sendMessage(config.getMessage("list-radius-too-large").replace("{max}", String.valueOf(maxRadius)));
+                return true;
+            }
+        }
+        
+        Location location = player.getLocation();
+        List<NameRegistry.Entry> results = plugin.getNameRegistry()
+            .inChunks(player.getWorld(), location.getBlockX() >> 4, location.getBlockZ() >> 4, radius);
+            
+        if (results.isEmpty()) {
+            player.sendMessage(config.getMessage("list-none").replace("{radius}", String.valueOf(radius)));
+            return true;
+        }
+        
+        player.sendMessage(config.getMessage("list-header")
+            .replace("{count}", String.valueOf(results.size()))
+            .replace("{radius}", String.valueOf(radius)));
+        int shown = Math.min(results.size(), config.getSnapshot().getRegistryMaxResults());
+        for (int i = 0; i < shown; i++) {
+            sendRegistryEntry(player, results.get(i));
+        }
+        return true;
+    }
+    
+    /**
+     * Sends one registry entry as a chat line
+     */
+    private void sendRegistryEntry(CommandSender sender, NameRegistry.Entry entry) {
+        World world = plugin.getServer().getWorld(entry.getWorldId());
+        String worldName = world != null ? world.getName() : entry.getWorldId().toString();
+        String seen = world != null ? formatTicks(world.getFullTime() - entry.getLastSeen()) : "?";
+        
+        sender.sendMessage(plugin.getConfigManager().getMessage("registry-entry")
+            .replace("{name}", entry.getName())
+            .replace("{world}", worldName)
+            .replace("{x}", String.valueOf(entry.getChunkX()))
+            .replace("{z}", String.valueOf(entry.getChunkZ()))
+            .replace("{seen}", seen));
+    }
+    
+    /**
+     * Handles the history subcommand, showing recent renames of a villager
+     * by name, or of the villager the player is looking at
+     */
+    private boolean handleHistory(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("namedvillagers.history")) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        if (args.length < 2) {
+            Villager villager = sender instanceof Player ? getTargetVillager((Player) sender) : null;
+            if (villager == null) {
+                sender.sendMessage(plugin.getConfigManager().getMessage("history-usage"));
+                return true;
+            }
+            String name = plugin.getNameStore().getStoredName(villager);
+            sendHistory(sender, villager.getUniqueId(), name != null ? name : villager.getUniqueId().toString());
+            return true;
+        }
+        
+        // Look the name up in the registry; a UUID works for villagers no longer registered
+        String query = String.join(" ", Arrays.copyOfRange(args, 1, args.length));
+        ConfigManager config = plugin.getConfigManager();
+        List<NameRegistry.Entry> results = plugin.getNameRegistry().find(query, config.getSnapshot().getRegistryMaxResults());
+        if (!results.isEmpty()) {
+            for (NameRegistry.Entry entry : results) {
+                sendHistory(sender, entry.getUniqueId(), entry.getName());
+            }
+            return true;
+        }
+        
+        try {
+            sendHistory(sender, UUID.fromString(query), query);
+        } catch (IllegalArgumentException e) {
+            sender.sendMessage(config.getMessage("history-none").replace("{name}", query));
+        }
         return true;
     }
     
+    /**
+     * Sends the remembered renames of one villager
+     */
+    private void sendHistory(CommandSender sender, UUID id, String name) {
+        ConfigManager config = plugin.getConfigManager();
+        List<NameHistory.Entry> entries = plugin.getNameHistory().getRecent(id);
+        if (entries.isEmpty()) {
+            sender.sendMessage(config.getMessage("history-none").replace("{name}", name));
+            return;
+        }
+        
+        long now = System.currentTimeMillis();
+        sender.sendMessage(config.getMessage("history-header").replace("{name}", name));
+        for (NameHistory.Entry entry : entries) {
+            sender.sendMessage(config.getMessage("history-entry")
+                .replace("{time}", formatTicks((now - entry.getTime()) / 50))
+                .replace("{old}", entry.getOldName() != null ? entry.getOldName() : "-")
+                .replace("{new}", entry.getNewName())
+                .replace("{cause}", entry.getCause().name().toLowerCase(Locale.ROOT))
+                .replace("{actor}", entry.getActor() != null ? entry.getActor() : "auto"));
+        }
+    }
+    
+    /**
+     * Formats a tick count as a short duration, e.g. "3m" or "2h"
+     */
+    private String formatTicks(long ticks) {
+        long seconds = Math.max(0, ticks / 20);
+        if (seconds < 60) {
+            return seconds + "s";
+        }
+        if (seconds < 3600) {
+            return (seconds / 60) + "m";
+        }
+        if (seconds < 86400) {
+            return (seconds / 3600) + "h";
+        }
+        return (seconds / 86400) + "d";
+    }
+    
     /**
      * Handles the random name subcommand
      */
@@ -92,15 +565,53 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             return true;
         }
         
-        // Generate random name
-        String name = plugin.getNameGenerator().generateName(villager);
+        // Generate random name, fresh even when deterministic naming is on
+        GeneratedName name = plugin.getNameGenerator().generateRandom(villager);
         
-        // Apply name
-        applyName(villager, name);
+        // Apply name, unless another plugin objects
+        if (!plugin.getNameStore().applyGenerated(villager, name, NameCause.RANDOM, player.getName())) {
+            player.sendMessage(plugin.getConfigManager().getMessage("naming-cancelled"));
+            return true;
+        }
         
         // Send success message
         String message = plugin.getConfigManager().getMessage("villager-random-named");
-        message = message.replace("{name}", name);
+        message = message.replace("{name}", name.getName());
+        player.sendMessage(message);
+        
+        return true;
+    }
+    
+    /**
+     * Handles the restore subcommand, which rebuilds a villager's deterministic name
+     */
+    private boolean handleRestoreName(Player player) {
+        if (!player.hasPermission("namedvillagers.rename")) {
+            player.sendMessage(plugin.getConfigManager().getMessage("no-permission"));
+            return true;
+        }
+        
+        // Without deterministic names there is no original to rebuild, only a new random one
+        if (!plugin.getConfigManager().getSnapshot().isDeterministic()) {
+            player.sendMessage(plugin.getConfigManager().getMessage("restore-not-deterministic"));
+            return true;
+        }
+        
+        Villager villager = getTargetVillager(player);
+        if (villager == null) {
+            player.sendMessage(plugin.getConfigManager().getMessage("not-looking-at-villager"));
+            return true;
+        }
+        
+        // Same UUID and world seed always produce the same name
+        GeneratedName name = plugin.getNameGenerator().regenerate(villager);
+        if (!plugin.getNameStore().applyGenerated(villager, name, NameCause.RESTORE, player.getName())) {
+            player.sendMessage(plugin.getConfigManager().getMessage("naming-cancelled"));
+            return true;
+        }
+        
+        String message = plugin.getConfigManager().getMessage("villager-restored");
+        message = message.replace("{name}", name.getName());
         player.sendMessage(message);
         
         return true;
@@ -121,8 +632,11 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
             return true;
         }
         
-        // Apply custom name
-        applyName(villager, customName);
+        // Apply custom name, unless another plugin objects
+        if (!plugin.getNameStore().applyCustom(villager, customName, player.getName())) {
+            player.sendMessage(plugin.getConfigManager().getMessage("naming-cancelled"));
+            return true;
+        }
         
         // Send success message
         String message = plugin.getConfigManager().getMessage("villager-renamed");
@@ -154,34 +668,74 @@ public class CommandHandler implements CommandExecutor, TabCompleter {
         return null;
     }
     
-    /**
-     * Applies a name to a villager and stores it in PDC
-     */
-    private void applyName(Villager villager, String name) {
-        // Store in PDC
-        PersistentDataContainer pdc = villager.getPersistentDataContainer();
-        pdc.set(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING, name);
-        
-        // Apply as display name
-        villager.setCustomName(name);
-        villager.setCustomNameVisible(true);
-    }
-    
     @Override
     public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
         List<String> completions = new ArrayList<>();
         
         if (args.length == 1) {
-            // First argument - subcommands
-            List<String> subCommands = Arrays.asList("random", "reload");
-            
-            for (String subCmd : subCommands) {
-                if (subCmd.toLowerCase().startsWith(args[0].toLowerCase())) {
+            // First argument - subcommands, then names for /nv <name>
+            String typed = args[0].toLowerCase(Locale.ROOT);
+            for (String subCmd : SUB_COMMANDS) {
+                if (subCmd.startsWith(typed)) {
                     completions.add(subCmd);
                 }
             }
+            completeName(sender, args[0], completions);
+        } else if (!SUB_COMMANDS.contains(args[0].toLowerCase(Locale.ROOT))) {
+            // Every further word of a custom name
+            completeName(sender, args[args.length - 1], completions);
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("list")) {
+            if ("chunk".startsWith(args[1].toLowerCase())) {
+                completions.add("chunk");
+            }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("regenerate")) {
+            for (String scope : Arrays.asList("world", "all", "cancel")) {
+                if (scope.startsWith(args[1].toLowerCase())) {
+                    completions.add(scope);
+                }
+            }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("pack")) {
+            // Offer the text packs that can be compiled
+            String[] files = plugin.getPackFolder().list();
+            if (files != null) {
+                for (String file : files) {
+                    if (!file.endsWith(NamePack.BINARY_EXTENSION) && file.startsWith(args[1])) {
+                        completions.add(file);
+                    }
+                }
+            }
+        } else if (args.length == 3 && args[0].equalsIgnoreCase("regenerate")) {
+            if ("--only-auto".startsWith(args[2].toLowerCase())) {
+                completions.add("--only-auto");
+            }
         }
         
         return completions;
     }
+    
+    /**
+     * Adds name words for a custom name: words villagers already carry, the
+     * most common first, then words from the configured name lists
+     */
+    private void completeName(CommandSender sender, String prefix, List<String> completions) {
+        if (!(sender instanceof Player) || !sender.hasPermission("namedvillagers.rename")) {
+            return;
+        }
+        
+        int limit = plugin.getConfigManager().getSnapshot().getTabCompleteLimit();
+        List<String> words = new ArrayList<>(limit);
+        plugin.getNameRegistry().completeWord(prefix, limit, words);
+        plugin.getConfigManager().getSnapshot().completeName(prefix, limit, words);
+        
+        // The same word can come from both sources in different case
+        Set<String> seen = new HashSet<>();
+        for (String word : words) {
+            if (seen.size() == limit) {
+                break;
+            }
+            if (seen.add(word.toLowerCase(Locale.ROOT))) {
+                completions.add(word);
+            }
+        }
+    }
 }
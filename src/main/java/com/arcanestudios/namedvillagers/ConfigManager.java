@@ -1,6 +1,16 @@
 package com.arcanestudios.namedvillagers;
 
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -13,122 +23,166 @@ public class ConfigManager {
     
     private final NamedVillagers plugin;
     private final FileConfiguration config;
+    private final NamePoolSnapshot snapshot;
+    private final List<String> warnings;
     
     public ConfigManager(NamedVillagers plugin) {
-        this.plugin = plugin;
-        this.config = plugin.getConfig();
+        this(plugin, plugin.getConfig());
     }
     
     /**
-     * Checks if automatic naming is enabled
+     * Creates a manager for an already parsed configuration.
+     * Safe to call off the main thread; nothing here touches the server.
      * 
-     * @return true if auto-naming is enabled
+     * @param plugin The plugin instance
+     * @param config The parsed configuration
      */
-    public boolean isAutoNamingEnabled() {
-        return config.getBoolean("settings.auto-name", true);
+    public ConfigManager(NamedVillagers plugin, FileConfiguration config) {
+        this.plugin = plugin;
+        this.config = config;
+        this.snapshot = NamePoolSnapshot.compile(config, plugin.getPackFolder(), plugin.getNamePoolIds());
+        this.warnings = Collections.unmodifiableList(validate());
     }
     
     /**
-     * Gets the legendary prefix chance percentage
+     * Parses config.yml from the data folder with the bundled defaults attached.
+     * Does not touch the plugin's cached configuration, so it may run asynchronously.
      * 
-     * @return Legendary chance (0-100)
+     * @param plugin The plugin instance
+     * @return The freshly parsed configuration
+     * @throws IOException If the file cannot be read
+     * @throws InvalidConfigurationException If the file is not valid YAML
      */
-    public int getLegendaryChance() {
-        return config.getInt("settings.legendary-chance", 5);
+    public static FileConfiguration loadConfiguration(NamedVillagers plugin)
+            throws IOException, InvalidConfigurationException {
+        YamlConfiguration loaded = new YamlConfiguration();
+        loaded.load(new File(plugin.getDataFolder(), "config.yml"));
+        
+        InputStream defaults = plugin.getResource("config.yml");
+        if (defaults != null) {
+            try (InputStreamReader reader = new InputStreamReader(defaults, StandardCharsets.UTF_8)) {
+                loaded.setDefaults(YamlConfiguration.loadConfiguration(reader));
+            }
+        }
+        
+        return loaded;
     }
     
     /**
-     * Gets the name format setting
-     * 
-     * @return Name format: simple, titled, or fullname
+     * Checks the configuration for values that are accepted but probably wrong
      */
-    public String getNameFormat() {
-        return config.getString("settings.format", "titled");
+    private List<String> validate() {
+        List<String> problems = new ArrayList<>(snapshot.getWarnings());
+        
+        // New pools took ids while compiling; keep them for the next start
+        try {
+            plugin.getNamePoolIds().save();
+        } catch (IOException e) {
+            problems.add("Could not save pool ids, names may not re-render after a restart: " + e.getMessage());
+        }
+        
+        int chance = config.getInt("settings.legendary-chance", 5);
+        if (chance < 0 || chance > 100) {
+            problems.add("settings.legendary-chance should be between 0 and 100 (got " + chance + ")");
+        }
+        
+        int familyRadius = config.getInt("families.chunk-radius", 2);
+        if (familyRadius > NamePoolSnapshot.MAX_FAMILY_RADIUS) {
+            problems.add("families.chunk-radius is capped at " + NamePoolSnapshot.MAX_FAMILY_RADIUS
+                + " (got " + familyRadius + ")");
+        }
+        
+        List<?> fallbackNames = config.getList("names.professions.none.first");
+        if ((fallbackNames == null || fallbackNames.isEmpty()) && !config.isSet("name-packs.professions.none.first")) {
+            problems.add("names.professions.none.first is empty, some villagers will be named 'Unknown'");
+        }
+        
+        if (chance > 0 && snapshot.getLegendaryPrefixes().size() == 0) {
+            problems.add("legendary-prefixes is empty but legendary-chance is " + chance);
+        }
+        
+        return problems;
     }
     
     /**
-     * Checks if profession level should be shown
+     * Gets the problems found while validating this configuration
      * 
-     * @return true if level should be shown
+     * @return Unmodifiable list of warning messages, empty if none
      */
-    public boolean shouldShowLevel() {
-        return config.getBoolean("settings.show-level", true);
+    public List<String> getWarnings() {
+        return warnings;
     }
     
     /**
-     * Checks if villagers should be renamed when cured
+     * Gets the compiled name pools and settings for this configuration
      * 
-     * @return true if villagers should be renamed on cure
+     * @return The immutable NamePoolSnapshot
      */
-    public boolean shouldRenameOnCure() {
-        return config.getBoolean("settings.rename-on-cure", false);
+    public NamePoolSnapshot getSnapshot() {
+        return snapshot;
     }
     
     /**
-     * Checks if biome-specific names should be used
+     * Checks if automatic naming is enabled
      * 
-     * @return true if biome-specific naming is enabled
+     * @return true if auto-naming is enabled
      */
-    public boolean isBiomeSpecific() {
-        return config.getBoolean("settings.biome-specific", true);
+    public boolean isAutoNamingEnabled() {
+        return snapshot.isAutoNamingEnabled();
     }
     
     /**
-     * Checks if debug mode is enabled
+     * Gets the legendary prefix chance percentage
      * 
-     * @return true if debug mode is enabled
+     * @return Legendary chance (0-100)
      */
-    public boolean isDebugEnabled() {
-        return config.getBoolean("settings.debug", false);
+    public int getLegendaryChance() {
+        return snapshot.getLegendaryChance();
     }
     
     /**
-     * Gets a list of legendary prefixes
+     * Gets the name format setting
      * 
-     * @return List of legendary prefix strings
+     * @return Name format: a format name or an inline template
      */
-    public List<String> getLegendaryPrefixes() {
-        return config.getStringList("legendary-prefixes");
+    public String getNameFormat() {
+        return snapshot.getFormatName();
     }
     
     /**
-     * Gets first names for a specific profession
+     * Checks if profession level should be shown
      * 
-     * @param profession The profession name (lowercase)
-     * @return List of first names
+     * @return true if level should be shown
      */
-    public List<String> getProfessionFirstNames(String profession) {
-        return config.getStringList("names.professions." + profession + ".first");
+    public boolean shouldShowLevel() {
+        return snapshot.shouldShowLevel();
     }
     
     /**
-     * Gets last names for a specific profession
+     * Checks if villagers should be renamed when cured
      * 
-     * @param profession The profession name (lowercase)
-     * @return List of last names
+     * @return true if villagers should be renamed on cure
      */
-    public List<String> getProfessionLastNames(String profession) {
-        return config.getStringList("names.professions." + profession + ".last");
+    public boolean shouldRenameOnCure() {
+        return snapshot.shouldRenameOnCure();
     }
     
     /**
-     * Gets first names for a specific biome
+     * Checks if biome-specific names should be used
      * 
-     * @param biome The biome name (lowercase)
-     * @return List of first names
+     * @return true if biome-specific naming is enabled
      */
-    public List<String> getBiomeFirstNames(String biome) {
-        return config.getStringList("biomes." + biome + ".first");
+    public boolean isBiomeSpecific() {
+        return snapshot.isBiomeSpecific();
     }
     
     /**
-     * Gets last names for a specific biome
+     * Checks if debug mode is enabled
      * 
-     * @param biome The biome name (lowercase)
-     * @return List of last names
+     * @return true if debug mode is enabled
      */
-    public List<String> getBiomeLastNames(String biome) {
-        return config.getStringList("biomes." + biome + ".last");
+    public boolean isDebugEnabled() {
+        return snapshot.isDebugEnabled();
     }
     
     /**
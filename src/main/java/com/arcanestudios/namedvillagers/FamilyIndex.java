@@ -0,0 +1,344 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which surnames loaded villagers carry, per chunk, so villages grow
+ * into families
+ * 
+ * A surname is the last name pool and index of a generated name. Each chunk
+ * keeps a short list of the surnames of the villagers recorded in it with a
+ * count for each, and a villager spawning nearby draws one of them weighted
+ * by those counts. Every surname is recorded with the symbol of the last
+ * name it showed, and a drawn surname whose pool entry reads differently
+ * after a reload is not handed on. Only the chunks within the configured radius are read, so
+ * the cost of a lookup depends on the radius and on how many families live
+ * there, not on how many villagers do.
+ * 
+ * Villagers are recorded in the chunk where they were named or last loaded.
+ * Villagers wandering off are picked up at their new position the next time
+ * their chunk loads.
+ * 
+ * Children bred from named villagers are announced before they spawn and take
+ * the surname of one parent instead.
+ * 
+ * Safe to use from any thread. Each world's tables are guarded by a lock of
+ * their own.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class FamilyIndex {
+    
+    // Children are named a few ticks after birth; this bounds the ones that never spawned
+    private static final int MAX_EXPECTED_CHILDREN = 1024;
+    
+    private final Map<UUID, WorldFamilies> worlds = new ConcurrentHashMap<>();
+    private final Map<UUID, Inheritance> children = new LinkedHashMap<UUID, Inheritance>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Inheritance> eldest) {
+            return size() > MAX_EXPECTED_CHILDREN;
+        }
+    };
+    
+    /**
+     * Remembers the surname a child about to spawn inherits
+     * 
+     * @param pools The snapshot the parent's components resolve against
+     * @param child The child
+     * @param parentComponents The name components of the parent passing on its surname
+     */
+    public void expectChild(NamePoolSnapshot pools, Entity child, long parentComponents) {
+        int surname = NameComponents.surname(parentComponents);
+        long symbol = surname != 0 ? pools.getSurnameSymbol(surname) : 0L;
+        if (symbol == 0) {
+            return;
+        }
+        synchronized (children) {
+            children.put(child.getUniqueId(), new Inheritance(surname, symbol));
+        }
+    }
+    
+    /**
+     * Picks the surname for a villager about to be named
+     * 
+     * A bred child gets its parent's surname. Otherwise, with the configured
+     * chance, one of the families living within the radius is drawn, larger
+     * families more often.
+     * 
+     * @param pools The snapshot with the family settings
+     * @param villager The villager
+     * @param random The random stream
+     * @return The surname, or 0 to keep the drawn last name
+     */
+    public int pick(NamePoolSnapshot pools, Entity villager, NameRandom random) {
+        Inheritance inherited;
+        synchronized (children) {
+            inherited = children.remove(villager.getUniqueId());
+        }
+        if (inherited != null) {
+            return current(pools, inherited.surname, inherited.symbol);
+        }
+        
+        if (random.nextInt(100) >= pools.getFamilyShareChance()) {
+            return 0;
+        }
+        
+        Location location = villager.getLocation();
+        WorldFamilies families = worlds.get(location.getWorld().getUID());
+        if (families == null) {
+            return 0;
+        }
+        
+        int radius = pools.getFamilyRadius();
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        synchronized (families) {
+            // First pass counts the villagers around, second walks to the drawn one
+            int total = 0;
+            for (int x = chunkX - radius; x <= chunkX + radius; x++) {
+                for (int z = chunkZ - radius; z <= chunkZ + radius; z++) {
+                    Households households = families.chunks.get(chunkKey(x, z));
+                    if (households != null) {
+                        total += households.total;
+                    }
+                }
+            }
+            if (total == 0) {
+                return 0;
+            }
+            
+            int target = random.nextInt(total);
+            for (int x = chunkX - radius; x <= chunkX + radius; x++) {
+                for (int z = chunkZ - radius; z <= chunkZ + radius; z++) {
+                    Households households = families.chunks.get(chunkKey(x, z));
+                    if (households == null) {
+                        continue;
+                    }
+                    if (target < households.total) {
+                        int slot = households.select(target);
+                        return current(pools, households.surnames[slot], households.symbols[slot]);
+                    }
+                    target -= households.total;
+                }
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Records the surname a villager carries at its current position,
+     * replacing any earlier record
+     * 
+     * @param pools The snapshot the components resolve against
+     * @param villager The villager
+     * @param components The packed name components, or NameComponents.NONE to release
+     */
+    public void track(NamePoolSnapshot pools, Entity villager, long components) {
+        int surname = NameComponents.surname(components);
+        long symbol = surname != 0 ? pools.getSurnameSymbol(surname) : 0L;
+        Location location = villager.getLocation();
+        WorldFamilies families = worlds.computeIfAbsent(location.getWorld().getUID(), uid -> new WorldFamilies());
+        long entityKey = entityKey(villager.getUniqueId());
+        
+        synchronized (families) {
+            release(families, entityKey);
+            if (symbol == 0) {
+                return;
+            }
+            
+            long chunk = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            families.symbols.put(entityKey, symbol);
+            families.chunkOf.put(entityKey, chunk);
+            families.chunks.computeIfAbsent(chunk, key -> new Households()).add(surname, symbol);
+        }
+    }
+    
+    /**
+     * Forgets the surname a villager carries
+     * 
+     * @param villager The villager
+     */
+    public void untrack(Entity villager) {
+        WorldFamilies families = worlds.get(villager.getWorld().getUID());
+        if (families == null) {
+            return;
+        }
+        
+        synchronized (families) {
+            release(families, entityKey(villager.getUniqueId()));
+        }
+    }
+    
+    /**
+     * Drops everything recorded for a world
+     * 
+     * @param world The world
+     */
+    public void clearWorld(World world) {
+        worlds.remove(world.getUID());
+    }
+    
+    /**
+     * Gets the number of villagers with a tracked surname across all worlds
+     * 
+     * @return Tracked villager count
+     */
+    public int size() {
+        int size = 0;
+        for (WorldFamilies families : worlds.values()) {
+            synchronized (families) {
+                size += families.symbols.size();
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Removes a villager's record from one world's tables; the caller holds the lock
+     */
+    private static void release(WorldFamilies families, long entityKey) {
+        long symbol = families.symbols.remove(entityKey);
+        if (symbol == 0) {
+            return;
+        }
+        
+        long chunk = families.chunkOf.remove(entityKey);
+        Households households = families.chunks.get(chunk);
+        if (households != null && households.remove(symbol)) {
+            families.chunks.remove(chunk);
+        }
+    }
+    
+    /**
+     * Hands on a recorded surname only if it still shows the same last name
+     * 
+     * @return The surname, or 0 if a reload moved another name into its place
+     */
+    private static int current(NamePoolSnapshot pools, int surname, long symbol) {
+        return pools.getSurnameSymbol(surname) == symbol ? surname : 0;
+    }
+    
+    /**
+     * Packs chunk coordinates into one key
+     */
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Reduces a UUID to a non-zero map key
+     */
+    private static long entityKey(UUID uuid) {
+        long key = NameRandom.mix64(uuid.getMostSignificantBits() ^ Long.rotateLeft(uuid.getLeastSignificantBits(), 32));
+        return key != 0 ? key : 1;
+    }
+    
+    /**
+     * Surname tables for one world
+     */
+    private static final class WorldFamilies {
+        
+        // Symbol of the last name each villager showed when recorded
+        private final LongLongHashMap symbols = new LongLongHashMap();
+        private final LongLongHashMap chunkOf = new LongLongHashMap();
+        private final Map<Long, Households> chunks = new HashMap<>();
+    }
+    
+    /**
+     * A surname waiting for a child to spawn
+     */
+    private static final class Inheritance {
+        
+        private final int surname;
+        private final long symbol;
+        
+        private Inheritance(int surname, long symbol) {
+            this.surname = surname;
+            this.symbol = symbol;
+        }
+    }
+    
+    /**
+     * The surnames recorded in one chunk with how many villagers carry each
+     * 
+     * Households are told apart by the symbol of their last name, so the same
+     * pool entry recorded before and after a reload stays two families.
+     */
+    private static final class Households {
+        
+        private long[] symbols = new long[2];
+        private int[] surnames = new int[2];
+        private int[] counts = new int[2];
+        private int size;
+        private int total;
+        
+        /**
+         * Counts one more villager with a surname
+         */
+        private void add(int surname, long symbol) {
+            total++;
+            for (int i = 0; i < size; i++) {
+                if (symbols[i] == symbol) {
+                    counts[i]++;
+                    return;
+                }
+            }
+            
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, size * 2);
+                surnames = Arrays.copyOf(surnames, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            symbols[size] = symbol;
+            surnames[size] = surname;
+            counts[size++] = 1;
+        }
+        
+        /**
+         * Counts one villager with a surname less
+         * 
+         * @return true if the chunk has no villagers left
+         */
+        private boolean remove(long symbol) {
+            for (int i = 0; i < size; i++) {
+                if (symbols[i] == symbol) {
+                    total--;
+                    if (--counts[i] == 0) {
+                        size--;
+                        symbols[i] = symbols[size];
+                        surnames[i] = surnames[size];
+                        counts[i] = counts[size];
+                    }
+                    break;
+                }
+            }
+            return total == 0;
+        }
+        
+        /**
+         * Finds the household of the villager at a position in the counts
+         * 
+         * @param target Position, below total
+         * @return The household's slot
+         */
+        private int select(int target) {
+            for (int i = 0; i < size; i++) {
+                if (target < counts[i]) {
+                    return i;
+                }
+                target -= counts[i];
+            }
+            return size - 1;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.arcanestudios.namedvillagers;
+
+/**
+ * A rendered name together with the packed components it was built from
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public final class GeneratedName {
+    
+    private final String name;
+    private final long components;
+    private final long replay;
+    
+    GeneratedName(String name, long components) {
+        this(name, components, NameReplay.NONE);
+    }
+    
+    GeneratedName(String name, long components, long replay) {
+        this.name = name;
+        this.components = components;
+        this.replay = replay;
+    }
+    
+    /**
+     * Gets the display name
+     * 
+     * @return The rendered name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Gets the packed name components
+     * 
+     * @return The components, see NameComponents
+     */
+    long getComponents() {
+        return components;
+    }
+    
+    /**
+     * Gets the record that reproduces this name from the villager's seed
+     * 
+     * @return The replay record, see NameReplay, or NONE if the name was not seeded
+     */
+    long getReplay() {
+        return replay;
+    }
+}
@@ -0,0 +1,125 @@
+package com.arcanestudios.namedvillagers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets
+ * 
+ * HDR style: every power of two is split into 16 linear sub-buckets, so any
+ * recorded value lands in a bucket at most 1/16 (about 6%) wider than
+ * itself, from single nanoseconds up to the full long range. Recording is a
+ * few bit operations and one atomic increment; it never locks and never
+ * allocates, and may be called from any thread. Percentiles are computed on
+ * read by walking the buckets.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class LatencyHistogram {
+    
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_BUCKETS;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+    
+    /**
+     * Records one sample
+     * 
+     * @param nanos The measured time; negative values count as zero
+     */
+    void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+        
+        // Only contend on the max when it actually grows
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+    
+    /**
+     * Gets the number of recorded samples
+     * 
+     * @return Sample count
+     */
+    long getCount() {
+        return count.sum();
+    }
+    
+    /**
+     * Gets the mean of all samples
+     * 
+     * @return Mean in nanoseconds, or 0 when empty
+     */
+    double getMean() {
+        long samples = count.sum();
+        return samples == 0 ? 0.0 : total.sum() / (double) samples;
+    }
+    
+    /**
+     * Gets the largest recorded sample
+     * 
+     * @return Maximum in nanoseconds
+     */
+    long getMax() {
+        return max.get();
+    }
+    
+    /**
+     * Gets the value below which a fraction of the samples fall
+     * 
+     * @param percentile The percentile, 0 to 100
+     * @return Upper bound of the bucket holding that percentile, in nanoseconds, capped at the maximum
+     */
+    long getPercentile(double percentile) {
+        long samples = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            samples += counts.get(i);
+        }
+        if (samples == 0) {
+            return 0L;
+        }
+        
+        long rank = Math.max(1L, (long) Math.ceil(samples * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+    
+    /**
+     * Gets the bucket index of a non-negative value
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+    }
+    
+    /**
+     * Gets the largest value that falls into a bucket
+     */
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lower = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lower + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,224 @@
+package com.arcanestudios.namedvillagers;
+
+/**
+ * Open-addressing hash map from long to long
+ * 
+ * Keys and values live in two primitive arrays with linear probing, so there
+ * is no boxing and no per-entry object. The key 0 is reserved as the empty
+ * marker and must not be used. Not thread-safe.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class LongLongHashMap {
+    
+    private static final int MIN_CAPACITY = 16;
+    
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+    
+    LongLongHashMap() {
+        this(MIN_CAPACITY);
+    }
+    
+    LongLongHashMap(int expected) {
+        allocate(Integer.highestOneBit(Math.max(MIN_CAPACITY, expected * 2) - 1) << 1);
+    }
+    
+    /**
+     * Gets the value of a key
+     * 
+     * @param key The key, not 0
+     * @param missing Value returned if the key is absent
+     * @return The value
+     */
+    long get(long key, long missing) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return missing;
+    }
+    
+    /**
+     * Checks if a key is present
+     * 
+     * @param key The key, not 0
+     * @return true if present
+     */
+    boolean containsKey(long key) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+    
+    /**
+     * Sets the value of a key
+     * 
+     * @param key The key, not 0
+     * @param value The value
+     * @return The previous value, or 0 if the key was absent
+     */
+    long put(long key, long value) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return 0L;
+    }
+    
+    /**
+     * Adds to the value of a key, treating an absent key as 0
+     * 
+     * @param key The key, not 0
+     * @param delta Amount to add
+     * @return The new value
+     */
+    long addTo(long key, long delta) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot] += delta;
+            }
+            slot = (slot + 1) & mask;
+        }
+        
+        keys[slot] = key;
+        values[slot] = delta;
+        if (++size >= resizeAt) {
+            rehash(keys.length << 1);
+        }
+        return delta;
+    }
+    
+    /**
+     * Removes a key
+     * 
+     * @param key The key, not 0
+     * @return The removed value, or 0 if the key was absent
+     */
+    long remove(long key) {
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                shiftBack(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return 0L;
+    }
+    
+    /**
+     * Gets the number of entries
+     * 
+     * @return Entry count
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Removes all entries and shrinks the table
+     */
+    void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+    
+    /**
+     * Gets the memory held by the tables in bytes
+     * 
+     * @return Approximate footprint
+     */
+    long footprintBytes() {
+        return (long) keys.length * Long.BYTES * 2;
+    }
+    
+    /**
+     * Closes the gap left by a removal so probe chains stay intact
+     */
+    private void shiftBack(int gap) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                break;
+            }
+            
+            // Move the entry into the gap unless its home slot lies cyclically in (gap, slot]
+            int home = slot(key);
+            boolean movable = gap <= slot ? (home <= gap || home > slot) : (home <= gap && home > slot);
+            if (movable) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = 0;
+    }
+    
+    /**
+     * Gets the home slot of a key
+     */
+    private int slot(long key) {
+        return (int) NameRandom.mix64(key) & mask;
+    }
+    
+    /**
+     * Grows the table and reinserts every entry
+     */
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+    
+    /**
+     * Allocates empty tables of the given power-of-two capacity
+     */
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * 0.7);
+    }
+}
@@ -0,0 +1,31 @@
+package com.arcanestudios.namedvillagers;
+
+/**
+ * Why a villager receives a name
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public enum NameCause {
+    
+    /** Named automatically after spawning */
+    SPAWN,
+    
+    /** Named after being cured from a zombie villager */
+    CURE,
+    
+    /** Found without a name when its chunk loaded */
+    BACKFILL,
+    
+    /** Named by a player with /nv <name> */
+    COMMAND,
+    
+    /** Given a random name with /nv random */
+    RANDOM,
+    
+    /** Given back its deterministic name with /nv restore */
+    RESTORE,
+    
+    /** Renamed by /nv regenerate */
+    REGENERATE
+}
@@ -0,0 +1,114 @@
+package com.arcanestudios.namedvillagers;
+
+/**
+ * Packs the parts of a generated name into a single long
+ * 
+ * Layout, low bits first: legendary index + 1 (10 bits), first name pool
+ * (8 bits), first name index + 1 (19 bits), last name pool (8 bits), last
+ * name index + 1 (19 bits). A zero index field means the part is absent.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameComponents {
+    
+    /** No components; used for names that were not generated by the plugin */
+    static final long NONE = 0L;
+    
+    static final int MAX_POOLS = 1 << 8;
+    
+    /** Number of distinct indices a first or last name field can hold */
+    static final int MAX_INDICES = (1 << 19) - 1;
+    
+    /** Number of distinct legendary prefixes the prefix field can hold */
+    static final int MAX_PREFIXES = (1 << 10) - 1;
+    
+    private static final int PREFIX_BITS = 10;
+    private static final int POOL_BITS = 8;
+    private static final int INDEX_BITS = 19;
+    
+    private static final int FIRST_POOL_SHIFT = PREFIX_BITS;
+    private static final int FIRST_INDEX_SHIFT = FIRST_POOL_SHIFT + POOL_BITS;
+    private static final int LAST_POOL_SHIFT = FIRST_INDEX_SHIFT + INDEX_BITS;
+    private static final int LAST_INDEX_SHIFT = LAST_POOL_SHIFT + POOL_BITS;
+    
+    private static final long PREFIX_MASK = (1L << PREFIX_BITS) - 1;
+    private static final long POOL_MASK = (1L << POOL_BITS) - 1;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    
+    private NameComponents() {
+    }
+    
+    /**
+     * Packs name parts
+     * 
+     * @param prefix Legendary prefix index, or -1 for none
+     * @param firstPool First name pool id
+     * @param first First name index, or -1 for none
+     * @param lastPool Last name pool id
+     * @param last Last name index, or -1 for none
+     * @return The packed components
+     */
+    static long pack(int prefix, int firstPool, int first, int lastPool, int last) {
+        return ((prefix + 1) & PREFIX_MASK)
+            | ((firstPool & POOL_MASK) << FIRST_POOL_SHIFT)
+            | (((first + 1) & INDEX_MASK) << FIRST_INDEX_SHIFT)
+            | ((lastPool & POOL_MASK) << LAST_POOL_SHIFT)
+            | (((last + 1) & INDEX_MASK) << LAST_INDEX_SHIFT);
+    }
+    
+    /**
+     * Gets the legendary prefix index, or -1 if there is none
+     */
+    static int prefix(long components) {
+        return (int) (components & PREFIX_MASK) - 1;
+    }
+    
+    /**
+     * Gets the first name pool id
+     */
+    static int firstPool(long components) {
+        return (int) ((components >>> FIRST_POOL_SHIFT) & POOL_MASK);
+    }
+    
+    /**
+     * Gets the first name index, or -1 if there is none
+     */
+    static int first(long components) {
+        return (int) ((components >>> FIRST_INDEX_SHIFT) & INDEX_MASK) - 1;
+    }
+    
+    /**
+     * Gets the last name pool id
+     */
+    static int lastPool(long components) {
+        return (int) ((components >>> LAST_POOL_SHIFT) & POOL_MASK);
+    }
+    
+    /**
+     * Gets the last name index, or -1 if there is none
+     */
+    static int last(long components) {
+        return (int) ((components >>> LAST_INDEX_SHIFT) & INDEX_MASK) - 1;
+    }
+    
+    /**
+     * Gets the surname, the last name pool and index together
+     * 
+     * @return The surname, or 0 if there is no last name
+     */
+    static int surname(long components) {
+        return last(components) < 0 ? 0 : (int) (components >>> LAST_POOL_SHIFT);
+    }
+    
+    /**
+     * Replaces the last name with a surname taken from other components
+     * 
+     * @param components The packed components
+     * @param surname A surname from surname(long), not 0
+     * @return The components with the new last name
+     */
+    static long withSurname(long components, int surname) {
+        return (components & ((1L << LAST_POOL_SHIFT) - 1)) | ((long) surname << LAST_POOL_SHIFT);
+    }
+}
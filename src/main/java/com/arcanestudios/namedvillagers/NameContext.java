@@ -0,0 +1,72 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.block.Biome;
+import org.bukkit.entity.Villager;
+
+/**
+ * What a name is generated for, without an entity
+ * 
+ * The same context under the same configuration always produces the same
+ * name, so callers that want different names pass different seeds.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public final class NameContext {
+    
+    private final Villager.Profession profession;
+    private final int level;
+    private final Biome biome;
+    private final long seed;
+    
+    /**
+     * Creates a context
+     * 
+     * @param profession The profession, used for pool selection and titles
+     * @param level The villager level (1-5)
+     * @param biome The biome used for pool selection
+     * @param seed Seed of the random stream
+     */
+    public NameContext(Villager.Profession profession, int level, Biome biome, long seed) {
+        this.profession = profession;
+        this.level = level;
+        this.biome = biome;
+        this.seed = seed;
+    }
+    
+    /**
+     * Gets the profession
+     * 
+     * @return The profession
+     */
+    public Villager.Profession getProfession() {
+        return profession;
+    }
+    
+    /**
+     * Gets the villager level
+     * 
+     * @return The level (1-5)
+     */
+    public int getLevel() {
+        return level;
+    }
+    
+    /**
+     * Gets the biome
+     * 
+     * @return The biome
+     */
+    public Biome getBiome() {
+        return biome;
+    }
+    
+    /**
+     * Gets the seed
+     * 
+     * @return The seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+}
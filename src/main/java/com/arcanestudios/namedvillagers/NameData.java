@@ -0,0 +1,140 @@
+package com.arcanestudios.namedvillagers;
+
+/**
+ * Compact binary form of a generated name, stored as a PDC byte array
+ * 
+ * Replaces the rendered string and the separate components entry with a
+ * single 22-byte value. The text itself lives only in the entity's custom
+ * name and is rendered again from the components whenever the stored render
+ * version differs from the current configuration's. The names hash records
+ * what the components resolved to, so a refresh after the pools were edited
+ * can tell a new title from a different name. The text hash records what
+ * was displayed, so a name given with a name tag since is not overwritten.
+ * 
+ * Layout: encoding (1 byte), flags (1 byte, reserved), render version
+ * (4 bytes), packed NameComponents (8 bytes), names hash (4 bytes), text
+ * hash (4 bytes), all big-endian.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameData {
+    
+    /** Render version of data whose name was not rendered by a known configuration */
+    static final int UNKNOWN_VERSION = 0;
+    
+    /** Hash stored when the names or the displayed text were not known */
+    static final int UNKNOWN_HASH = 0;
+    
+    private static final byte ENCODING = 2;
+    private static final int LENGTH = 22;
+    private static final int VERSION_OFFSET = 2;
+    private static final int COMPONENTS_OFFSET = 6;
+    private static final int HASH_OFFSET = 14;
+    private static final int TEXT_OFFSET = 18;
+    
+    private NameData() {
+    }
+    
+    /**
+     * Encodes components, the version they were rendered with, the names they
+     * resolved to and the text that was displayed
+     * 
+     * @param components The packed components
+     * @param renderVersion The snapshot render version
+     * @param namesHash The snapshot's names hash of the components
+     * @param text The displayed name, or null if it is not known
+     * @return The encoded bytes
+     */
+    static byte[] encode(long components, int renderVersion, int namesHash, String text) {
+        byte[] data = new byte[LENGTH];
+        data[0] = ENCODING;
+        writeInt(data, VERSION_OFFSET, renderVersion);
+        writeInt(data, COMPONENTS_OFFSET, (int) (components >>> 32));
+        writeInt(data, COMPONENTS_OFFSET + 4, (int) components);
+        writeInt(data, HASH_OFFSET, namesHash);
+        writeInt(data, TEXT_OFFSET, text != null ? hashText(text) : UNKNOWN_HASH);
+        return data;
+    }
+    
+    /**
+     * Checks if bytes hold data this version can read
+     * 
+     * @param data The stored bytes, may be null
+     * @return true if the encoding is known
+     */
+    static boolean isValid(byte[] data) {
+        return data != null && data.length >= LENGTH && data[0] == ENCODING;
+    }
+    
+    /**
+     * Gets the packed components
+     * 
+     * @param data Valid encoded bytes
+     * @return The components
+     */
+    static long components(byte[] data) {
+        return ((long) readInt(data, COMPONENTS_OFFSET) << 32) | (readInt(data, COMPONENTS_OFFSET + 4) & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * Gets the render version the name was last displayed with
+     * 
+     * @param data Valid encoded bytes
+     * @return The render version
+     */
+    static int renderVersion(byte[] data) {
+        return readInt(data, VERSION_OFFSET);
+    }
+    
+    /**
+     * Gets the hash of the names the components resolved to when stored
+     * 
+     * @param data Valid encoded bytes
+     * @return The names hash, or UNKNOWN_HASH if the components did not resolve
+     */
+    static int namesHash(byte[] data) {
+        return readInt(data, HASH_OFFSET);
+    }
+    
+    /**
+     * Gets the hash of the name that was displayed when the data was stored
+     * 
+     * @param data Valid encoded bytes
+     * @return The text hash, or UNKNOWN_HASH if the name was not known
+     */
+    static int textHash(byte[] data) {
+        return readInt(data, TEXT_OFFSET);
+    }
+    
+    /**
+     * Hashes a displayed name for comparison with textHash
+     * 
+     * @param text The name
+     * @return The hash, never UNKNOWN_HASH
+     */
+    static int hashText(String text) {
+        int hash = text.hashCode();
+        return hash != UNKNOWN_HASH ? hash : 1;
+    }
+    
+    /**
+     * Writes a big-endian int
+     */
+    private static void writeInt(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+    
+    /**
+     * Reads a big-endian int
+     */
+    private static int readInt(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 24
+            | (data[offset + 1] & 0xFF) << 16
+            | (data[offset + 2] & 0xFF) << 8
+            | (data[offset + 3] & 0xFF);
+    }
+}
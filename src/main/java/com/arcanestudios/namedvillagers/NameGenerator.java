@@ -4,8 +4,12 @@ import org.bukkit.entity.Villager;
 import org.bukkit.Location;
 import org.bukkit.block.Biome;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Generates random names for villagers based on profession, biome, and configuration
@@ -15,109 +19,502 @@ import java.util.Random;
  */
 public class NameGenerator {
     
+    // Longer texts are not names this plugin generated
+    private static final int MAX_PARSE_WORDS = 12;
+    
+    // Salt of the family pick's stream, kept apart from the candidate draws
+    private static final long FAMILY_STREAM = 0x66616d696c79L;
+    
     private final NamedVillagers plugin;
-    private final ConfigManager config;
-    private final Random random;
     
     public NameGenerator(NamedVillagers plugin) {
         this.plugin = plugin;
-        this.config = plugin.getConfigManager();
-        this.random = new Random();
     }
     
     /**
      * Generates a complete name for a villager
      * 
+     * In deterministic mode the name is derived from the villager's UUID and
+     * world seed, so the same villager always receives the same name.
+     * Must be called on the thread that owns the villager.
+     * 
      * @param villager The villager to name
      * @return The generated name
      */
     public String generateName(Villager villager) {
-        String profession = getProfessionKey(villager);
-        String biome = getBiomeKey(villager.getLocation());
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        NameRandom random = pools.isDeterministic() ? new NameRandom(getDeterministicSeed(pools, villager)) : null;
+        return generate(pools, villager, random, !pools.isDeterministic(), false).getName();
+    }
+    
+    /**
+     * Generates a name for a villager along with its components
+     * 
+     * Uses a pre-generated name from the supply when one is ready, and retries
+     * when uniqueness is enabled and the candidate is already taken. A free
+     * name is claimed for the villager right away, so the caller is expected
+     * to apply it.
+     * 
+     * @param villager The villager to name
+     * @return The generated name
+     */
+    public GeneratedName generate(Villager villager) {
+        // Read the snapshot once so a concurrent reload cannot mix two configs
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        NameRandom random = pools.isDeterministic() ? new NameRandom(getDeterministicSeed(pools, villager)) : null;
+        return generate(pools, villager, random, !pools.isDeterministic(), true);
+    }
+    
+    /**
+     * Generates a fresh random name for a villager, even in deterministic mode
+     * 
+     * @param villager The villager to name
+     * @return The generated name
+     */
+    public GeneratedName generateRandom(Villager villager) {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        return generate(pools, villager, null, false, true);
+    }
+    
+    /**
+     * Regenerates the deterministic name of a villager from its UUID and world seed
+     * 
+     * Replays the candidates generate() drew, using the profession, biome,
+     * accepted attempt and family surname recorded when the villager was named,
+     * so the result matches the original name under the same configuration.
+     * Villagers without a record get their first candidate for where they are
+     * now. Titles reflect the villager's current profession and level.
+     * 
+     * @param villager The villager
+     * @return The reproduced name
+     */
+    public GeneratedName regenerate(Villager villager) {
+        long start = System.nanoTime();
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        long replay = plugin.getNameStore().getReplay(villager);
+        int profession = NameReplay.profession(replay);
+        if (profession < 0 || profession >= Villager.Profession.values().length) {
+            profession = villager.getProfession().ordinal();
+        }
+        int category = NameReplay.category(replay);
+        if (category < 0 || category >= pools.getCategoryCount()) {
+            category = getBiomeCategory(pools, villager.getLocation());
+        }
         
-        // Get name components
-        String firstName = getFirstName(profession, biome);
-        String lastName = getLastName(profession, biome);
-        String legendaryPrefix = getLegendaryPrefix();
-        String professionTitle = getProfessionTitle(villager);
-        String levelTitle = getLevelTitle(villager);
+        // Candidates skipped for uniqueness were drawn too, so draw up to the accepted one
+        NameRandom random = new NameRandom(getDeterministicSeed(pools, villager));
+        NameHead head = null;
+        for (int attempt = 0; attempt <= NameReplay.attempt(replay); attempt++) {
+            head = generateHead(pools, profession, category, random);
+        }
+        int surname = NameReplay.surname(replay);
+        if (surname != 0) {
+            head = new NameHead(NameComponents.withSurname(head.getComponents(), surname));
+        }
+        GeneratedName name = finish(pools, head, villager, category, replay);
+        plugin.getMetrics().recordGenerate(System.nanoTime() - start);
+        return name;
+    }
+    
+    /**
+     * Generates a name without touching any entity or world
+     * 
+     * Safe to call from any thread. The same arguments under the same
+     * configuration always produce the same name.
+     * 
+     * @param profession The villager profession
+     * @param level The villager level (1-5)
+     * @param biome The biome used for pool selection
+     * @param seed Seed of the random stream
+     * @return The generated name
+     */
+    public String generateName(Villager.Profession profession, int level, Biome biome, long seed) {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        int category = pools.getBiomeCategory(biome);
+        NameHead head = generateHead(pools, profession.ordinal(), category, new NameRandom(seed));
+        return renderName(pools, pools.getTemplate(category, profession.ordinal(), null),
+            head.getComponents(), profession, level);
+    }
+    
+    /**
+     * Generates a name for each context without touching any entity or world
+     * 
+     * Produces the same names as generating them one by one, but reads the
+     * configuration once and resolves each biome category and template only
+     * the first time it appears. Safe to call from any thread.
+     * 
+     * @param contexts What the names are for
+     * @return The generated names, in the order of the contexts
+     */
+    public List<String> generateNames(List<NameContext> contexts) {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        Biome[] biomes = Biome.values();
+        Villager.Profession[] professions = Villager.Profession.values();
+        int[] categories = new int[biomes.length];
+        Arrays.fill(categories, -1);
+        NameTemplate[] templates = new NameTemplate[biomes.length * professions.length];
         
-        // Build the name based on format
-        return buildName(firstName, lastName, legendaryPrefix, professionTitle, levelTitle);
+        List<String> names = new ArrayList<>(contexts.size());
+        for (NameContext context : contexts) {
+            int biome = context.getBiome().ordinal();
+            int profession = context.getProfession().ordinal();
+            if (categories[biome] < 0) {
+                categories[biome] = pools.getBiomeCategory(context.getBiome());
+            }
+            int category = categories[biome];
+            
+            int slot = biome * professions.length + profession;
+            NameTemplate template = templates[slot];
+            if (template == null) {
+                template = pools.getTemplate(category, profession, null);
+                templates[slot] = template;
+            }
+            
+            NameHead head = generateHead(pools, profession, category, new NameRandom(context.getSeed()));
+            names.add(renderName(pools, template, head.getComponents(), context.getProfession(), context.getLevel()));
+        }
+        return names;
+    }
+    
+    /**
+     * Renders stored name components with a villager's current profession,
+     * level and surroundings
+     * 
+     * @param pools The snapshot to resolve the components against
+     * @param components The packed components
+     * @param villager The villager
+     * @return The rendered name
+     */
+    public String render(NamePoolSnapshot pools, long components, Villager villager) {
+        return finish(pools, components, villager, getBiomeCategory(pools, villager.getLocation()));
+    }
+    
+    /**
+     * Checks if a stored name still shows the names its components resolve to
+     * 
+     * After the pools are edited, components kept without a names hash may
+     * point at other names. Each part the villager's format shows must appear
+     * in the stored text as a whole word, or the text is kept as it is.
+     * 
+     * @param pools The snapshot to resolve the components against
+     * @param components The packed components
+     * @param villager The villager
+     * @param name The stored name
+     * @return true if the components still describe the name
+     */
+    boolean showsParts(NamePoolSnapshot pools, long components, Villager villager, String name) {
+        NameTemplate template = getTemplate(pools, villager);
+        return (!template.uses(NameTemplate.LEGENDARY)
+                || shows(pools, pools.getLegendaryPrefixes().getId(), NameComponents.prefix(components), name))
+            && (!template.uses(NameTemplate.FIRST)
+                || shows(pools, NameComponents.firstPool(components), NameComponents.first(components), name))
+            && (!template.uses(NameTemplate.LAST)
+                || shows(pools, NameComponents.lastPool(components), NameComponents.last(components), name));
     }
     
     /**
-     * Gets a random first name from appropriate pools
+     * Finds the components of a name stored only as text
+     * 
+     * Names written before components were stored are looked up in the
+     * current pools, trying the villager's biome and profession first. A
+     * match is accepted only if rendering it for some profession and level
+     * gives back the exact text, so names typed by players stay unmatched
+     * unless they read exactly like a generated one.
+     * 
+     * @param pools The snapshot to look the names up in
+     * @param villager The villager
+     * @param name The stored name
+     * @return The components, or NameComponents.NONE if the pools cannot produce the name
      */
-    private String getFirstName(String profession, String biome) {
-        List<String> names = null;
+    long parse(NamePoolSnapshot pools, Villager villager, String name) {
+        String[] words = name.split(" ", -1);
+        if (words.length > MAX_PARSE_WORDS) {
+            return NameComponents.NONE;
+        }
+        
+        Map<NamePool, int[]> found = new IdentityHashMap<>();
+        int[] prefixes = find(pools.getLegendaryPrefixes(), words, found);
+        Villager.Profession[] professions = Villager.Profession.values();
+        int ownProfession = villager.getProfession().ordinal();
+        int ownCategory = getBiomeCategory(pools, villager.getLocation());
+        String world = villager.getWorld().getName();
         
-        // Try biome-specific names first if enabled
-        if (config.isBiomeSpecific()) {
-            names = config.getBiomeFirstNames(biome);
+        for (int c = 0; c < pools.getCategoryCount(); c++) {
+            int category = ownFirst(c, ownCategory);
+            for (int p = 0; p < professions.length; p++) {
+                int profession = ownFirst(p, ownProfession);
+                NamePool firstNames = pools.getFirstNames(category, profession);
+                NamePool lastNames = pools.getLastNames(category, profession);
+                int[] firsts = find(firstNames, words, found);
+                if (firsts.length == 1) {
+                    continue;
+                }
+                
+                NameTemplate template = pools.getTemplate(category, profession, world);
+                int[] lasts = find(lastNames, words, found);
+                for (int prefix : prefixes) {
+                    for (int first : firsts) {
+                        for (int last : lasts) {
+                            long components = NameComponents.pack(prefix, firstNames.getId(), first, lastNames.getId(), last);
+                            if (first >= 0 && rendersAs(pools, template, components, ownProfession, name)) {
+                                return components;
+                            }
+                        }
+                    }
+                }
+            }
         }
+        return NameComponents.NONE;
+    }
+    
+    /**
+     * Gets the format a villager's name is shown with
+     * 
+     * @param pools The snapshot with the formats
+     * @param villager The villager
+     * @return The template for its biome, profession and world
+     */
+    NameTemplate getTemplate(NamePoolSnapshot pools, Villager villager) {
+        return pools.getTemplate(getBiomeCategory(pools, villager.getLocation()), villager.getProfession().ordinal(),
+            villager.getWorld().getName());
+    }
+    
+    /**
+     * Picks candidates until one is free or the attempt budget runs out
+     * 
+     * @param random The villager's seeded stream, or null to use the supply and fresh seeds
+     * @param claim Whether a free candidate is claimed in the uniqueness index
+     */
+    private GeneratedName generate(NamePoolSnapshot pools, Villager villager, NameRandom random, boolean useSupply,
+            boolean claim) {
+        long start = System.nanoTime();
+        Villager.Profession profession = villager.getProfession();
+        Location location = villager.getLocation();
+        int biome = getBiomeCategory(pools, location);
+        
+        NameUniquenessIndex uniqueness = pools.isUniqueNames() ? plugin.getUniquenessIndex() : null;
+        int attempts = uniqueness != null ? pools.getUniquenessAttempts() : 1;
+        NameTemplate template = pools.getTemplate(biome, profession.ordinal(), villager.getWorld().getName());
         
-        // Fall back to profession names if no biome names or biome-specific disabled
-        if (names == null || names.isEmpty()) {
-            names = config.getProfessionFirstNames(profession);
+        // The family is picked once, so retries for uniqueness only change the first name.
+        // It draws from a stream of its own so regenerate() can replay the candidates without it.
+        boolean seeded = random != null;
+        int surname = 0;
+        if (pools.isFamilySurnames()) {
+            NameRandom family = seeded ? random.branch(FAMILY_STREAM) : new NameRandom(randomSeed());
+            surname = plugin.getFamilyIndex().pick(pools, villager, family);
         }
         
-        // Fallback to "none" profession if no names found
-        if (names == null || names.isEmpty()) {
-            names = config.getProfessionFirstNames("none");
+        NameHead head = null;
+        int attempt = 0;
+        for (; attempt < attempts; attempt++) {
+            head = useSupply ? plugin.getNameSupply().poll(pools, profession.ordinal(), biome) : null;
+            if (head == null) {
+                if (random == null) {
+                    random = new NameRandom(randomSeed());
+                }
+                head = generateHead(pools, profession.ordinal(), biome, random);
+            }
+            if (surname != 0) {
+                head = new NameHead(NameComponents.withSurname(head.getComponents(), surname));
+            }
+            
+            // Claiming checks and records in one step, so another region cannot take the name in between
+            if (uniqueness == null) {
+                break;
+            }
+            if (claim ? uniqueness.claim(pools, template, villager, head.getComponents())
+                    : !uniqueness.isTaken(pools, template, location, head.getComponents())) {
+                break;
+            }
         }
         
-        return getRandomElement(names, "Unknown");
+        // Out of attempts: accept the last candidate rather than leave the villager unnamed
+        long replay = seeded ? NameReplay.pack(Math.min(attempt, attempts - 1), profession.ordinal(), biome, surname)
+            : NameReplay.NONE;
+        GeneratedName name = finish(pools, head, villager, biome, replay);
+        plugin.getMetrics().recordGenerate(System.nanoTime() - start);
+        return name;
+    }
+    
+    /**
+     * Renders a head into a GeneratedName
+     */
+    private GeneratedName finish(NamePoolSnapshot pools, NameHead head, Villager villager, int category,
+            long replay) {
+        long components = head.getComponents();
+        return new GeneratedName(finish(pools, components, villager, category), components, replay);
+    }
+    
+    /**
+     * Renders components with the template that applies to a villager
+     */
+    private String finish(NamePoolSnapshot pools, long components, Villager villager, int category) {
+        Villager.Profession profession = villager.getProfession();
+        NameTemplate template = pools.getTemplate(category, profession.ordinal(), villager.getWorld().getName());
+        return renderName(pools, template, components, profession, villager.getVillagerLevel());
+    }
+    
+    /**
+     * Draws the random parts of a name: first name, last name and legendary
+     * prefix. Safe to call from any thread. Draw order is fixed so seeds stay
+     * reproducible.
+     * 
+     * @param pools The snapshot to draw from
+     * @param profession The profession ordinal
+     * @param biome The biome category index
+     * @param random The random stream
+     * @return The drawn components
+     */
+    NameHead generateHead(NamePoolSnapshot pools, int profession, int biome, NameRandom random) {
+        NamePool firstNames = pools.getFirstNames(biome, profession);
+        NamePool lastNames = pools.getLastNames(biome, profession);
+        
+        // Get name components
+        int first = firstNames.sample(random);
+        int last = lastNames.sample(random);
+        int prefix = getLegendaryPrefix(random, pools);
+        
+        return new NameHead(NameComponents.pack(prefix, firstNames.getId(), first, lastNames.getId(), last));
     }
     
     /**
-     * Gets a random last name from appropriate pools
+     * Renders components into a name in a single pass over the template
      */
-    private String getLastName(String profession, String biome) {
-        List<String> names = null;
+    private String renderName(NamePoolSnapshot pools, NameTemplate template, long components,
+            Villager.Profession profession, int level) {
+        String first = pools.resolve(NameComponents.firstPool(components), NameComponents.first(components));
+        String last = pools.resolve(NameComponents.lastPool(components), NameComponents.last(components));
+        String prefix = pools.resolve(pools.getLegendaryPrefixes().getId(), NameComponents.prefix(components));
         
-        // Try biome-specific names first if enabled
-        if (config.isBiomeSpecific()) {
-            names = config.getBiomeLastNames(biome);
+        // Titles are only looked up when the template shows them
+        String professionTitle = template.uses(NameTemplate.PROFESSION) ? getProfessionTitle(profession) : null;
+        String levelTitle = template.uses(NameTemplate.LEVEL) ? getLevelTitle(pools, level) : null;
+        return template.render(prefix, first != null ? first : "Unknown", last, professionTitle, levelTitle);
+    }
+    
+    /**
+     * Checks if components render to a name under any profession title and level
+     * 
+     * The title may not match the pools: villagers change profession after
+     * they are named.
+     */
+    private boolean rendersAs(NamePoolSnapshot pools, NameTemplate template, long components, int ownProfession,
+            String name) {
+        Villager.Profession[] professions = Villager.Profession.values();
+        int titles = template.uses(NameTemplate.PROFESSION) ? professions.length : 1;
+        int levels = template.uses(NameTemplate.LEVEL) ? 5 : 1;
+        for (int t = 0; t < titles; t++) {
+            Villager.Profession title = professions[ownFirst(t, ownProfession)];
+            for (int level = 1; level <= levels; level++) {
+                if (renderName(pools, template, components, title, level).equals(name)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Maps a loop counter to an order that visits the villager's own value first
+     */
+    private static int ownFirst(int i, int own) {
+        return i == 0 ? own : i <= own ? i - 1 : i;
+    }
+    
+    /**
+     * Checks if a pool entry appears in a name as a whole word, treating an absent entry as shown
+     */
+    private static boolean shows(NamePoolSnapshot pools, int pool, int index, String name) {
+        if (index < 0) {
+            return true;
+        }
+        String part = pools.resolve(pool, index);
+        if (part == null) {
+            return false;
         }
         
-        // Fall back to profession names if no biome names or biome-specific disabled
-        if (names == null || names.isEmpty()) {
-            names = config.getProfessionLastNames(profession);
+        int at = name.indexOf(part);
+        while (at >= 0) {
+            int end = at + part.length();
+            if ((at == 0 || !Character.isLetterOrDigit(name.charAt(at - 1)))
+                    && (end == name.length() || !Character.isLetterOrDigit(name.charAt(end)))) {
+                return true;
+            }
+            at = name.indexOf(part, at + 1);
+        }
+        return false;
+    }
+    
+    /**
+     * Looks up every run of consecutive words of a name in a pool
+     * 
+     * @return -1 followed by the indices found, cached per pool
+     */
+    private static int[] find(NamePool pool, String[] words, Map<NamePool, int[]> found) {
+        int[] indices = found.get(pool);
+        if (indices != null) {
+            return indices;
         }
         
-        // Fallback to "none" profession if no names found
-        if (names == null || names.isEmpty()) {
-            names = config.getProfessionLastNames("none");
+        List<Integer> matches = new ArrayList<>();
+        matches.add(-1);
+        for (int start = 0; start < words.length; start++) {
+            StringBuilder run = new StringBuilder();
+            for (int end = start; end < words.length; end++) {
+                if (end > start) {
+                    run.append(' ');
+                }
+                run.append(words[end]);
+                int index = pool.indexOf(run.toString());
+                if (index >= 0 && !matches.contains(index)) {
+                    matches.add(index);
+                }
+            }
         }
         
-        return getRandomElement(names, "");
+        indices = matches.stream().mapToInt(Integer::intValue).toArray();
+        found.put(pool, indices);
+        return indices;
     }
     
     /**
-     * Gets a legendary prefix if the RNG roll succeeds
+     * Gets the seed of a villager's deterministic name stream
      */
-    private String getLegendaryPrefix() {
-        int chance = config.getLegendaryChance();
+    private long getDeterministicSeed(NamePoolSnapshot pools, Villager villager) {
+        return NameRandom.seedFor(villager.getUniqueId(), villager.getWorld().getSeed(), pools.getDeterministicSalt());
+    }
+    
+    /**
+     * Gets a seed for a non-reproducible name
+     */
+    private static long randomSeed() {
+        return ThreadLocalRandom.current().nextLong();
+    }
+    
+    /**
+     * Rolls for a legendary prefix
+     * 
+     * @return The prefix index, or -1 if the roll failed
+     */
+    private int getLegendaryPrefix(NameRandom random, NamePoolSnapshot pools) {
+        int chance = pools.getLegendaryChance();
         if (chance <= 0) {
-            return null;
+            return -1;
         }
         
         int roll = random.nextInt(100);
         if (roll < chance) {
-            List<String> prefixes = config.getLegendaryPrefixes();
-            return getRandomElement(prefixes, null);
+            return pools.getLegendaryPrefixes().sample(random);
         }
         
-        return null;
+        return -1;
     }
     
     /**
      * Gets the profession title for the villager
      */
-    private String getProfessionTitle(Villager villager) {
-        Villager.Profession profession = villager.getProfession();
-        
+    private String getProfessionTitle(Villager.Profession profession) {
         switch (profession) {
             case ARMORER: return "Armorer";
             case BUTCHER: return "Butcher";
@@ -141,13 +538,11 @@ public class NameGenerator {
     /**
      * Gets the level title for the villager
      */
-    private String getLevelTitle(Villager villager) {
-        if (!config.shouldShowLevel()) {
+    private String getLevelTitle(NamePoolSnapshot pools, int level) {
+        if (!pools.shouldShowLevel()) {
             return null;
         }
         
-        int level = villager.getVillagerLevel();
-        
         switch (level) {
             case 1: return "Novice";
             case 2: return "Apprentice";
@@ -159,94 +554,16 @@ public class NameGenerator {
     }
     
     /**
-     * Builds the final name based on format settings
-     */
-    private String buildName(String firstName, String lastName, String legendary, 
-                            String profession, String level) {
-        String format = config.getNameFormat();
-        StringBuilder name = new StringBuilder();
-        
-        // Add legendary prefix if present
-        if (legendary != null && !legendary.isEmpty()) {
-            name.append(legendary).append(" ");
-        }
-        
-        // Add first name
-        name.append(firstName);
-        
-        // Handle different formats
-        switch (format.toLowerCase()) {
-            case "simple":
-                // Just the first name (with optional legendary prefix)
-                break;
-                
-            case "fullname":
-                // First and last name
-                if (lastName != null && !lastName.isEmpty()) {
-                    name.append(" ").append(lastName);
-                }
-                break;
-                
-            case "titled":
-            default:
-                // First name + "the" + level + profession
-                name.append(" the");
-                if (level != null && !level.isEmpty()) {
-                    name.append(" ").append(level);
-                }
-                name.append(" ").append(profession);
-                break;
-        }
-        
-        return name.toString();
-    }
-    
-    /**
-     * Gets the profession key for config lookup
-     */
-    private String getProfessionKey(Villager villager) {
-        return villager.getProfession().name().toLowerCase();
-    }
-    
-    /**
-     * Gets the biome key for config lookup
-     */
-    private String getBiomeKey(Location location) {
-        Biome biome = location.getBlock().getBiome();
-        String biomeName = biome.name().toLowerCase();
-        
-        // Map similar biomes to config categories
-        if (biomeName.contains("desert")) {
-            return "desert";
-        } else if (biomeName.contains("plains")) {
-            return "plains";
-        } else if (biomeName.contains("taiga") || biomeName.contains("forest")) {
-            return "taiga";
-        } else if (biomeName.contains("jungle")) {
-            return "jungle";
-        } else if (biomeName.contains("swamp")) {
-            return "swamp";
-        } else if (biomeName.contains("savanna")) {
-            return "savanna";
-        } else if (biomeName.contains("snow") || biomeName.contains("frozen") || biomeName.contains("ice")) {
-            return "snowy";
-        } else if (biomeName.contains("mountain") || biomeName.contains("peak") || biomeName.contains("hill")) {
-            return "mountains";
-        } else if (biomeName.contains("mushroom")) {
-            return "mushroom_fields";
-        }
-        
-        // Default to plains
-        return "plains";
-    }
-    
-    /**
-     * Gets a random element from a list
+     * Gets the biome category index for pool lookup
      */
-    private String getRandomElement(List<String> list, String defaultValue) {
-        if (list == null || list.isEmpty()) {
-            return defaultValue;
+    private int getBiomeCategory(NamePoolSnapshot pools, Location location) {
+        Biome biome;
+        if (pools.isChunkBiomeLookup()) {
+            // Read straight from the loaded chunk's biome storage, no Block wrapper
+            biome = location.getWorld().getBiome(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+        } else {
+            biome = location.getBlock().getBiome();
         }
-        return list.get(random.nextInt(list.size()));
+        return pools.getBiomeCategory(biome);
     }
 }
@@ -0,0 +1,25 @@
+package com.arcanestudios.namedvillagers;
+
+/**
+ * The randomly drawn components of a name, before rendering
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameHead {
+    
+    private final long components;
+    
+    NameHead(long components) {
+        this.components = components;
+    }
+    
+    /**
+     * Gets the packed components
+     * 
+     * @return The components
+     */
+    long getComponents() {
+        return components;
+    }
+}
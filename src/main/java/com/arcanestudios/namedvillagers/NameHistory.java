@@ -0,0 +1,508 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.entity.Entity;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Append-only log of villager renames
+ * 
+ * Every rename becomes one tab-separated line in history/history.log in the
+ * data folder: time, villager UUID, cause, actor, old name and new name.
+ * Recording a rename only adds it to a queue and to an in-memory index of
+ * recent renames per villager, which /nv history reads; it never touches
+ * the disk. A background writer commits everything queued in one write and
+ * one sync, every few ticks or as soon as a burst fills a batch. When the
+ * log would grow past its size limit it is renamed to history.1.log, older
+ * logs move up one number, and the oldest beyond the configured count is
+ * deleted.
+ * 
+ * On startup the index is filled from the current log, so recent renames
+ * survive restarts. If the log cannot be opened then, renames are kept in
+ * the index only until the next restart.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class NameHistory {
+    
+    // Queued renames that make the writer run before its next interval
+    private static final int BATCH_SIZE = 512;
+    private static final String FILE_NAME = "history.log";
+    
+    private final NamedVillagers plugin;
+    private final File folder;
+    
+    // Renames waiting for the writer, in the order they happened
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    
+    // Recent renames per villager, least recently renamed villager first; guarded by itself
+    private final LinkedHashMap<UUID, ArrayDeque<Entry>> recent = new LinkedHashMap<>();
+    
+    // Writer state, guarded by this
+    private FileChannel channel;
+    private boolean reopenPending;
+    private final StringBuilder held = new StringBuilder();
+    private int heldCount;
+    
+    // Set when the log could not be opened at startup; renames then stay in the index only
+    private volatile boolean unavailable;
+    
+    private TaskScheduler.Task flushTask;
+    private long flushInterval;
+    
+    public NameHistory(NamedVillagers plugin) {
+        this.plugin = plugin;
+        this.folder = new File(plugin.getDataFolder(), "history");
+    }
+    
+    /**
+     * Opens the current log for appending and loads its renames into the index
+     * 
+     * @throws IOException If the log cannot be opened
+     */
+    public synchronized void open() throws IOException {
+        unavailable = true;
+        folder.mkdirs();
+        File file = new File(folder, FILE_NAME);
+        if (file.exists()) {
+            load(file);
+        }
+        channel = openLog();
+        unavailable = false;
+    }
+    
+    /**
+     * Starts the async writer
+     */
+    public void start() {
+        flushInterval = plugin.getConfigManager().getSnapshot().getHistoryFlushInterval();
+        flushTask = plugin.getTaskScheduler().runTimerAsync(this::flush, flushInterval, flushInterval);
+    }
+    
+    /**
+     * Restarts the writer if a reload changed its interval
+     */
+    public void reschedule() {
+        long interval = plugin.getConfigManager().getSnapshot().getHistoryFlushInterval();
+        if (flushTask != null && interval != flushInterval) {
+            flushTask.cancel();
+            start();
+        }
+    }
+    
+    /**
+     * Stops the writer, writes everything still queued and closes the log
+     */
+    public void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        
+        synchronized (this) {
+            flush();
+            reopenPending = false;
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not close name history: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+    
+    /**
+     * Records a rename
+     * 
+     * Only queues the rename and updates the in-memory index; safe to call
+     * from any thread.
+     * 
+     * @param villager The renamed villager
+     * @param oldName The name before, or null if it had none
+     * @param newName The name after
+     * @param cause Why the villager was renamed
+     * @param actor Who renamed it, or null for the plugin itself
+     */
+    public void record(Entity villager, String oldName, String newName, NameCause cause, String actor) {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        if (!pools.isHistoryEnabled()) {
+            return;
+        }
+        
+        Entry entry = new Entry(System.currentTimeMillis(), villager.getUniqueId(), oldName, newName, cause, actor);
+        remember(entry, pools.getHistoryPerVillager(), pools.getHistoryMaxVillagers());
+        if (unavailable) {
+            // Nothing would ever write it
+            return;
+        }
+        pending.add(entry);
+        
+        // A burst does not wait for the interval; one extra write takes the whole batch
+        if (pendingCount.incrementAndGet() >= BATCH_SIZE && flushQueued.compareAndSet(false, true)) {
+            plugin.getTaskScheduler().runAsync(() -> {
+                flushQueued.set(false);
+                flush();
+            });
+        }
+    }
+    
+    /**
+     * Gets the recent renames of a villager
+     * 
+     * @param id The villager's UUID
+     * @return Renames from newest to oldest, empty if none are remembered
+     */
+    public List<Entry> getRecent(UUID id) {
+        synchronized (recent) {
+            ArrayDeque<Entry> entries = recent.get(id);
+            if (entries == null) {
+                return Collections.emptyList();
+            }
+            List<Entry> result = new ArrayList<>(entries.size());
+            Iterator<Entry> iterator = entries.descendingIterator();
+            while (iterator.hasNext()) {
+                result.add(iterator.next());
+            }
+            return result;
+        }
+    }
+    
+    /**
+     * Gets the number of renames waiting for the writer
+     * 
+     * @return Queued rename count
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+    
+    /**
+     * Writes all queued renames to the log in one commit
+     * 
+     * Runs on an async thread; callers on the main thread only ever queue.
+     */
+    synchronized void flush() {
+        if (reopenPending && !reopen()) {
+            return;
+        }
+        if (channel == null || (pending.isEmpty() && heldCount == 0)) {
+            return;
+        }
+        
+        // Entries held back while the log could not be reopened go first
+        StringBuilder batch = held;
+        Entry entry;
+        int polled = 0;
+        while ((entry = pending.poll()) != null) {
+            entry.appendTo(batch);
+            polled++;
+        }
+        pendingCount.addAndGet(-polled);
+        int count = heldCount + polled;
+        byte[] bytes = batch.toString().getBytes(StandardCharsets.UTF_8);
+        held.setLength(0);
+        heldCount = 0;
+        
+        try {
+            long maxBytes = plugin.getConfigManager().getSnapshot().getHistoryMaxFileBytes();
+            if (channel.size() > 0 && channel.size() + bytes.length > maxBytes) {
+                rotate();
+            }
+            
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            if (reopenPending) {
+                // Rotation closed the log; write this batch once it reopens
+                held.append(new String(bytes, StandardCharsets.UTF_8));
+                heldCount = count;
+                plugin.getLogger().warning("Could not reopen name history, holding " + count + " entries: "
+                    + e.getMessage());
+            } else {
+                plugin.getLogger().warning("Could not write " + count + " name history entries: "
+                    + e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * Moves the current log to history.1.log, shifting older logs up, and starts a new one
+     */
+    private void rotate() throws IOException {
+        FileChannel old = channel;
+        channel = null;
+        old.close();
+        
+        try {
+            int maxFiles = plugin.getConfigManager().getSnapshot().getHistoryMaxFiles();
+            Files.deleteIfExists(new File(folder, "history." + maxFiles + ".log").toPath());
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                File older = new File(folder, "history." + i + ".log");
+                if (older.exists()) {
+                    Files.move(older.toPath(), new File(folder, "history." + (i + 1) + ".log").toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            
+            File file = new File(folder, FILE_NAME);
+            if (maxFiles > 0) {
+                Files.move(file.toPath(), new File(folder, "history.1.log").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.deleteIfExists(file.toPath());
+            }
+        } catch (IOException e) {
+            // Keep appending to whatever history.log is left rather than dropping renames
+            plugin.getLogger().warning("Could not rotate name history, appending to the current log: "
+                + e.getMessage());
+        }
+        
+        try {
+            channel = openLog();
+        } catch (IOException e) {
+            reopenPending = true;
+            throw e;
+        }
+    }
+    
+    /**
+     * Retries opening the log after a failed rotation, keeping queued renames until it works
+     * 
+     * @return true if the log is open again
+     */
+    private boolean reopen() {
+        try {
+            channel = openLog();
+            reopenPending = false;
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not reopen name history: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Opens history.log for appending
+     */
+    private FileChannel openLog() throws IOException {
+        return FileChannel.open(new File(folder, FILE_NAME).toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+    
+    /**
+     * Fills the index from a log file, skipping lines it cannot read
+     */
+    private void load(File file) throws IOException {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Entry entry = Entry.parse(line);
+                if (entry != null) {
+                    remember(entry, pools.getHistoryPerVillager(), pools.getHistoryMaxVillagers());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Adds a rename to the index, dropping the oldest beyond the limits
+     */
+    private void remember(Entry entry, int perVillager, int maxVillagers) {
+        synchronized (recent) {
+            // Re-inserting moves the villager to the most recent end
+            ArrayDeque<Entry> entries = recent.remove(entry.id);
+            if (entries == null) {
+                entries = new ArrayDeque<>();
+            }
+            entries.addLast(entry);
+            while (entries.size() > perVillager) {
+                entries.removeFirst();
+            }
+            recent.put(entry.id, entries);
+            
+            Iterator<Map.Entry<UUID, ArrayDeque<Entry>>> iterator = recent.entrySet().iterator();
+            while (recent.size() > maxVillagers && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+    
+    /**
+     * One rename
+     */
+    public static final class Entry {
+        
+        private final long time;
+        private final UUID id;
+        private final String oldName;
+        private final String newName;
+        private final NameCause cause;
+        private final String actor;
+        
+        private Entry(long time, UUID id, String oldName, String newName, NameCause cause, String actor) {
+            this.time = time;
+            this.id = id;
+            this.oldName = oldName;
+            this.newName = newName;
+            this.cause = cause;
+            this.actor = actor;
+        }
+        
+        /**
+         * Gets when the rename happened
+         * 
+         * @return Milliseconds since the epoch
+         */
+        public long getTime() {
+            return time;
+        }
+        
+        /**
+         * Gets the renamed villager's UUID
+         * 
+         * @return The UUID
+         */
+        public UUID getUniqueId() {
+            return id;
+        }
+        
+        /**
+         * Gets the name before the rename
+         * 
+         * @return The old name, or null if the villager had none
+         */
+        public String getOldName() {
+            return oldName;
+        }
+        
+        /**
+         * Gets the name after the rename
+         * 
+         * @return The new name
+         */
+        public String getNewName() {
+            return newName;
+        }
+        
+        /**
+         * Gets why the villager was renamed
+         * 
+         * @return The cause
+         */
+        public NameCause getCause() {
+            return cause;
+        }
+        
+        /**
+         * Gets who renamed the villager
+         * 
+         * @return The actor's name, or null for the plugin itself
+         */
+        public String getActor() {
+            return actor;
+        }
+        
+        /**
+         * Appends the rename as one log line
+         */
+        private void appendTo(StringBuilder line) {
+            line.append(time).append('\t').append(id).append('\t').append(cause.name()).append('\t');
+            escape(line, actor);
+            line.append('\t');
+            escape(line, oldName);
+            line.append('\t');
+            escape(line, newName);
+            line.append('\n');
+        }
+        
+        /**
+         * Reads a rename from a log line
+         * 
+         * @return The rename, or null if the line is malformed
+         */
+        private static Entry parse(String line) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 6) {
+                return null;
+            }
+            try {
+                return new Entry(Long.parseLong(fields[0]), UUID.fromString(fields[1]), unescape(fields[4]),
+                    unescape(fields[5]), NameCause.valueOf(fields[2]), unescape(fields[3]));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        
+        /**
+         * Writes a field so it cannot break the line apart; null becomes an empty field
+         */
+        private static void escape(StringBuilder line, String value) {
+            if (value == null) {
+                return;
+            }
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\': line.append("\\\\"); break;
+                    case '\t': line.append("\\t"); break;
+                    case '\n': line.append("\\n"); break;
+                    default: line.append(c);
+                }
+            }
+        }
+        
+        /**
+         * Reverses escape; an empty field becomes null
+         */
+        private static String unescape(String field) {
+            if (field.isEmpty()) {
+                return null;
+            }
+            if (field.indexOf('\\') < 0) {
+                return field;
+            }
+            
+            StringBuilder value = new StringBuilder(field.length());
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                if (c == '\\' && i + 1 < field.length()) {
+                    char next = field.charAt(++i);
+                    value.append(next == 't' ? '\t' : next == 'n' ? '\n' : next);
+                } else {
+                    value.append(c);
+                }
+            }
+            return value.toString();
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.arcanestudios.namedvillagers;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Letter-level Markov chain that invents names resembling a pool
+ * 
+ * Trained once from a name pool when the configuration loads. A state is the
+ * last few letters (the order), and each state owns a row of the letters that
+ * followed it in the training names together with how often, plus how often a
+ * name ended there. Rows are flattened into primitive arrays, so walking the
+ * chain is an array scan per letter with no allocation.
+ * 
+ * A name is fully determined by its seed, which is what lets it be stored in
+ * the index field of the name components and rendered again later.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameModel {
+    
+    /** Highest supported order; larger states would not fit the table */
+    static final int MAX_ORDER = 3;
+    
+    private static final int ATTEMPTS = 8;
+    
+    private final char[] alphabet;
+    private final int base;
+    private final long states;
+    private final LongLongHashMap rows;
+    private final int[] rowStart;
+    private final int[] rowTotal;
+    private final int[] rowEnd;
+    private final int[] nextToken;
+    private final int[] cumulative;
+    private final int minLength;
+    private final int maxLength;
+    private final int contentHash;
+    
+    private NameModel(char[] alphabet, int order, Map<Long, int[]> counts, int minLength, int maxLength,
+            int contentHash) {
+        this.alphabet = alphabet;
+        this.base = alphabet.length + 1;
+        long modulus = 1;
+        for (int i = 0; i < order; i++) {
+            modulus *= base;
+        }
+        this.states = modulus;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+        this.contentHash = contentHash;
+        
+        // Flatten the counts into rows; token 0 (end of name) sorts first in each row
+        int transitions = 0;
+        for (int[] row : counts.values()) {
+            for (int count : row) {
+                transitions += count > 0 ? 1 : 0;
+            }
+        }
+        this.rows = new LongLongHashMap(counts.size());
+        this.rowStart = new int[counts.size() + 1];
+        this.rowTotal = new int[counts.size()];
+        this.rowEnd = new int[counts.size()];
+        this.nextToken = new int[transitions];
+        this.cumulative = new int[transitions];
+        
+        int row = 0;
+        int transition = 0;
+        for (Map.Entry<Long, int[]> entry : counts.entrySet()) {
+            rows.put(entry.getKey() + 1, row);
+            rowStart[row] = transition;
+            int total = 0;
+            int[] tokens = entry.getValue();
+            for (int token = 0; token < tokens.length; token++) {
+                if (tokens[token] > 0) {
+                    total += tokens[token];
+                    nextToken[transition] = token;
+                    cumulative[transition] = total;
+                    transition++;
+                }
+            }
+            rowTotal[row] = total;
+            rowEnd[row] = tokens[0];
+            row++;
+        }
+        rowStart[row] = transition;
+    }
+    
+    /**
+     * Trains a model on the names of a pool
+     * 
+     * @param pool The pool to learn from
+     * @param order Letters of context per state, 1 to MAX_ORDER
+     * @param minLength Shortest name to produce
+     * @param maxLength Longest name to produce
+     * @return The model, or null if the pool is empty
+     */
+    static NameModel train(NamePool pool, int order, int minLength, int maxLength) {
+        if (pool.size() == 0) {
+            return null;
+        }
+        
+        // Collect the letters used, so tokens stay small and the state table dense
+        StringBuilder letters = new StringBuilder();
+        String[] names = new String[pool.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = pool.get(i);
+            letters.append(names[i]);
+        }
+        char[] sorted = letters.toString().toCharArray();
+        Arrays.sort(sorted);
+        int distinct = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[distinct++] = sorted[i];
+            }
+        }
+        char[] alphabet = Arrays.copyOf(sorted, distinct);
+        int base = alphabet.length + 1;
+        long modulus = 1;
+        for (int i = 0; i < order; i++) {
+            modulus *= base;
+        }
+        
+        // Count which token follows each state; sorted so rows are built in a stable order
+        Map<Long, int[]> counts = new TreeMap<>();
+        for (String name : names) {
+            long state = 0;
+            for (int i = 0; i < name.length(); i++) {
+                int token = Arrays.binarySearch(alphabet, name.charAt(i)) + 1;
+                counts.computeIfAbsent(state, key -> new int[base])[token]++;
+                state = (state * base + token) % modulus;
+            }
+            counts.computeIfAbsent(state, key -> new int[base])[0]++;
+        }
+        
+        int hash = Arrays.hashCode(names);
+        hash = 31 * hash + order;
+        hash = 31 * hash + minLength;
+        hash = 31 * hash + maxLength;
+        return new NameModel(alphabet, order, counts, minLength, maxLength, hash);
+    }
+    
+    /**
+     * Generates the name for a seed
+     * 
+     * @param seed The seed, as stored in the name components
+     * @return The name
+     */
+    String generate(int seed) {
+        char[] name = new char[maxLength];
+        return new String(name, 0, walk(seed, name));
+    }
+    
+    /**
+     * Gets the uniqueness symbol of the name for a seed
+     * 
+     * Derived from the text, so seeds that happen to produce the same name,
+     * or a name also found in a list, share a symbol.
+     * 
+     * @param seed The seed
+     * @return The symbol
+     */
+    long symbol(int seed) {
+        char[] name = new char[maxLength];
+        return NameSymbols.of(name, walk(seed, name));
+    }
+    
+    /**
+     * Gets the length of the longest name the model produces
+     * 
+     * @return The maximum length
+     */
+    int getMaxLength() {
+        return maxLength;
+    }
+    
+    /**
+     * Gets a hash of the training names and settings
+     * 
+     * @return The content hash
+     */
+    int contentHash() {
+        return contentHash;
+    }
+    
+    /**
+     * Walks the chain into a buffer, retrying walks that end outside the
+     * length bounds
+     * 
+     * @return The name length; the last attempt is kept even if out of bounds
+     */
+    private int walk(int seed, char[] name) {
+        NameRandom random = new NameRandom(((long) contentHash << 32) | (seed & 0xFFFFFFFFL));
+        int length = 0;
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            length = 0;
+            long state = 0;
+            while (true) {
+                int row = (int) rows.get(state + 1, -1L);
+                if (row < 0) {
+                    break;
+                }
+                
+                // Below the minimum the end of name is left out of the draw
+                int total = rowTotal[row];
+                int end = rowEnd[row];
+                int roll;
+                if (length < minLength) {
+                    if (total == end) {
+                        break;
+                    }
+                    roll = end + random.nextInt(total - end);
+                } else {
+                    roll = random.nextInt(total);
+                }
+                
+                int token = pick(row, roll);
+                if (token == 0) {
+                    return length;
+                }
+                if (length == maxLength) {
+                    break;
+                }
+                name[length++] = alphabet[token - 1];
+                state = (state * base + token) % states;
+            }
+        }
+        return length;
+    }
+    
+    /**
+     * Finds the token a roll lands on within a row
+     */
+    private int pick(int row, int roll) {
+        int transition = rowStart[row];
+        int last = rowStart[row + 1] - 1;
+        while (transition < last && cumulative[transition] <= roll) {
+            transition++;
+        }
+        return nextToken[transition];
+    }
+}
@@ -0,0 +1,293 @@
+package com.arcanestudios.namedvillagers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * A name list kept in a file of its own and read through a memory mapping
+ * 
+ * Two formats are supported. Text packs hold one UTF-8 name per line; blank
+ * lines and lines starting with # are skipped. Opening one scans the mapped
+ * bytes once for line breaks and keeps only the start and end offset of each
+ * name. Binary packs, built from a text pack with /nv pack, already contain
+ * that offset table and the uniqueness symbol of every name, so opening one
+ * only checks the header and offsets, and uniqueness checks never decode a
+ * name.
+ * 
+ * Names are decoded from the mapping when they are asked for; the pack itself
+ * never holds a String per name.
+ * 
+ * Binary layout, big-endian: magic "NVPK", version, name count, longest
+ * name in chars, then (start, end) byte offsets per name relative to the
+ * data section, the 64-bit NameSymbols symbol per name, and the UTF-8 data.
+ * Offsets are checked when the pack opens, so reading a name never runs
+ * past the mapping. Version 1 packs, which stored 32-bit String hash codes,
+ * are refused; rebuild them from their text pack with /nv pack.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NamePack {
+    
+    /** File extension of binary packs */
+    static final String BINARY_EXTENSION = ".nvpack";
+    
+    private static final int MAGIC = 0x4E56504B;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 16;
+    
+    private final ByteBuffer buffer;
+    private final IntBuffer spans;
+    private final LongBuffer symbols;
+    private final int dataStart;
+    private final int size;
+    private final int maxLength;
+    private final int contentHash;
+    
+    private NamePack(ByteBuffer buffer, IntBuffer spans, LongBuffer symbols, int dataStart, int size,
+            int maxLength) {
+        this.buffer = buffer;
+        this.spans = spans;
+        this.symbols = symbols;
+        this.dataStart = dataStart;
+        this.size = size;
+        this.maxLength = maxLength;
+        
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        this.contentHash = (int) crc.getValue();
+    }
+    
+    /**
+     * Maps a pack file, detecting its format from the header
+     * 
+     * @param file The text or binary pack
+     * @return The opened pack
+     * @throws IOException If the file cannot be read or is a damaged binary pack
+     */
+    static NamePack open(File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("pack is larger than 2 GB");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        if (buffer.limit() >= HEADER_BYTES && buffer.getInt(0) == MAGIC) {
+            return openBinary(buffer);
+        }
+        return openText(buffer);
+    }
+    
+    /**
+     * Reads the header and offset tables of a binary pack, which stay in the mapping
+     */
+    private static NamePack openBinary(ByteBuffer buffer) throws IOException {
+        int version = buffer.getInt(4);
+        int size = buffer.getInt(8);
+        int maxLength = buffer.getInt(12);
+        if (version != VERSION) {
+            throw new IOException("unsupported pack version " + version + ", rebuild it with /nv pack");
+        }
+        
+        long dataStart = HEADER_BYTES + 16L * size;
+        if (size < 0 || dataStart > buffer.limit()) {
+            throw new IOException("pack is truncated");
+        }
+        
+        IntBuffer spans = buffer.duplicate().position(HEADER_BYTES).limit(HEADER_BYTES + 8 * size)
+            .slice().asIntBuffer();
+        LongBuffer symbols = buffer.duplicate().position(HEADER_BYTES + 8 * size).limit((int) dataStart)
+            .slice().asLongBuffer();
+            
+        // Names are laid out one after another; anything else is damage that get() must never read through
+        long dataLength = buffer.limit() - dataStart;
+        int previousEnd = 0;
+        for (int i = 0; i < size; i++) {
+            int start = spans.get(i * 2);
+            int end = spans.get(i * 2 + 1);
+            if (start < previousEnd || end < start || end > dataLength) {
+                throw new IOException("pack is damaged at name " + i);
+            }
+            previousEnd = end;
+        }
+        return new NamePack(buffer, spans, symbols, (int) dataStart, size, maxLength);
+    }
+    
+    /**
+     * Indexes the lines of a text pack in one pass over the mapped bytes
+     */
+    private static NamePack openText(ByteBuffer buffer) {
+        int[] spans = new int[64];
+        int size = 0;
+        int maxLength = 0;
+        int limit = buffer.limit();
+        
+        // Skip a UTF-8 byte order mark
+        int position = limit >= 3 && buffer.get(0) == (byte) 0xEF && buffer.get(1) == (byte) 0xBB
+            && buffer.get(2) == (byte) 0xBF ? 3 : 0;
+        while (position < limit) {
+            int lineEnd = position;
+            while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            
+            int start = position;
+            int end = lineEnd;
+            while (start < end && isBlank(buffer.get(start))) {
+                start++;
+            }
+            while (end > start && isBlank(buffer.get(end - 1))) {
+                end--;
+            }
+            
+            if (end > start && buffer.get(start) != '#') {
+                if (size * 2 == spans.length) {
+                    spans = Arrays.copyOf(spans, spans.length * 2);
+                }
+                spans[size * 2] = start;
+                spans[size * 2 + 1] = end;
+                size++;
+                
+                // UTF-8 never takes fewer bytes than chars, so this is a safe upper bound
+                maxLength = Math.max(maxLength, end - start);
+            }
+            position = lineEnd + 1;
+        }
+        
+        return new NamePack(buffer, IntBuffer.wrap(spans, 0, size * 2).slice(), null, 0, size, maxLength);
+    }
+    
+    /**
+     * Converts a text pack into a binary pack
+     * 
+     * The target is written next to its final location and moved into place,
+     * so a server reading the old pack never sees a half-written file.
+     * 
+     * @param source The text pack
+     * @param target The binary pack to write
+     * @return The number of names written
+     * @throws IOException If either file cannot be accessed
+     */
+    static int build(File source, File target) throws IOException {
+        NamePack text = open(source);
+        // Text packs address names from the start of the mapping; binary packs from their data section
+        if (text.dataStart != 0) {
+            throw new IOException(source.getName() + " is already a binary pack");
+        }
+        
+        int dataLength = 0;
+        for (int i = 0; i < text.size; i++) {
+            dataLength += text.end(i) - text.start(i);
+        }
+        
+        int dataStart = HEADER_BYTES + 16 * text.size;
+        ByteBuffer out = ByteBuffer.allocate(dataStart + dataLength);
+        int maxLength = 0;
+        int offset = 0;
+        for (int i = 0; i < text.size; i++) {
+            String name = text.get(i);
+            int length = text.end(i) - text.start(i);
+            out.putInt(HEADER_BYTES + 8 * i, offset);
+            out.putInt(HEADER_BYTES + 8 * i + 4, offset + length);
+            out.putLong(HEADER_BYTES + 8 * text.size + 8 * i, NameSymbols.of(name));
+            out.put(dataStart + offset, text.buffer, text.start(i), length);
+            offset += length;
+            maxLength = Math.max(maxLength, name.length());
+        }
+        out.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, text.size).putInt(12, maxLength);
+        
+        File temporary = new File(target.getParentFile(), target.getName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        }
+        Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+        return text.size;
+    }
+    
+    /**
+     * Gets the number of names in the pack
+     * 
+     * @return The name count
+     */
+    int size() {
+        return size;
+    }
+    
+    /**
+     * Decodes a name from the mapping
+     * 
+     * @param index The index, must be in range
+     * @return The name
+     */
+    String get(int index) {
+        int start = start(index);
+        byte[] bytes = new byte[end(index) - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Gets the uniqueness symbol of a name, decoding it only for text packs
+     * 
+     * @param index The index, must be in range
+     * @return The symbol
+     */
+    long symbol(int index) {
+        return symbols != null ? symbols.get(index) : NameSymbols.of(get(index));
+    }
+    
+    /**
+     * Gets an upper bound for the length of the names
+     * 
+     * @return The longest name length in chars
+     */
+    int getMaxLength() {
+        return maxLength;
+    }
+    
+    /**
+     * Gets a checksum of the file contents
+     * 
+     * @return The content hash
+     */
+    int contentHash() {
+        return contentHash;
+    }
+    
+    /**
+     * Gets the absolute offset where a name starts
+     */
+    private int start(int index) {
+        return dataStart + spans.get(index * 2);
+    }
+    
+    /**
+     * Gets the absolute offset just past a name
+     */
+    private int end(int index) {
+        return dataStart + spans.get(index * 2 + 1);
+    }
+    
+    /**
+     * Checks if a byte is whitespace around a name
+     */
+    private static boolean isBlank(byte value) {
+        return value == ' ' || value == '\t' || value == '\r';
+    }
+}
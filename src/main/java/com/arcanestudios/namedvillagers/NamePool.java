@@ -0,0 +1,273 @@
+package com.arcanestudios.namedvillagers;
+
+import java.util.Arrays;
+
+/**
+ * One compiled list of names, e.g. the librarian first names
+ * 
+ * Keeps the names next to their 64-bit symbols so uniqueness checks can
+ * work on numbers instead of strings. A pool can instead be backed by a
+ * trained NameModel; its indices are then seeds and every one of them yields
+ * a generated name. Pools read from a NamePack decode each name from the
+ * pack when it is needed.
+ * 
+ * Weighted pools are compiled into a Walker/Vose alias table: one random
+ * long picks a column and a coin within it, so a draw costs the same for ten
+ * names or ten thousand, without a scan over the weights.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NamePool {
+    
+    private final int id;
+    private final String[] names;
+    private final long[] symbols;
+    private final int maxLength;
+    private final NameModel model;
+    private final NamePack pack;
+    
+    // Alias table, null when every name is equally likely. Each column packs
+    // its keep threshold (high 32 bits) and alias (low 32 bits), so a draw
+    // reads a single element.
+    private final long[] aliasTable;
+    
+    // Symbol to index + 1, built the first time a name is looked up
+    private volatile LongLongHashMap indices;
+    
+    /**
+     * Creates a pool of names
+     * 
+     * @param id The pool id
+     * @param names The names
+     * @param weights Relative weight of each name, or null to draw uniformly
+     */
+    NamePool(int id, String[] names, double[] weights) {
+        this.id = id;
+        this.names = names;
+        this.symbols = new long[names.length];
+        int longest = 0;
+        for (int i = 0; i < names.length; i++) {
+            symbols[i] = NameSymbols.of(names[i]);
+            longest = Math.max(longest, names[i].length());
+        }
+        this.maxLength = longest;
+        this.model = null;
+        this.pack = null;
+        
+        this.aliasTable = weights != null ? buildAliasTable(weights) : null;
+    }
+    
+    NamePool(int id, NameModel model) {
+        this.id = id;
+        this.names = new String[0];
+        this.symbols = new long[0];
+        this.maxLength = model.getMaxLength();
+        this.model = model;
+        this.pack = null;
+        this.aliasTable = null;
+    }
+    
+    NamePool(int id, NamePack pack) {
+        this.id = id;
+        this.names = new String[0];
+        this.symbols = new long[0];
+        this.maxLength = pack.getMaxLength();
+        this.model = null;
+        this.pack = pack;
+        this.aliasTable = null;
+    }
+    
+    /**
+     * Fills the alias table with Vose's method
+     * 
+     * Every column holds one slot's worth of probability: the chance to keep
+     * its own name, with the rest going to its alias.
+     */
+    private static long[] buildAliasTable(double[] weights) {
+        int count = weights.length;
+        double total = 0.0;
+        for (double weight : weights) {
+            total += weight;
+        }
+        
+        long[] table = new long[count];
+        double[] scaled = new double[count];
+        int[] small = new int[count];
+        int[] large = new int[count];
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < count; i++) {
+            scaled[i] = weights[i] * count / total;
+            if (scaled[i] < 1.0) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        
+        // Pair each light column with a heavy one that tops it up
+        while (smallCount > 0 && largeCount > 0) {
+            int light = small[--smallCount];
+            int heavy = large[--largeCount];
+            table[light] = column(toThreshold(scaled[light]), heavy);
+            scaled[heavy] -= 1.0 - scaled[light];
+            if (scaled[heavy] < 1.0) {
+                small[smallCount++] = heavy;
+            } else {
+                large[largeCount++] = heavy;
+            }
+        }
+        
+        // Whatever is left is full up to rounding error
+        while (largeCount > 0) {
+            int full = large[--largeCount];
+            table[full] = column(Integer.MAX_VALUE, full);
+        }
+        while (smallCount > 0) {
+            int full = small[--smallCount];
+            table[full] = column(Integer.MAX_VALUE, full);
+        }
+        return table;
+    }
+    
+    /**
+     * Packs a keep threshold and an alias into a table column
+     */
+    private static long column(int keepThreshold, int alias) {
+        return ((long) keepThreshold << 32) | alias;
+    }
+    
+    /**
+     * Scales a keep probability to a 31-bit coin threshold
+     */
+    private static int toThreshold(double probability) {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0.0, probability) * 2147483648.0);
+    }
+    
+    /**
+     * Gets the id of this pool within its snapshot
+     * 
+     * @return The pool id
+     */
+    int getId() {
+        return id;
+    }
+    
+    /**
+     * Gets the number of names in the pool
+     * 
+     * @return The pool size
+     */
+    int size() {
+        if (model != null) {
+            return NameComponents.MAX_INDICES;
+        }
+        return pack != null ? Math.min(pack.size(), NameComponents.MAX_INDICES) : names.length;
+    }
+    
+    /**
+     * Checks if the pool invents its names from a trained model
+     * 
+     * @return true for a model pool
+     */
+    boolean isGenerated() {
+        return model != null;
+    }
+    
+    /**
+     * Draws a random index, honouring the weights
+     * 
+     * @param random The random stream
+     * @return The index, or -1 if the pool is empty
+     */
+    int sample(NameRandom random) {
+        if (aliasTable == null) {
+            int size = size();
+            return size > 0 ? random.nextInt(size) : -1;
+        }
+        
+        // High bits pick the column, low bits flip its coin
+        long bits = random.nextLong();
+        int index = (int) (((bits >>> 32) * aliasTable.length) >>> 32);
+        long column = aliasTable[index];
+        return (int) (bits & Integer.MAX_VALUE) < (int) (column >>> 32) ? index : (int) column;
+    }
+    
+    /**
+     * Gets a name by index
+     * 
+     * @param index The index, must be in range
+     * @return The name
+     */
+    String get(int index) {
+        if (model != null) {
+            return model.generate(index);
+        }
+        return pack != null ? pack.get(index) : names[index];
+    }
+    
+    /**
+     * Gets the uniqueness symbol of a name
+     * 
+     * @param index The index, must be in range
+     * @return The symbol, the same for equal names from any source
+     */
+    long getSymbol(int index) {
+        if (model != null) {
+            return model.symbol(index);
+        }
+        return pack != null ? pack.symbol(index) : symbols[index];
+    }
+    
+    /**
+     * Finds the index of a name
+     * 
+     * Only used to convert names stored as plain text, so the lookup table is
+     * built on the first call. Model pools cannot be searched.
+     * 
+     * @param name The name, exact case
+     * @return The first index holding the name, or -1 if the pool does not list it
+     */
+    int indexOf(String name) {
+        if (model != null) {
+            return -1;
+        }
+        
+        LongLongHashMap table = indices;
+        if (table == null) {
+            int size = size();
+            table = new LongLongHashMap(size);
+            for (int i = 0; i < size; i++) {
+                if (!table.containsKey(getSymbol(i))) {
+                    table.put(getSymbol(i), i + 1);
+                }
+            }
+            indices = table;
+        }
+        
+        int index = (int) table.get(NameSymbols.of(name), 0L) - 1;
+        return index >= 0 && get(index).equals(name) ? index : -1;
+    }
+    
+    /**
+     * Gets a hash of the names in order, used to detect pool changes
+     * 
+     * @return The content hash
+     */
+    int contentHash() {
+        if (model != null) {
+            return model.contentHash();
+        }
+        return pack != null ? pack.contentHash() : Arrays.hashCode(names);
+    }
+    
+    /**
+     * Gets the length of the longest name in the pool
+     * 
+     * @return The longest name length, 0 if empty
+     */
+    int getMaxLength() {
+        return maxLength;
+    }
+}
@@ -0,0 +1,152 @@
+package com.arcanestudios.namedvillagers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Gives every name pool an id that survives reloads and restarts
+ * 
+ * Stored name components refer to pools by id, so a pool must keep its id
+ * when other lists are added, removed or moved around in config.yml. Pools
+ * are identified by a key: the config path of a list, the file name of a
+ * pack, or the key of the pool a model was trained on. The first time a key
+ * is seen it takes a free id, and the pairing is kept in pool-ids.txt in the
+ * data folder.
+ * 
+ * Only 256 ids fit in the components. When all are taken, the key that went
+ * unused for the longest time and is not part of the snapshot being compiled
+ * gives up its id. Names still pointing at it no longer match their stored
+ * hash and keep their displayed text instead of being renamed.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NamePoolIds {
+    
+    private static final String FILE_NAME = "pool-ids.txt";
+    
+    private final File file;
+    
+    // Least recently used key first
+    private final LinkedHashMap<String, Integer> ids = new LinkedHashMap<>(16, 0.75f, true);
+    private final BitSet used = new BitSet(NameComponents.MAX_POOLS);
+    private boolean changed;
+    
+    NamePoolIds(NamedVillagers plugin) {
+        this.file = new File(plugin.getDataFolder(), FILE_NAME);
+    }
+    
+    /**
+     * Reads the saved ids, skipping lines it cannot read
+     * 
+     * @throws IOException If the file exists but cannot be read
+     */
+    synchronized void load() throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int space = line.indexOf(' ');
+                if (space <= 0) {
+                    continue;
+                }
+                try {
+                    int id = Integer.parseInt(line.substring(0, space));
+                    String key = line.substring(space + 1);
+                    if (id >= 0 && id < NameComponents.MAX_POOLS && !used.get(id) && !ids.containsKey(key)) {
+                        ids.put(key, id);
+                        used.set(id);
+                    }
+                } catch (NumberFormatException e) {
+                    // Not written by us; ignore the line
+                }
+            }
+        }
+    }
+    
+    /**
+     * Gets the id of a pool, assigning one if the key is new
+     * 
+     * @param key The pool key
+     * @param reserved Ids already given out for the snapshot being compiled; updated
+     * @return The id, or -1 if every id is held by the snapshot being compiled
+     */
+    synchronized int assign(String key, BitSet reserved) {
+        Integer known = ids.get(key);
+        if (known != null && !reserved.get(known)) {
+            reserved.set(known);
+            return known;
+        }
+        if (known != null) {
+            return -1;
+        }
+        
+        int id = used.nextClearBit(0);
+        if (id >= NameComponents.MAX_POOLS) {
+            id = evict(reserved);
+            if (id < 0) {
+                return -1;
+            }
+        }
+        ids.put(key, id);
+        used.set(id);
+        reserved.set(id);
+        changed = true;
+        return id;
+    }
+    
+    /**
+     * Writes the ids if they changed since the last load or save
+     * 
+     * The file is written next to its final location and moved into place,
+     * so a crash never leaves it half written.
+     * 
+     * @throws IOException If the file cannot be written
+     */
+    synchronized void save() throws IOException {
+        if (!changed) {
+            return;
+        }
+        
+        file.getParentFile().mkdirs();
+        File temporary = new File(file.getParentFile(), FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary.toPath(), StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Integer> entry : ids.entrySet()) {
+                writer.write(entry.getValue() + " " + entry.getKey());
+                writer.newLine();
+            }
+        }
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        changed = false;
+    }
+    
+    /**
+     * Frees the id of the least recently used key outside the snapshot being compiled
+     * 
+     * @return The freed id, or -1 if there is none
+     */
+    private int evict(BitSet reserved) {
+        Iterator<Map.Entry<String, Integer>> iterator = ids.entrySet().iterator();
+        while (iterator.hasNext()) {
+            int id = iterator.next().getValue();
+            if (!reserved.get(id)) {
+                iterator.remove();
+                used.clear(id);
+                return id;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,1197 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.block.Biome;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Villager;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Immutable, pre-compiled view of the naming configuration
+ * 
+ * Built once when the configuration is loaded. Name pools are stored in arrays
+ * indexed by biome category and profession ordinal with the
+ * biome -> profession -> "none" fallback chain already resolved, so name
+ * generation never touches the YAML tree.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public final class NamePoolSnapshot {
+    
+    public static final int SCOPE_WORLD = 0;
+    public static final int SCOPE_RADIUS = 1;
+    public static final int NAMETAGS_ALWAYS = 0;
+    public static final int NAMETAGS_RADIUS = 1;
+    public static final int NAMETAGS_LOOK = 2;
+    
+    private static final String[] EMPTY = new String[0];
+    
+    // Formats available without a formats section, matching the original three
+    private static final String[][] BUILT_IN_FORMATS = {
+        {"simple", "[{legendary} ]{first}"},
+        {"titled", "[{legendary} ]{first} the [{level} ]{profession}"},
+        {"fullname", "[{legendary} ]{first}[ {last}]"}
+    };
+    
+    // Longest profession and level titles
+    private static final int MAX_PROFESSION_LENGTH = 13;
+    private static final int MAX_LEVEL_LENGTH = 10;
+    
+    // A family pick reads every chunk in the square twice under the world's lock
+    static final int MAX_FAMILY_RADIUS = 8;
+    private static final Villager.Profession[] PROFESSIONS = Villager.Profession.values();
+    
+    private final boolean autoName;
+    private final int legendaryChance;
+    private final String formatName;
+    private final boolean showLevel;
+    private final boolean renameOnCure;
+    private final boolean biomeSpecific;
+    private final boolean debug;
+    private final boolean chunkBiomeLookup;
+    private final boolean deterministic;
+    private final long deterministicSalt;
+    private final boolean supplyEnabled;
+    private final int supplyBufferSize;
+    private final int supplyRefillThreshold;
+    private final int supplyRefillInterval;
+    private final boolean uniqueNames;
+    private final int uniquenessScope;
+    private final int uniquenessRadius;
+    private final int uniquenessAttempts;
+    private final int registryFlushInterval;
+    private final boolean backfillEnabled;
+    private final int queueBudgetMicros;
+    private final int regenerateBudgetMicros;
+    private final int registryMaxResults;
+    private final int registryMaxListRadius;
+    private final int metricsExportInterval;
+    private final boolean binaryStorage;
+    private final boolean metricsExportJson;
+    private final boolean markovNames;
+    private final int markovOrder;
+    private final int markovMinLength;
+    private final int markovMaxLength;
+    private final int nametagMode;
+    private final boolean familySurnames;
+    private final boolean historyEnabled;
+    private final int historyFlushInterval;
+    private final long historyMaxFileBytes;
+    private final int historyMaxFiles;
+    private final int historyPerVillager;
+    private final int historyMaxVillagers;
+    private final int familyRadius;
+    private final int familyShareChance;
+    private final int nametagRadius;
+    private final int nametagLookDistance;
+    private final int nametagUpdateInterval;
+    private final int nametagTogglesPerTick;
+    private final int tabCompleteLimit;
+    
+    private final List<String> warnings = new ArrayList<>();
+    private final BiomeCategoryTable biomeTable;
+    private final NamingPolicy namingPolicy;
+    private final String[] categories;
+    private final Map<String, Integer> categoryIndex;
+    private final List<NamePool> pools = new ArrayList<>();
+    private final NamePool[] poolsById = new NamePool[NameComponents.MAX_POOLS];
+    private final Map<NamePool, String> poolKeys = new IdentityHashMap<>();
+    private final BitSet reservedIds = new BitSet(NameComponents.MAX_POOLS);
+    private final NamePoolIds poolIds;
+    private final File packFolder;
+    private final Map<String, NamePool> packPools = new HashMap<>();
+    private final NamePool[][] firstNames;
+    private final NamePool[][] lastNames;
+    private final NamePool legendaryPrefixes;
+    private final NameTemplate defaultTemplate;
+    private final NameTemplate[][] templates;
+    private final Map<String, NameTemplate> worldTemplates = new HashMap<>();
+    private final boolean dynamicTemplates;
+    private final NameTrie nameWords = new NameTrie();
+    private final int renderVersion;
+    
+    private NamePoolSnapshot(ConfigurationSection config, File packFolder, NamePoolIds poolIds) {
+        this.packFolder = packFolder;
+        this.poolIds = poolIds;
+        this.autoName = config.getBoolean("settings.auto-name", true);
+        this.legendaryChance = config.getInt("settings.legendary-chance", 5);
+        this.formatName = config.getString("settings.format", "titled");
+        this.showLevel = config.getBoolean("settings.show-level", true);
+        this.renameOnCure = config.getBoolean("settings.rename-on-cure", false);
+        this.biomeSpecific = config.getBoolean("settings.biome-specific", true);
+        this.debug = config.getBoolean("settings.debug", false);
+        this.chunkBiomeLookup = config.getBoolean("biome-mappings.use-chunk-data", true);
+        this.deterministic = config.getBoolean("settings.deterministic", false);
+        this.deterministicSalt = config.getLong("settings.deterministic-salt", 0L);
+        this.supplyEnabled = config.getBoolean("name-supply.enabled", true);
+        this.supplyBufferSize = Math.max(2, config.getInt("name-supply.buffer-size", 32));
+        this.supplyRefillThreshold = Math.max(0, config.getInt("name-supply.refill-threshold", 8));
+        this.supplyRefillInterval = Math.max(1, config.getInt("name-supply.refill-interval-ticks", 5));
+        this.uniqueNames = config.getBoolean("uniqueness.enabled", false);
+        this.uniquenessScope = "radius".equalsIgnoreCase(config.getString("uniqueness.scope", "world"))
+            ? SCOPE_RADIUS : SCOPE_WORLD;
+        this.uniquenessRadius = Math.max(1, config.getInt("uniqueness.chunk-radius", 8));
+        this.uniquenessAttempts = Math.max(1, config.getInt("uniqueness.max-attempts", 8));
+        this.backfillEnabled = config.getBoolean("backfill.enabled", true);
+        this.queueBudgetMicros = Math.max(1, config.getInt("naming-queue.tick-budget-micros", 500));
+        this.regenerateBudgetMicros = Math.max(1, config.getInt("regenerate.tick-budget-micros", 2000));
+        this.registryFlushInterval = Math.max(1, config.getInt("registry.flush-interval-ticks", 100));
+        this.registryMaxResults = Math.max(1, config.getInt("registry.max-results", 10));
+        this.registryMaxListRadius = Math.max(0, config.getInt("registry.max-list-radius", 8));
+        this.metricsExportInterval = Math.max(0, config.getInt("metrics.export-interval-ticks", 0));
+        this.metricsExportJson = "json".equalsIgnoreCase(config.getString("metrics.export-format", "csv"));
+        this.binaryStorage = "binary".equalsIgnoreCase(config.getString("storage.format", "string"));
+        this.markovOrder = Math.max(1, Math.min(NameModel.MAX_ORDER, config.getInt("generator.order", 2)));
+        this.markovMinLength = Math.max(1, config.getInt("generator.min-length", 3));
+        this.markovMaxLength = Math.max(markovMinLength, config.getInt("generator.max-length", 10));
+        String mode = config.getString("generator.mode", "list");
+        this.markovNames = "markov".equalsIgnoreCase(mode);
+        if (!markovNames && !"list".equalsIgnoreCase(mode)) {
+            warnings.add("generator.mode '" + mode + "' is not list or markov, using list");
+        }
+        this.historyEnabled = config.getBoolean("history.enabled", true);
+        this.historyFlushInterval = Math.max(1, config.getInt("history.flush-interval-ticks", 40));
+        this.historyMaxFileBytes = Math.max(1, config.getInt("history.max-file-size-kb", 1024)) * 1024L;
+        this.historyMaxFiles = Math.max(0, config.getInt("history.max-files", 5));
+        this.historyPerVillager = Math.max(1, config.getInt("history.entries-per-villager", 10));
+        this.historyMaxVillagers = Math.max(1, config.getInt("history.max-villagers", 5000));
+        this.familySurnames = config.getBoolean("families.enabled", false);
+        this.familyRadius = Math.max(0, Math.min(MAX_FAMILY_RADIUS, config.getInt("families.chunk-radius", 2)));
+        this.familyShareChance = Math.max(0, Math.min(100, config.getInt("families.share-chance", 80)));
+        this.nametagRadius = Math.max(1, config.getInt("nametags.show-radius", 16));
+        this.nametagLookDistance = Math.max(1, config.getInt("nametags.look-distance", 8));
+        this.nametagUpdateInterval = Math.max(1, config.getInt("nametags.update-interval-ticks", 10));
+        this.nametagTogglesPerTick = Math.max(1, config.getInt("nametags.toggles-per-tick", 50));
+        this.tabCompleteLimit = Math.max(0, config.getInt("tab-complete.max-suggestions", 20));
+        String nametags = config.getString("nametags.mode", "always");
+        if ("radius".equalsIgnoreCase(nametags)) {
+            this.nametagMode = NAMETAGS_RADIUS;
+        } else if ("look".equalsIgnoreCase(nametags)) {
+            this.nametagMode = NAMETAGS_LOOK;
+        } else {
+            this.nametagMode = NAMETAGS_ALWAYS;
+            if (!"always".equalsIgnoreCase(nametags)) {
+                warnings.add("nametags.mode '" + nametags + "' is not always, radius or look, using always");
+            }
+        }
+        
+        this.namingPolicy = NamingPolicy.compile(config.getConfigurationSection("naming-policy"), autoName, warnings);
+        
+        // Collect categories: the ones the biome mappings produce, then any extra biome sections
+        List<String> categoryList = new ArrayList<>();
+        this.biomeTable = BiomeCategoryTable.compile(
+            config.getConfigurationSection("biome-mappings"), categoryList, warnings);
+        ConfigurationSection biomes = config.getConfigurationSection("biomes");
+        if (biomes != null) {
+            for (String key : biomes.getKeys(false)) {
+                String category = key.toLowerCase(Locale.ROOT);
+                if (!categoryList.contains(category)) {
+                    categoryList.add(category);
+                }
+            }
+        }
+        this.categories = categoryList.toArray(new String[0]);
+        this.categoryIndex = new HashMap<>();
+        for (int i = 0; i < categories.length; i++) {
+            categoryIndex.put(categories[i], i);
+        }
+        
+        String[] prefixes = toArray(config.getList("legendary-prefixes"));
+        if (prefixes.length > NameComponents.MAX_PREFIXES) {
+            warnings.add("legendary-prefixes has more than " + NameComponents.MAX_PREFIXES
+                + " entries, the rest are never drawn");
+            prefixes = Arrays.copyOf(prefixes, NameComponents.MAX_PREFIXES);
+        }
+        this.legendaryPrefixes = createPool(prefixes, "legendary-prefixes");
+        NamePool[][] first = resolvePools(config, "first");
+        NamePool[][] last = resolvePools(config, "last");
+        if (markovNames) {
+            // Models take ids of their own, so names stored in list mode still resolve
+            Map<NamePool, NamePool> models = new IdentityHashMap<>();
+            first = trainModels(first, models);
+            last = trainModels(last, models);
+        }
+        this.firstNames = first;
+        this.lastNames = last;
+        
+        // Compile the name formats once; rendering only walks the operations
+        Map<String, NameTemplate> compiled = new HashMap<>();
+        int[] maxLengths = maxPlaceholderLengths();
+        this.defaultTemplate = compileFormat(config, formatName, compiled, maxLengths, "settings.format");
+        this.templates = resolveTemplates(config, compiled, maxLengths);
+        boolean dynamic = false;
+        for (NameTemplate template : compiled.values()) {
+            dynamic |= template.isDynamic();
+        }
+        this.dynamicTemplates = dynamic;
+        this.renderVersion = computeRenderVersion();
+        
+        // Tab completion suggests the listed names; invented ones are never the same twice
+        for (NamePool pool : pools) {
+            if (pool.isGenerated()) {
+                continue;
+            }
+            for (int i = 0; i < pool.size(); i++) {
+                for (String word : pool.get(i).split(" ")) {
+                    nameWords.add(word);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Compiles a snapshot from a loaded configuration
+     * 
+     * @param config The root configuration section
+     * @param packFolder The folder name-packs entries are read from
+     * @param poolIds The table that keeps pool ids stable across reloads
+     * @return The compiled snapshot
+     */
+    public static NamePoolSnapshot compile(ConfigurationSection config, File packFolder, NamePoolIds poolIds) {
+        return new NamePoolSnapshot(config, packFolder, poolIds);
+    }
+    
+    /**
+     * Resolves the full fallback chain for every category/profession pair
+     */
+    private NamePool[][] resolvePools(ConfigurationSection config, String part) {
+        // Profession pools, falling back to the "none" profession
+        String nonePath = "professions.none." + part;
+        NamePool nonePool = loadPool(config, "names." + nonePath, "name-packs." + nonePath);
+        if (nonePool == null) {
+            nonePool = createPool(EMPTY, "names." + nonePath);
+        }
+        NamePool[] professionPools = new NamePool[PROFESSIONS.length];
+        for (Villager.Profession profession : PROFESSIONS) {
+            String key = profession.name().toLowerCase(Locale.ROOT);
+            if (profession == Villager.Profession.NONE) {
+                professionPools[profession.ordinal()] = nonePool;
+                continue;
+            }
+            String path = "professions." + key + "." + part;
+            NamePool pool = loadPool(config, "names." + path, "name-packs." + path);
+            professionPools[profession.ordinal()] = pool != null ? pool : nonePool;
+        }
+        
+        // Biome pools take precedence when biome-specific naming is enabled
+        NamePool[][] resolved = new NamePool[categories.length][];
+        for (int category = 0; category < categories.length; category++) {
+            String path = "biomes." + categories[category] + "." + part;
+            NamePool biomePool = biomeSpecific ? loadPool(config, path, "name-packs." + path) : null;
+            
+            if (biomePool == null) {
+                resolved[category] = professionPools;
+                continue;
+            }
+            
+            NamePool[] row = new NamePool[PROFESSIONS.length];
+            for (int profession = 0; profession < row.length; profession++) {
+                row[profession] = biomePool;
+            }
+            resolved[category] = row;
+        }
+        return resolved;
+    }
+    
+    /**
+     * Creates the pool for one name list, preferring a pack that replaces it
+     * 
+     * @return The pool, or null if the list is empty and no pack could be read
+     */
+    private NamePool loadPool(ConfigurationSection config, String listPath, String packPath) {
+        String packName = config.getString(packPath);
+        if (packName != null && !packName.isEmpty()) {
+            NamePool pack = openPack(packName, packPath);
+            if (pack != null) {
+                return pack;
+            }
+        }
+        
+        String[] names = toArray(config.getList(listPath));
+        return names.length > 0 ? createPool(names, listPath) : null;
+    }
+    
+    /**
+     * Maps a pack file once per snapshot, however many lists it replaces
+     * 
+     * @return The pack's pool, or null if it is missing, unreadable or empty
+     */
+    private NamePool openPack(String fileName, String path) {
+        if (packPools.containsKey(fileName)) {
+            return packPools.get(fileName);
+        }
+        
+        NamePool pool = null;
+        File file = new File(packFolder, fileName);
+        if (!file.isFile()) {
+            warnings.add(path + ": pack " + fileName + " is not in the packs folder, using the list in config.yml");
+        } else {
+            try {
+                NamePack pack = NamePack.open(file);
+                if (pack.size() == 0) {
+                    warnings.add(path + ": pack " + fileName + " has no names, using the list in config.yml");
+                } else {
+                    if (pack.size() > NameComponents.MAX_INDICES) {
+                        warnings.add(path + ": pack " + fileName + " has more than " + NameComponents.MAX_INDICES
+                            + " names, the rest are never drawn");
+                    }
+                    int id = assignId("pack:" + fileName, path);
+                    if (id >= 0) {
+                        pool = new NamePool(id, pack);
+                        register(pool, "pack:" + fileName);
+                    }
+                }
+            } catch (IOException e) {
+                warnings.add(path + ": could not read pack " + fileName + " (" + e.getMessage()
+                    + "), using the list in config.yml");
+            }
+        }
+        packPools.put(fileName, pool);
+        return pool;
+    }
+    
+    /**
+     * Replaces every pool in a resolved table with a model trained on it;
+     * pools shared between rows share one model
+     */
+    private NamePool[][] trainModels(NamePool[][] table, Map<NamePool, NamePool> models) {
+        NamePool[][] trained = new NamePool[table.length][];
+        for (int category = 0; category < table.length; category++) {
+            trained[category] = new NamePool[table[category].length];
+            for (int profession = 0; profession < trained[category].length; profession++) {
+                NamePool pool = table[category][profession];
+                NamePool model = models.get(pool);
+                if (model == null) {
+                    // Empty pools have nothing to learn from and stay as they are
+                    NameModel trainedModel = NameModel.train(pool, markovOrder, markovMinLength, markovMaxLength);
+                    String key = "model:" + poolKeys.get(pool);
+                    int id = trainedModel != null ? assignId(key, poolKeys.get(pool)) : -1;
+                    if (id >= 0) {
+                        model = new NamePool(id, trainedModel);
+                        register(model, key);
+                    } else {
+                        model = pool;
+                    }
+                    models.put(pool, model);
+                }
+                trained[category][profession] = model;
+            }
+        }
+        return trained;
+    }
+    
+    /**
+     * Creates a pool for a config list, keyed by the list's path
+     * 
+     * Entries may end in a weight, e.g. "Aldric: 5" is drawn five times as
+     * often as an entry without one. Pools where every weight is the same
+     * are drawn uniformly.
+     * 
+     * @return The pool, or null if no pool id is left for it
+     */
+    private NamePool createPool(String[] entries, String path) {
+        String[] names = new String[entries.length];
+        double[] weights = new double[entries.length];
+        double total = 0.0;
+        boolean uniform = true;
+        for (int i = 0; i < entries.length; i++) {
+            names[i] = entries[i];
+            weights[i] = 1.0;
+            
+            int colon = entries[i].lastIndexOf(':');
+            Double weight = colon > 0 ? parseWeight(entries[i].substring(colon + 1)) : null;
+            if (weight != null) {
+                names[i] = entries[i].substring(0, colon).trim();
+                if (weight >= 0.0 && !weight.isInfinite()) {
+                    weights[i] = weight;
+                } else {
+                    warnings.add(path + ": weight of '" + names[i] + "' must be zero or more, using 1");
+                }
+            }
+            total += weights[i];
+            uniform &= weights[i] == weights[0];
+        }
+        
+        // Checked first: all-zero weights also look uniform
+        if (entries.length > 0 && total <= 0.0) {
+            warnings.add(path + ": every weight is zero, drawing names evenly");
+            uniform = true;
+        }
+        
+        int id = assignId(path, path);
+        if (id < 0) {
+            return null;
+        }
+        NamePool pool = new NamePool(id, names, uniform ? null : weights);
+        register(pool, path);
+        return pool;
+    }
+    
+    /**
+     * Gets the stable id for a pool key
+     * 
+     * @return The id, or -1 with a warning if every id is taken by this snapshot
+     */
+    private int assignId(String key, String path) {
+        int id = poolIds.assign(key, reservedIds);
+        if (id < 0) {
+            warnings.add(path + ": more than " + NameComponents.MAX_POOLS + " name pools, this one is not used");
+        }
+        return id;
+    }
+    
+    /**
+     * Adds a pool to the snapshot under its id
+     */
+    private void register(NamePool pool, String key) {
+        pools.add(pool);
+        poolsById[pool.getId()] = pool;
+        poolKeys.put(pool, key);
+    }
+    
+    /**
+     * Parses the text after the last colon of an entry as a weight
+     * 
+     * @return The weight, or null if the text is not a number and belongs to the name
+     */
+    private static Double parseWeight(String text) {
+        try {
+            return Double.valueOf(text.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Hashes everything a rendered name depends on: pool contents, templates
+     * and the level setting
+     * 
+     * @return The version, never NameData.UNKNOWN_VERSION
+     */
+    private int computeRenderVersion() {
+        int version = Boolean.hashCode(showLevel);
+        for (NamePool pool : pools) {
+            version = 31 * version + pool.getId();
+            version = 31 * version + pool.contentHash();
+        }
+        
+        version = 31 * version + defaultTemplate.getSource().hashCode();
+        for (NameTemplate[] row : templates) {
+            for (NameTemplate template : row) {
+                version = 31 * version + (template != null ? template.getSource().hashCode() : 0);
+            }
+        }
+        for (Map.Entry<String, NameTemplate> entry : new TreeMap<>(worldTemplates).entrySet()) {
+            version = 31 * version + entry.getKey().hashCode();
+            version = 31 * version + entry.getValue().getSource().hashCode();
+        }
+        
+        return version != NameData.UNKNOWN_VERSION ? version : 1;
+    }
+    
+    /**
+     * Resolves the per-biome and per-profession format overrides, and fills
+     * the world overrides; profession overrides win over biome overrides
+     * 
+     * @return Templates by category and profession, null where no override applies
+     */
+    private NameTemplate[][] resolveTemplates(ConfigurationSection config, Map<String, NameTemplate> compiled,
+            int[] maxLengths) {
+        NameTemplate[][] resolved = new NameTemplate[categories.length][PROFESSIONS.length];
+        
+        ConfigurationSection biomeFormats = config.getConfigurationSection("format-overrides.biomes");
+        if (biomeFormats != null) {
+            for (String key : biomeFormats.getKeys(false)) {
+                Integer category = categoryIndex.get(key.toLowerCase(Locale.ROOT));
+                if (category == null) {
+                    warnings.add("format-overrides.biomes." + key + " is not a biome category");
+                    continue;
+                }
+                NameTemplate template = compileFormat(config, biomeFormats.getString(key), compiled, maxLengths,
+                    "format-overrides.biomes." + key);
+                Arrays.fill(resolved[category], template);
+            }
+        }
+        
+        ConfigurationSection professionFormats = config.getConfigurationSection("format-overrides.professions");
+        if (professionFormats != null) {
+            for (String key : professionFormats.getKeys(false)) {
+                Villager.Profession profession = professionOf(key);
+                if (profession == null) {
+                    warnings.add("format-overrides.professions." + key + " is not a profession");
+                    continue;
+                }
+                NameTemplate template = compileFormat(config, professionFormats.getString(key), compiled, maxLengths,
+                    "format-overrides.professions." + key);
+                for (NameTemplate[] row : resolved) {
+                    row[profession.ordinal()] = template;
+                }
+            }
+        }
+        
+        ConfigurationSection worldFormats = config.getConfigurationSection("format-overrides.worlds");
+        if (worldFormats != null) {
+            for (String key : worldFormats.getKeys(false)) {
+                worldTemplates.put(key, compileFormat(config, worldFormats.getString(key), compiled, maxLengths,
+                    "format-overrides.worlds." + key));
+            }
+        }
+        
+        return resolved;
+    }
+    
+    /**
+     * Compiles a format setting: the name of an entry in the formats section,
+     * a built-in format name, or an inline template
+     */
+    private NameTemplate compileFormat(ConfigurationSection config, String value, Map<String, NameTemplate> compiled,
+            int[] maxLengths, String path) {
+        String source = null;
+        String key = value != null ? value.toLowerCase(Locale.ROOT) : "titled";
+        
+        if (config.isString("formats." + key)) {
+            source = config.getString("formats." + key);
+        } else {
+            for (String[] format : BUILT_IN_FORMATS) {
+                if (format[0].equals(key)) {
+                    source = format[1];
+                }
+            }
+        }
+        if (source == null) {
+            if (value.indexOf('{') >= 0) {
+                source = value;
+            } else {
+                warnings.add(path + " '" + value + "' is not a known format, using 'titled'");
+                source = BUILT_IN_FORMATS[1][1];
+            }
+        }
+        
+        NameTemplate template = compiled.get(source);
+        if (template == null) {
+            template = NameTemplate.compile(source, maxLengths, warnings);
+            compiled.put(source, template);
+        }
+        return template;
+    }
+    
+    /**
+     * Gets the longest value each template placeholder can take
+     */
+    private int[] maxPlaceholderLengths() {
+        int[] lengths = new int[NameTemplate.PLACEHOLDERS];
+        lengths[NameTemplate.LEGENDARY] = legendaryPrefixes.getMaxLength();
+        lengths[NameTemplate.FIRST] = Math.max("Unknown".length(), maxLength(firstNames));
+        lengths[NameTemplate.LAST] = maxLength(lastNames);
+        lengths[NameTemplate.PROFESSION] = MAX_PROFESSION_LENGTH;
+        lengths[NameTemplate.LEVEL] = MAX_LEVEL_LENGTH;
+        return lengths;
+    }
+    
+    /**
+     * Gets the longest name across a resolved pool table
+     */
+    private static int maxLength(NamePool[][] table) {
+        int longest = 0;
+        for (NamePool[] row : table) {
+            for (NamePool pool : row) {
+                longest = Math.max(longest, pool.getMaxLength());
+            }
+        }
+        return longest;
+    }
+    
+    /**
+     * Finds a profession by its config key
+     */
+    private static Villager.Profession professionOf(String key) {
+        for (Villager.Profession profession : PROFESSIONS) {
+            if (profession.name().equalsIgnoreCase(key)) {
+                return profession;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Copies a config list into an array, dropping blank entries
+     */
+    private static String[] toArray(List<?> list) {
+        if (list == null || list.isEmpty()) {
+            return EMPTY;
+        }
+        List<String> cleaned = new ArrayList<>(list.size());
+        for (Object entry : list) {
+            if (entry instanceof Map) {
+                // An unquoted Aldric: 5 inside a YAML list is read as a one-entry map
+                for (Map.Entry<?, ?> pair : ((Map<?, ?>) entry).entrySet()) {
+                    cleaned.add(pair.getKey() + ": " + pair.getValue());
+                }
+            } else if (entry != null && !entry.toString().isEmpty()) {
+                cleaned.add(entry.toString());
+            }
+        }
+        return cleaned.isEmpty() ? EMPTY : cleaned.toArray(new String[0]);
+    }
+    
+    /**
+     * Gets the index of a biome category
+     * 
+     * @param category The category name (lowercase)
+     * @return The category index, or -1 if unknown
+     */
+    public int getCategoryIndex(String category) {
+        Integer index = categoryIndex.get(category);
+        return index != null ? index : -1;
+    }
+    
+    /**
+     * Gets the biome category of a biome
+     * 
+     * @param biome The biome
+     * @return The category index
+     */
+    public int getBiomeCategory(Biome biome) {
+        return biomeTable.getCategory(biome);
+    }
+    
+    /**
+     * Checks if biomes should be read from chunk data rather than through a Block
+     * 
+     * @return true if chunk data lookup is enabled
+     */
+    public boolean isChunkBiomeLookup() {
+        return chunkBiomeLookup;
+    }
+    
+    /**
+     * Gets problems found while compiling the snapshot
+     * 
+     * @return Unmodifiable list of warning messages
+     */
+    public List<String> getWarnings() {
+        return Collections.unmodifiableList(warnings);
+    }
+    
+    /**
+     * Gets the number of known biome categories
+     * 
+     * @return The category count
+     */
+    public int getCategoryCount() {
+        return categories.length;
+    }
+    
+    /**
+     * Gets the name of a biome category
+     * 
+     * @param category The category index
+     * @return The category name
+     */
+    public String getCategoryName(int category) {
+        return categories[category];
+    }
+    
+    /**
+     * Gets the resolved first name pool
+     * 
+     * @param category The biome category index
+     * @param profession The profession ordinal
+     * @return The first name pool, possibly empty
+     */
+    NamePool getFirstNames(int category, int profession) {
+        return firstNames[category][profession];
+    }
+    
+    /**
+     * Gets the resolved last name pool
+     * 
+     * @param category The biome category index
+     * @param profession The profession ordinal
+     * @return The last name pool, possibly empty
+     */
+    NamePool getLastNames(int category, int profession) {
+        return lastNames[category][profession];
+    }
+    
+    /**
+     * Gets the legendary prefixes
+     * 
+     * @return The legendary prefix pool, possibly empty
+     */
+    NamePool getLegendaryPrefixes() {
+        return legendaryPrefixes;
+    }
+    
+    /**
+     * Gets a pool by id
+     * 
+     * @param id The pool id, as stored in name components
+     * @return The pool, or null if no pool has that id
+     */
+    NamePool getPool(int id) {
+        return id >= 0 && id < poolsById.length ? poolsById[id] : null;
+    }
+    
+    /**
+     * Suggests words from the configured names that start with a prefix
+     * 
+     * @param prefix The typed prefix, any case
+     * @param limit Maximum number of words
+     * @param out The list the words are appended to
+     */
+    public void completeName(String prefix, int limit, List<String> out) {
+        nameWords.complete(prefix, limit, out);
+    }
+    
+    /**
+     * Resolves an index into a pool
+     * 
+     * @param pool The pool id
+     * @param index The index, -1 for none
+     * @return The name, or null if there is none or the pool no longer reaches the index
+     */
+    String resolve(int pool, int index) {
+        NamePool names = getPool(pool);
+        if (names == null || index < 0 || index >= names.size()) {
+            return null;
+        }
+        return names.get(index);
+    }
+    
+    /**
+     * Hashes the names a villager's components resolve to
+     * 
+     * Binary storage keeps this next to the components. When the pools are
+     * edited, a matching hash means the parts still resolve to the same
+     * names and only the title needs rendering again.
+     * 
+     * @param components The packed components
+     * @return The hash, or 0 if a part no longer resolves
+     */
+    int getNamesHash(long components) {
+        if (components == NameComponents.NONE) {
+            return 0;
+        }
+        
+        int prefixIndex = NameComponents.prefix(components);
+        int firstIndex = NameComponents.first(components);
+        int lastIndex = NameComponents.last(components);
+        String prefix = resolve(legendaryPrefixes.getId(), prefixIndex);
+        String first = resolve(NameComponents.firstPool(components), firstIndex);
+        String last = resolve(NameComponents.lastPool(components), lastIndex);
+        if (prefix == null && prefixIndex >= 0 || first == null && firstIndex >= 0
+                || last == null && lastIndex >= 0) {
+            return 0;
+        }
+        
+        int hash = Objects.hash(prefix, first, last);
+        return hash != 0 ? hash : 1;
+    }
+    
+    /**
+     * Reduces name components to the key used by the uniqueness index
+     * 
+     * Only the parts shown by the villager's format take part, so two
+     * villagers that display the same name always produce the same key, and
+     * a last name that is not shown never sets two names apart.
+     * 
+     * @param template The format that applies to the villager
+     * @param components The packed components
+     * @return The key, or 0 if the components are empty
+     */
+    long getUniquenessKey(NameTemplate template, long components) {
+        if (components == NameComponents.NONE) {
+            return 0L;
+        }
+        
+        long prefix = template.uses(NameTemplate.LEGENDARY)
+            ? symbolOf(legendaryPrefixes.getId(), NameComponents.prefix(components))
+            : 0L;
+        long first = template.uses(NameTemplate.FIRST)
+            ? symbolOf(NameComponents.firstPool(components), NameComponents.first(components))
+            : 0L;
+        long last = template.uses(NameTemplate.LAST)
+            ? symbolOf(NameComponents.lastPool(components), NameComponents.last(components))
+            : 0L;
+        return NameSymbols.key(prefix, first, last);
+    }
+    
+    /**
+     * Gets the symbol of the last name a surname resolves to
+     * 
+     * @param surname A surname from NameComponents.surname(long)
+     * @return The symbol, or 0 if the surname no longer resolves
+     */
+    long getSurnameSymbol(int surname) {
+        long components = NameComponents.withSurname(NameComponents.NONE, surname);
+        return symbolOf(NameComponents.lastPool(components), NameComponents.last(components));
+    }
+    
+    /**
+     * Gets the symbol of a pool entry, or 0 if absent
+     */
+    private long symbolOf(int pool, int index) {
+        NamePool names = getPool(pool);
+        if (names == null || index < 0 || index >= names.size()) {
+            return 0;
+        }
+        return names.getSymbol(index);
+    }
+    
+    /**
+     * Checks if automatic naming is enabled
+     */
+    public boolean isAutoNamingEnabled() {
+        return autoName;
+    }
+    
+    /**
+     * Gets the legendary prefix chance percentage
+     */
+    public int getLegendaryChance() {
+        return legendaryChance;
+    }
+    
+    /**
+     * Gets the name format as written in the config
+     */
+    public String getFormatName() {
+        return formatName;
+    }
+    
+    /**
+     * Gets the name template for a villager
+     * 
+     * Profession and biome overrides come first, then the world override,
+     * then settings.format.
+     * 
+     * @param category The biome category index
+     * @param profession The profession ordinal
+     * @param world The world name, or null to skip world overrides
+     * @return The template
+     */
+    NameTemplate getTemplate(int category, int profession, String world) {
+        NameTemplate template = templates[category][profession];
+        if (template != null) {
+            return template;
+        }
+        if (world != null && !worldTemplates.isEmpty()) {
+            template = worldTemplates.get(world);
+            if (template != null) {
+                return template;
+            }
+        }
+        return defaultTemplate;
+    }
+    
+    /**
+     * Checks if any name template shows the profession or level
+     * 
+     * @return true if names can go stale when villagers change
+     */
+    public boolean hasDynamicTemplates() {
+        return dynamicTemplates;
+    }
+    
+    /**
+     * Checks if profession level should be shown
+     */
+    public boolean shouldShowLevel() {
+        return showLevel;
+    }
+    
+    /**
+     * Checks if villagers should be renamed when cured
+     */
+    public boolean shouldRenameOnCure() {
+        return renameOnCure;
+    }
+    
+    /**
+     * Checks if biome-specific names should be used
+     */
+    public boolean isBiomeSpecific() {
+        return biomeSpecific;
+    }
+    
+    /**
+     * Checks if debug mode is enabled
+     */
+    public boolean isDebugEnabled() {
+        return debug;
+    }
+    
+    /**
+     * Checks if names are derived from the villager UUID and world seed
+     */
+    public boolean isDeterministic() {
+        return deterministic;
+    }
+    
+    /**
+     * Gets the salt mixed into deterministic seeds
+     */
+    public long getDeterministicSalt() {
+        return deterministicSalt;
+    }
+    
+    /**
+     * Checks if spawns should use pre-generated names
+     */
+    public boolean isSupplyEnabled() {
+        return supplyEnabled;
+    }
+    
+    /**
+     * Gets the capacity of each pre-generated name buffer
+     */
+    public int getSupplyBufferSize() {
+        return supplyBufferSize;
+    }
+    
+    /**
+     * Gets the buffer level at or below which a buffer is refilled
+     */
+    public int getSupplyRefillThreshold() {
+        return supplyRefillThreshold;
+    }
+    
+    /**
+     * Gets the number of ticks between refill passes
+     */
+    public int getSupplyRefillInterval() {
+        return supplyRefillInterval;
+    }
+    
+    /**
+     * Checks if generated names should be unique within their scope
+     */
+    public boolean isUniqueNames() {
+        return uniqueNames;
+    }
+    
+    /**
+     * Gets the uniqueness scope
+     * 
+     * @return SCOPE_WORLD or SCOPE_RADIUS
+     */
+    public int getUniquenessScope() {
+        return uniquenessScope;
+    }
+    
+    /**
+     * Gets the radius, in chunks, of the radius uniqueness scope
+     */
+    public int getUniquenessRadius() {
+        return uniquenessRadius;
+    }
+    
+    /**
+     * Gets the number of candidates tried before a duplicate is accepted
+     */
+    public int getUniquenessAttempts() {
+        return uniquenessAttempts;
+    }
+    
+    /**
+     * Checks if unnamed villagers should be named as their chunk loads
+     */
+    public boolean isBackfillEnabled() {
+        return backfillEnabled;
+    }
+    
+    /**
+     * Gets the time, in microseconds, the naming queue may spend per tick
+     */
+    public int getQueueBudgetMicros() {
+        return queueBudgetMicros;
+    }
+    
+    /**
+     * Gets the time, in microseconds, /nv regenerate may spend per tick
+     */
+    public int getRegenerateBudgetMicros() {
+        return regenerateBudgetMicros;
+    }
+    
+    /**
+     * Gets the ticks between registry writes to disk
+     */
+    public int getRegistryFlushInterval() {
+        return registryFlushInterval;
+    }
+    
+    /**
+     * Gets the maximum number of villagers shown by /nv find and /nv list
+     */
+    public int getRegistryMaxResults() {
+        return registryMaxResults;
+    }
+    
+    /**
+     * Gets the largest chunk radius accepted by /nv list
+     */
+    public int getRegistryMaxListRadius() {
+        return registryMaxListRadius;
+    }
+    
+    /**
+     * Checks if generated names are stored in the compact binary format
+     */
+    public boolean isBinaryStorage() {
+        return binaryStorage;
+    }
+    
+    /**
+     * Gets a hash of the pools and formats names are rendered from
+     * 
+     * Changes whenever a reload would render stored components differently.
+     */
+    public int getRenderVersion() {
+        return renderVersion;
+    }
+    
+    /**
+     * Gets the compiled rules for which spawns are named automatically
+     */
+    NamingPolicy getNamingPolicy() {
+        return namingPolicy;
+    }
+    
+    /**
+     * Gets the ticks between metrics exports
+     * 
+     * @return The interval, or 0 if exporting is off
+     */
+    public int getMetricsExportInterval() {
+        return metricsExportInterval;
+    }
+    
+    /**
+     * Checks if metrics are exported as JSON instead of CSV
+     */
+    public boolean isMetricsExportJson() {
+        return metricsExportJson;
+    }
+    
+    /**
+     * Checks if renames are written to the history log
+     */
+    public boolean isHistoryEnabled() {
+        return historyEnabled;
+    }
+    
+    /**
+     * Gets the ticks between history log writes
+     */
+    public int getHistoryFlushInterval() {
+        return historyFlushInterval;
+    }
+    
+    /**
+     * Gets the size, in bytes, at which the history log is rotated
+     */
+    public long getHistoryMaxFileBytes() {
+        return historyMaxFileBytes;
+    }
+    
+    /**
+     * Gets the number of rotated history logs kept
+     */
+    public int getHistoryMaxFiles() {
+        return historyMaxFiles;
+    }
+    
+    /**
+     * Gets the number of renames remembered per villager for /nv history
+     */
+    public int getHistoryPerVillager() {
+        return historyPerVillager;
+    }
+    
+    /**
+     * Gets the number of villagers whose renames are remembered for /nv history
+     */
+    public int getHistoryMaxVillagers() {
+        return historyMaxVillagers;
+    }
+    
+    /**
+     * Checks if villagers inherit and share surnames within villages
+     */
+    public boolean isFamilySurnames() {
+        return familySurnames;
+    }
+    
+    /**
+     * Gets the radius, in chunks, searched for families around a spawning villager
+     */
+    public int getFamilyRadius() {
+        return familyRadius;
+    }
+    
+    /**
+     * Gets the chance, in percent, that a villager spawning near families joins one
+     */
+    public int getFamilyShareChance() {
+        return familyShareChance;
+    }
+    
+    /**
+     * Gets when nametags are shown
+     * 
+     * @return One of the NAMETAGS_ constants
+     */
+    public int getNametagMode() {
+        return nametagMode;
+    }
+    
+    /**
+     * Gets the distance from a player, in blocks, within which nametags are shown in radius mode
+     */
+    public int getNametagRadius() {
+        return nametagRadius;
+    }
+    
+    /**
+     * Gets how far away, in blocks, a looked-at villager still shows its nametag in look mode
+     */
+    public int getNametagLookDistance() {
+        return nametagLookDistance;
+    }
+    
+    /**
+     * Gets the ticks between nametag visibility scans
+     */
+    public int getNametagUpdateInterval() {
+        return nametagUpdateInterval;
+    }
+    
+    /**
+     * Gets the most nametags shown or hidden in one tick
+     */
+    public int getNametagTogglesPerTick() {
+        return nametagTogglesPerTick;
+    }
+    
+    /**
+     * Gets the most names suggested while typing /nv <name>
+     */
+    public int getTabCompleteLimit() {
+        return tabCompleteLimit;
+    }
+}
@@ -0,0 +1,87 @@
+package com.arcanestudios.namedvillagers;
+
+import java.util.UUID;
+
+/**
+ * Small SplitMix64 random stream used for name generation
+ * 
+ * Each generation gets its own stream, so there is no shared state between
+ * threads. Streams seeded from the same value always produce the same
+ * sequence, which is what makes deterministic names reproducible.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameRandom {
+    
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    
+    private long state;
+    
+    NameRandom(long seed) {
+        this.state = seed;
+    }
+    
+    /**
+     * Derives the seed for a villager's name stream
+     * 
+     * @param uuid The villager's UUID
+     * @param worldSeed The seed of the villager's world
+     * @param salt The configured salt, to re-roll every name at once
+     * @return The stream seed
+     */
+    static long seedFor(UUID uuid, long worldSeed, long salt) {
+        long seed = mix64(worldSeed + salt * GOLDEN_GAMMA);
+        seed = mix64(seed ^ uuid.getMostSignificantBits());
+        return mix64(seed ^ uuid.getLeastSignificantBits());
+    }
+    
+    /**
+     * Gets the next 64 random bits
+     * 
+     * @return A random long
+     */
+    long nextLong() {
+        state += GOLDEN_GAMMA;
+        return mix64(state);
+    }
+    
+    /**
+     * Gets a random int in [0, bound)
+     * 
+     * @param bound The exclusive upper bound, must be positive
+     * @return A random int
+     */
+    int nextInt(int bound) {
+        // Multiply-shift; the bias is negligible for pool-sized bounds
+        return (int) (((nextLong() >>> 32) * bound) >>> 32);
+    }
+    
+    /**
+     * Splits off an independent stream, leaving this one usable
+     * 
+     * @return A new stream
+     */
+    NameRandom split() {
+        return new NameRandom(nextLong());
+    }
+    
+    /**
+     * Derives an independent stream keyed by a salt, without advancing this one
+     * 
+     * @param salt Distinguishes streams derived from the same state
+     * @return A new stream
+     */
+    NameRandom branch(long salt) {
+        return new NameRandom(mix64(state ^ salt));
+    }
+    
+    /**
+     * SplitMix64 finalizer
+     */
+    static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,605 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Persistent registry of named villagers that can be queried without loading chunks
+ * 
+ * Every named villager owns one fixed-size record in a memory-mapped file in
+ * the plugin data folder holding its UUID, name, world, chunk and the world
+ * time it was last seen. Records are read into in-memory indexes by name word
+ * and by chunk on startup, plus a prefix tree of name words for tab
+ * completion, and queries only ever touch those indexes. Changes
+ * update the indexes straight away and are queued for an async task that
+ * writes them into the mapped file in batches.
+ * 
+ * The indexes are guarded by a lock of their own, so villagers can be
+ * recorded from any region thread; the file is owned by the writer.
+ * If the file cannot be mapped on startup, the indexes still answer queries
+ * until the next restart but nothing is written.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class NameRegistry {
+    
+    private static final int MAGIC = 0x4E565247;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 128;
+    private static final int NAME_OFFSET = 52;
+    private static final int MAX_NAME_BYTES = RECORD_BYTES - NAME_OFFSET;
+    private static final int INITIAL_SLOTS = 1024;
+    
+    // Most common words a partial word of a /nv find query expands to
+    private static final int MAX_PREFIX_WORDS = 64;
+    
+    private final NamedVillagers plugin;
+    private final File file;
+    
+    // Indexes, guarded by indexLock
+    private final Object indexLock = new Object();
+    private final Map<UUID, Entry> entries = new HashMap<>();
+    private final Map<String, Set<Entry>> words = new HashMap<>();
+    private final NameTrie wordTrie = new NameTrie();
+    private final Map<UUID, Map<Long, List<Entry>>> chunks = new HashMap<>();
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+    private int nextSlot;
+    
+    // Records waiting for the writer, in the order they were changed
+    private final ConcurrentLinkedQueue<Entry> pending = new ConcurrentLinkedQueue<>();
+    
+    // Writer state, guarded by this
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+    private int usedSlots;
+    
+    // Set when the file could not be mapped at startup; changes then stay in the indexes only
+    private volatile boolean unavailable;
+    
+    private TaskScheduler.Task flushTask;
+    private long flushInterval;
+    
+    public NameRegistry(NamedVillagers plugin) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "registry.dat");
+    }
+    
+    /**
+     * Maps the registry file and loads its records
+     * 
+     * @throws IOException If the file cannot be opened
+     */
+    public synchronized void open() throws IOException {
+        unavailable = true;
+        plugin.getDataFolder().mkdirs();
+        channel = FileChannel.open(file.toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            
+        // Read the header before mapping so a foreign file is not grown first
+        int stored = 0;
+        if (channel.size() >= HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            header.flip();
+            if (header.getInt() == MAGIC && header.getInt() == VERSION) {
+                stored = header.getInt();
+            } else {
+                plugin.getLogger().warning("Name registry file has an unknown format, starting empty");
+            }
+        }
+        
+        long fileSlots = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+        stored = (int) Math.max(0, Math.min(stored, fileSlots));
+        capacity = (int) Math.max(INITIAL_SLOTS, fileSlots);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * RECORD_BYTES);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, stored);
+        usedSlots = stored;
+        
+        for (int slot = 0; slot < stored; slot++) {
+            Entry entry = readRecord(slot);
+            if (entry != null && !entries.containsKey(entry.id)) {
+                index(entry);
+            } else {
+                // Free or duplicate record; make sure the slot reads as free next time
+                buffer.put(HEADER_BYTES + slot * RECORD_BYTES, (byte) 0);
+                freeSlots.push(slot);
+            }
+        }
+        nextSlot = stored;
+        unavailable = false;
+    }
+    
+    /**
+     * Starts the async writer
+     */
+    public void start() {
+        flushInterval = plugin.getConfigManager().getSnapshot().getRegistryFlushInterval();
+        flushTask = plugin.getTaskScheduler().runTimerAsync(this::flush, flushInterval, flushInterval);
+    }
+    
+    /**
+     * Restarts the writer if a reload changed its interval
+     */
+    public void reschedule() {
+        long interval = plugin.getConfigManager().getSnapshot().getRegistryFlushInterval();
+        if (flushTask != null && interval != flushInterval) {
+            flushTask.cancel();
+            start();
+        }
+    }
+    
+    /**
+     * Stops the writer, writes everything still pending and unmaps the file
+     */
+    public void close() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        
+        synchronized (this) {
+            flush();
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Could not close name registry: " + e.getMessage());
+            }
+            channel = null;
+            buffer = null;
+        }
+    }
+    
+    /**
+     * Records a villager's name and current position, replacing any earlier record
+     * 
+     * @param villager The villager
+     * @param name The villager's name
+     */
+    public void record(Entity villager, String name) {
+        Location location = villager.getLocation();
+        World world = location.getWorld();
+        long lastSeen = world.getFullTime();
+        
+        synchronized (indexLock) {
+            Entry previous = entries.get(villager.getUniqueId());
+            if (previous != null && previous.isAt(name, world.getUID(), location.getBlockX() >> 4,
+                    location.getBlockZ() >> 4)) {
+                // Same name and chunk, as on most chunk loads; the indexes stay as they are
+                previous.lastSeen = lastSeen;
+                queue(previous);
+                return;
+            }
+            
+            int slot = previous != null ? previous.slot : allocateSlot();
+            Entry entry = new Entry(slot, villager.getUniqueId(), name, world.getUID(),
+                location.getBlockX() >> 4, location.getBlockZ() >> 4, lastSeen);
+                
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(entry);
+            queue(entry);
+        }
+    }
+    
+    /**
+     * Removes a villager from the registry
+     * 
+     * @param id The villager's UUID
+     */
+    public void remove(UUID id) {
+        synchronized (indexLock) {
+            Entry previous = entries.get(id);
+            if (previous == null) {
+                return;
+            }
+            
+            unindex(previous);
+            freeSlots.push(previous.slot);
+            queue(new Entry(previous.slot, id, null, previous.worldId, 0, 0, 0L));
+        }
+    }
+    
+    /**
+     * Queues a changed record for the writer, unless there is no file to write it to
+     */
+    private void queue(Entry entry) {
+        if (!unavailable) {
+            pending.add(entry);
+        }
+    }
+    
+    /**
+     * Finds villagers whose name contains a phrase, ignoring case
+     * 
+     * Candidates come from the rarest complete word of the phrase, so a
+     * lookup only scans villagers sharing that word. A phrase without any
+     * complete word is looked up by the prefix of its first word, e.g.
+     * "magn" finds "Magnus", through the most common words starting with it.
+     * 
+     * @param query The phrase to look for
+     * @param limit Maximum number of results
+     * @return Matching villagers, at most limit
+     */
+    public List<Entry> find(String query, int limit) {
+        String phrase = query.trim().toLowerCase(Locale.ROOT);
+        if (phrase.isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        synchronized (indexLock) {
+            // Narrow down to the smallest complete word set; partial words are checked by the filter
+            Set<Entry> candidates = null;
+            String partial = null;
+            for (String word : phrase.split(" ")) {
+                if (word.isEmpty()) {
+                    continue;
+                }
+                Set<Entry> set = words.get(word);
+                if (set == null) {
+                    if (partial == null) {
+                        partial = word;
+                    }
+                    continue;
+                }
+                if (candidates == null || set.size() < candidates.size()) {
+                    candidates = set;
+                }
+            }
+            
+            List<Entry> results = new ArrayList<>();
+            if (candidates != null) {
+                collect(candidates, phrase, limit, results);
+                return results;
+            }
+            if (partial == null) {
+                return results;
+            }
+            
+            // Only words starting with the partial one, e.g. "magn" for "Magnus"
+            List<String> completions = new ArrayList<>();
+            wordTrie.complete(partial, MAX_PREFIX_WORDS, completions);
+            for (String word : completions) {
+                Set<Entry> set = words.get(word.toLowerCase(Locale.ROOT));
+                if (set != null && collect(set, phrase, limit, results)) {
+                    break;
+                }
+            }
+            return results;
+        }
+    }
+    
+    /**
+     * Suggests name words starting with a prefix, the most common first
+     * 
+     * @param prefix The typed prefix, any case
+     * @param limit Maximum number of words
+     * @param out The list the words are appended to
+     */
+    public void completeWord(String prefix, int limit, List<String> out) {
+        synchronized (indexLock) {
+            wordTrie.complete(prefix, limit, out);
+        }
+    }
+    
+    /**
+     * Lists villagers last seen within a square of chunks
+     * 
+     * @param world The world
+     * @param chunkX Center chunk X
+     * @param chunkZ Center chunk Z
+     * @param radius Radius in chunks, 0 for the center chunk only
+     * @return The villagers in range
+     */
+    public List<Entry> inChunks(World world, int chunkX, int chunkZ, int radius) {
+        synchronized (indexLock) {
+            Map<Long, List<Entry>> worldChunks = chunks.get(world.getUID());
+            if (worldChunks == null) {
+                return Collections.emptyList();
+            }
+            
+            List<Entry> results = new ArrayList<>();
+            for (int x = chunkX - radius; x <= chunkX + radius; x++) {
+                for (int z = chunkZ - radius; z <= chunkZ + radius; z++) {
+                    List<Entry> list = worldChunks.get(chunkKey(x, z));
+                    if (list != null) {
+                        results.addAll(list);
+                    }
+                }
+            }
+            return results;
+        }
+    }
+    
+    /**
+     * Gets the number of registered villagers
+     * 
+     * @return Entry count
+     */
+    public int size() {
+        synchronized (indexLock) {
+            return entries.size();
+        }
+    }
+    
+    /**
+     * Writes all queued changes into the mapped file
+     * 
+     * Runs on the async writer task, and once more on shutdown.
+     */
+    synchronized void flush() {
+        if (buffer == null) {
+            return;
+        }
+        
+        boolean dirty = false;
+        Entry entry;
+        while ((entry = pending.peek()) != null) {
+            // Leave the entry queued for the next pass; what was written so far is still committed
+            if (entry.slot >= capacity && !grow(entry.slot + 1)) {
+                break;
+            }
+            pending.poll();
+            writeRecord(entry);
+            usedSlots = Math.max(usedSlots, entry.slot + 1);
+            dirty = true;
+        }
+        
+        if (dirty) {
+            buffer.putInt(8, usedSlots);
+            buffer.force();
+        }
+    }
+    
+    /**
+     * Remaps the file with room for at least the given number of slots
+     * 
+     * @return false if the file could not be grown
+     */
+    private boolean grow(int slots) {
+        int grown = Math.max(slots, capacity * 2);
+        try {
+            buffer.force();
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) grown * RECORD_BYTES);
+            capacity = grown;
+            return true;
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not grow name registry: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Writes one record; an entry without a name clears the slot
+     */
+    private void writeRecord(Entry entry) {
+        int base = HEADER_BYTES + entry.slot * RECORD_BYTES;
+        if (entry.name == null) {
+            buffer.put(base, (byte) 0);
+            return;
+        }
+        
+        byte[] name = encodeName(entry.name);
+        buffer.put(base, (byte) 1);
+        buffer.putShort(base + 2, (short) name.length);
+        buffer.putLong(base + 4, entry.id.getMostSignificantBits());
+        buffer.putLong(base + 12, entry.id.getLeastSignificantBits());
+        buffer.putLong(base + 20, entry.worldId.getMostSignificantBits());
+        buffer.putLong(base + 28, entry.worldId.getLeastSignificantBits());
+        buffer.putInt(base + 36, entry.chunkX);
+        buffer.putInt(base + 40, entry.chunkZ);
+        buffer.putLong(base + 44, entry.lastSeen);
+        buffer.put(base + NAME_OFFSET, name);
+    }
+    
+    /**
+     * Reads one record
+     * 
+     * @return The entry, or null if the slot is free
+     */
+    private Entry readRecord(int slot) {
+        int base = HEADER_BYTES + slot * RECORD_BYTES;
+        if (buffer.get(base) == 0) {
+            return null;
+        }
+        
+        byte[] name = new byte[Math.min(buffer.getShort(base + 2) & 0xFFFF, MAX_NAME_BYTES)];
+        buffer.get(base + NAME_OFFSET, name);
+        return new Entry(slot,
+            new UUID(buffer.getLong(base + 4), buffer.getLong(base + 12)),
+            new String(name, StandardCharsets.UTF_8),
+            new UUID(buffer.getLong(base + 20), buffer.getLong(base + 28)),
+            buffer.getInt(base + 36), buffer.getInt(base + 40), buffer.getLong(base + 44));
+    }
+    
+    /**
+     * Encodes a name as UTF-8, cut at a character boundary to fit a record
+     */
+    private static byte[] encodeName(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        String cut = name;
+        while (bytes.length > MAX_NAME_BYTES) {
+            cut = cut.substring(0, cut.offsetByCodePoints(cut.length(), -1));
+            bytes = cut.getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Gets a slot for a new record, reusing freed ones first
+     */
+    private int allocateSlot() {
+        Integer slot = freeSlots.poll();
+        return slot != null ? slot : nextSlot++;
+    }
+    
+    /**
+     * Adds an entry to all indexes
+     */
+    private void index(Entry entry) {
+        entries.put(entry.id, entry);
+        for (String word : entry.lowerName.split(" ")) {
+            words.computeIfAbsent(word, w -> new HashSet<>()).add(entry);
+        }
+        for (String word : entry.name.split(" ")) {
+            wordTrie.add(word);
+        }
+        chunks.computeIfAbsent(entry.worldId, w -> new HashMap<>())
+            .computeIfAbsent(chunkKey(entry.chunkX, entry.chunkZ), k -> new ArrayList<>(2))
+            .add(entry);
+    }
+    
+    /**
+     * Removes an entry from all indexes
+     */
+    private void unindex(Entry entry) {
+        entries.remove(entry.id);
+        for (String word : entry.lowerName.split(" ")) {
+            Set<Entry> set = words.get(word);
+            if (set != null && set.remove(entry) && set.isEmpty()) {
+                words.remove(word);
+            }
+        }
+        for (String word : entry.name.split(" ")) {
+            wordTrie.remove(word);
+        }
+        
+        Map<Long, List<Entry>> worldChunks = chunks.get(entry.worldId);
+        if (worldChunks != null) {
+            long key = chunkKey(entry.chunkX, entry.chunkZ);
+            List<Entry> list = worldChunks.get(key);
+            if (list != null && list.remove(entry) && list.isEmpty()) {
+                worldChunks.remove(key);
+            }
+        }
+    }
+    
+    /**
+     * Adds the candidates whose name contains a phrase, up to a limit
+     * 
+     * @return true once the limit is reached
+     */
+    private static boolean collect(Set<Entry> candidates, String phrase, int limit, List<Entry> results) {
+        for (Entry entry : candidates) {
+            if (results.size() >= limit) {
+                return true;
+            }
+            if (entry.lowerName.contains(phrase)) {
+                results.add(entry);
+            }
+        }
+        return results.size() >= limit;
+    }
+    
+    /**
+     * Packs chunk coordinates into one key
+     */
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * One registered villager; replaced whenever its name or chunk changes
+     */
+    public static final class Entry {
+        
+        private final int slot;
+        private final UUID id;
+        private final String name;
+        private final String lowerName;
+        private final UUID worldId;
+        private final int chunkX;
+        private final int chunkZ;
+        // Updated in place when the villager is seen again where it was
+        private volatile long lastSeen;
+        
+        private Entry(int slot, UUID id, String name, UUID worldId, int chunkX, int chunkZ, long lastSeen) {
+            this.slot = slot;
+            this.id = id;
+            this.name = name;
+            this.lowerName = name != null ? name.toLowerCase(Locale.ROOT) : "";
+            this.worldId = worldId;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.lastSeen = lastSeen;
+        }
+        
+        /**
+         * Checks if the entry already records a name at a chunk
+         */
+        private boolean isAt(String name, UUID worldId, int chunkX, int chunkZ) {
+            return this.name.equals(name) && this.worldId.equals(worldId) && this.chunkX == chunkX
+                && this.chunkZ == chunkZ;
+        }
+        
+        /**
+         * Gets the villager's UUID
+         */
+        public UUID getUniqueId() {
+            return id;
+        }
+        
+        /**
+         * Gets the villager's name
+         */
+        public String getName() {
+            return name;
+        }
+        
+        /**
+         * Gets the UUID of the world the villager was last seen in
+         */
+        public UUID getWorldId() {
+            return worldId;
+        }
+        
+        /**
+         * Gets the chunk X coordinate the villager was last seen in
+         */
+        public int getChunkX() {
+            return chunkX;
+        }
+        
+        /**
+         * Gets the chunk Z coordinate the villager was last seen in
+         */
+        public int getChunkZ() {
+            return chunkZ;
+        }
+        
+        /**
+         * Gets the world time, in ticks, the villager was last seen at
+         */
+        public long getLastSeen() {
+            return lastSeen;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.arcanestudios.namedvillagers;
+
+/**
+ * Packs what is needed to replay a deterministic name into a single long
+ * 
+ * The seeded stream alone does not say which candidate was kept: uniqueness
+ * may have skipped some, the family surname came from the neighbours, and
+ * the profession and biome picked the pools. Layout, low bits first: family
+ * surname as NameComponents.surname gives it (32 bits), biome category + 1
+ * (8 bits), profession + 1 (8 bits), accepted attempt (16 bits). Zero means
+ * nothing was recorded.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameReplay {
+    
+    /** Nothing recorded; the name was random or assigned before records existed */
+    static final long NONE = 0L;
+    
+    private static final int SURNAME_BITS = 32;
+    private static final int CATEGORY_BITS = 8;
+    private static final int PROFESSION_BITS = 8;
+    private static final int ATTEMPT_BITS = 16;
+    
+    private static final int CATEGORY_SHIFT = SURNAME_BITS;
+    private static final int PROFESSION_SHIFT = CATEGORY_SHIFT + CATEGORY_BITS;
+    private static final int ATTEMPT_SHIFT = PROFESSION_SHIFT + PROFESSION_BITS;
+    
+    private static final long SURNAME_MASK = (1L << SURNAME_BITS) - 1;
+    private static final long CATEGORY_MASK = (1L << CATEGORY_BITS) - 1;
+    private static final long PROFESSION_MASK = (1L << PROFESSION_BITS) - 1;
+    private static final long ATTEMPT_MASK = (1L << ATTEMPT_BITS) - 1;
+    
+    /** Highest attempt index the attempt field can hold */
+    static final int MAX_ATTEMPT = (int) ATTEMPT_MASK;
+    
+    private NameReplay() {
+    }
+    
+    /**
+     * Packs a replay record
+     * 
+     * @param attempt Index of the accepted candidate in the seeded stream
+     * @param profession Profession ordinal the pools were picked for
+     * @param category Biome category the pools were picked for
+     * @param surname Family surname, or 0 for none
+     * @return The packed record, never NONE
+     */
+    static long pack(int attempt, int profession, int category, int surname) {
+        return (surname & SURNAME_MASK)
+            | (((category + 1) & CATEGORY_MASK) << CATEGORY_SHIFT)
+            | (((profession + 1) & PROFESSION_MASK) << PROFESSION_SHIFT)
+            | ((Math.min(attempt, MAX_ATTEMPT) & ATTEMPT_MASK) << ATTEMPT_SHIFT);
+    }
+    
+    /**
+     * Gets the accepted attempt
+     * 
+     * @param replay The packed record
+     * @return The attempt index, 0 when nothing was recorded
+     */
+    static int attempt(long replay) {
+        return (int) ((replay >>> ATTEMPT_SHIFT) & ATTEMPT_MASK);
+    }
+    
+    /**
+     * Gets the profession ordinal
+     * 
+     * @param replay The packed record
+     * @return The ordinal, or -1 when nothing was recorded
+     */
+    static int profession(long replay) {
+        return (int) ((replay >>> PROFESSION_SHIFT) & PROFESSION_MASK) - 1;
+    }
+    
+    /**
+     * Gets the biome category
+     * 
+     * @param replay The packed record
+     * @return The category, or -1 when nothing was recorded
+     */
+    static int category(long replay) {
+        return (int) ((replay >>> CATEGORY_SHIFT) & CATEGORY_MASK) - 1;
+    }
+    
+    /**
+     * Gets the family surname
+     * 
+     * @param replay The packed record
+     * @return The surname, or 0 for none
+     */
+    static int surname(long replay) {
+        return (int) (replay & SURNAME_MASK);
+    }
+}
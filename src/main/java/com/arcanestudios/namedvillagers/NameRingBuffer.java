@@ -0,0 +1,110 @@
+package com.arcanestudios.namedvillagers;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue
+ * 
+ * Array-based queue with per-slot sequence numbers (Vyukov style). Offers and
+ * polls never block and never allocate; a full buffer rejects the offer and
+ * an empty one returns null.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameRingBuffer<E> {
+    
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+    
+    /**
+     * Creates a buffer
+     * 
+     * @param capacity Requested capacity, rounded up to a power of two
+     */
+    NameRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+    
+    /**
+     * Adds an element if there is room
+     * 
+     * @param element The element to add
+     * @return false if the buffer is full
+     */
+    boolean offer(E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots.lazySet(index, element);
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (difference < 0) {
+                return false;
+            }
+            
+            position = tail.get();
+        }
+    }
+    
+    /**
+     * Removes the oldest element
+     * 
+     * @return The element, or null if the buffer is empty
+     */
+    E poll() {
+        long position = head.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E element = slots.get(index);
+                    slots.lazySet(index, null);
+                    sequences.lazySet(index, position + mask + 1);
+                    return element;
+                }
+            } else if (difference < 0) {
+                return null;
+            }
+            
+            position = head.get();
+        }
+    }
+    
+    /**
+     * Gets the approximate number of buffered elements
+     * 
+     * @return Buffered elements, exact only when no other thread is active
+     */
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+    
+    /**
+     * Gets the buffer capacity
+     * 
+     * @return The capacity
+     */
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,51 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.entity.Entity;
+
+import java.util.List;
+
+/**
+ * Names from NamedVillagers for other plugins
+ * 
+ * Registered with the Bukkit ServicesManager while the plugin is enabled:
+ * <pre>
+ * NameService names = Bukkit.getServicesManager().load(NameService.class);
+ * </pre>
+ * Names follow the pools, formats and biome mappings of the current
+ * configuration. Generation does not touch any entity or world and is safe
+ * to call from any thread.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public interface NameService {
+    
+    /**
+     * Generates one name
+     * 
+     * @param context What the name is for
+     * @return The rendered name
+     */
+    String generateName(NameContext context);
+    
+    /**
+     * Generates a name for each context
+     * 
+     * The whole batch is drawn from one configuration, even if a reload
+     * happens meanwhile, and lookups shared by contexts are done once.
+     * 
+     * @param contexts What the names are for
+     * @return The rendered names, in the order of the contexts
+     */
+    List<String> generateNames(List<NameContext> contexts);
+    
+    /**
+     * Gets the name NamedVillagers stored for an entity
+     * 
+     * Must be called on the thread that owns the entity.
+     * 
+     * @param entity The entity
+     * @return The stored name, or null if it has none
+     */
+    String getStoredName(Entity entity);
+}
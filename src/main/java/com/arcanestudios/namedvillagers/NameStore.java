@@ -0,0 +1,467 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.NamespacedKey;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Villager;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+
+/**
+ * Reads and writes villager names in the PersistentDataContainer
+ * 
+ * Generated names are kept in one of two formats. The string format stores
+ * the rendered name and its packed components as two entries. The binary
+ * format stores only a small NameData byte array; the text lives in the
+ * entity's custom name and is rendered again when the pools or formats
+ * change. Entries in the other format are converted as villagers load.
+ * Names assigned by hand are always stored as a string with empty
+ * components.
+ * 
+ * Components only point into the pools, so before a name is rendered again
+ * they are checked against what was stored: the names hash in the binary
+ * format, the stored text otherwise. When the pools were edited so the
+ * components now describe someone else, the villager keeps its text as a
+ * hand-assigned name instead of being renamed.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class NameStore {
+    
+    private final NamedVillagers plugin;
+    
+    public NameStore(NamedVillagers plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Checks if an entity has a custom name stored in PDC
+     * 
+     * @param entity The entity
+     * @return true if a name is stored
+     */
+    public boolean hasStoredName(Entity entity) {
+        PersistentDataContainer pdc = entity.getPersistentDataContainer();
+        return pdc.has(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING)
+            || pdc.has(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+    }
+    
+    /**
+     * Gets the stored custom name from PDC
+     * 
+     * For names in the binary format this is the entity's displayed name.
+     * 
+     * @param entity The entity
+     * @return The stored name, or null if none
+     */
+    public String getStoredName(Entity entity) {
+        PersistentDataContainer pdc = entity.getPersistentDataContainer();
+        String name = pdc.get(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING);
+        if (name == null && pdc.has(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY)) {
+            name = entity.getCustomName();
+        }
+        return name;
+    }
+    
+    /**
+     * Gets the stored name components from PDC
+     * 
+     * @param entity The entity
+     * @return The packed components, or NameComponents.NONE for hand-assigned or missing names
+     */
+    public long getComponents(Entity entity) {
+        PersistentDataContainer pdc = entity.getPersistentDataContainer();
+        byte[] data = pdc.get(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+        if (NameData.isValid(data)) {
+            return NameData.components(data);
+        }
+        
+        Long components = pdc.get(NamedVillagers.getComponentsKey(), PersistentDataType.LONG);
+        return components != null ? components : NameComponents.NONE;
+    }
+    
+    /**
+     * Gets the record that reproduces a villager's deterministic name
+     * 
+     * @param entity The entity
+     * @return The replay record, see NameReplay, or NONE if none was stored
+     */
+    long getReplay(Entity entity) {
+        Long replay = entity.getPersistentDataContainer().get(NamedVillagers.getReplayKey(), PersistentDataType.LONG);
+        return replay != null ? replay : NameReplay.NONE;
+    }
+    
+    /**
+     * Checks if a villager's name was rendered with an older configuration
+     * 
+     * Only names in the binary format record their render version.
+     * 
+     * @param entity The entity
+     * @return true if the name should be rendered again
+     */
+    public boolean isStale(Entity entity) {
+        byte[] data = entity.getPersistentDataContainer().get(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+        return NameData.isValid(data)
+            && NameData.renderVersion(data) != plugin.getConfigManager().getSnapshot().getRenderVersion();
+    }
+    
+    /**
+     * Checks if an entity shows another name than the one last stored for it,
+     * e.g. because a player used a name tag on it since
+     * 
+     * @param entity The entity
+     * @return true if the displayed name is not the stored one
+     */
+    public boolean isRenamed(Entity entity) {
+        String displayed = entity.getCustomName();
+        if (displayed == null) {
+            return false;
+        }
+        
+        PersistentDataContainer pdc = entity.getPersistentDataContainer();
+        byte[] data = pdc.get(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+        if (NameData.isValid(data)) {
+            int hash = NameData.textHash(data);
+            return hash != NameData.UNKNOWN_HASH && hash != NameData.hashText(displayed);
+        }
+        String stored = pdc.get(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING);
+        return stored != null && !stored.equals(displayed);
+    }
+    
+    /**
+     * Stores and displays a generated name
+     * 
+     * @param villager The villager
+     * @param name The generated name
+     * @param cause Why the villager is named
+     * @return false if a listener cancelled the name
+     */
+    public boolean applyGenerated(Villager villager, GeneratedName name, NameCause cause) {
+        return applyGenerated(villager, name, cause, null);
+    }
+    
+    /**
+     * Stores and displays a generated name chosen by someone
+     * 
+     * @param villager The villager
+     * @param name The generated name
+     * @param cause Why the villager is named
+     * @param actor Who renamed the villager, for the history log, or null for the plugin itself
+     * @return false if a listener cancelled the name
+     */
+    public boolean applyGenerated(Villager villager, GeneratedName name, NameCause cause, String actor) {
+        long start = System.nanoTime();
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        if (!allow(villager, name.getName(), cause)) {
+            // Give back the name claimed while generating; the villager keeps its current one
+            if (pools.isUniqueNames()) {
+                plugin.getUniquenessIndex().track(pools, plugin.getNameGenerator().getTemplate(pools, villager), villager,
+                    getComponents(villager));
+            }
+            return false;
+        }
+        
+        String oldName = getStoredName(villager);
+        PersistentDataContainer pdc = villager.getPersistentDataContainer();
+        int writes = store(pdc, pools, name.getName(), name.getComponents(), pools.getRenderVersion());
+        // Random and hand names keep the record, so /nv restore can still bring the seeded name back
+        if (name.getReplay() != NameReplay.NONE) {
+            pdc.set(NamedVillagers.getReplayKey(), PersistentDataType.LONG, name.getReplay());
+            writes++;
+        }
+        
+        display(villager, name.getName());
+        if (pools.isUniqueNames()) {
+            plugin.getUniquenessIndex().track(pools, plugin.getNameGenerator().getTemplate(pools, villager), villager,
+                name.getComponents());
+        }
+        if (pools.isFamilySurnames()) {
+            plugin.getFamilyIndex().track(pools, villager, name.getComponents());
+        }
+        plugin.getNameRegistry().record(villager, name.getName());
+        
+        PluginMetrics metrics = plugin.getMetrics();
+        metrics.countNamed();
+        metrics.countPdcWrites(writes);
+        metrics.recordApply(System.nanoTime() - start);
+        plugin.getNameHistory().record(villager, oldName, name.getName(), cause, actor);
+        announce(villager, name.getName(), cause);
+        return true;
+    }
+    
+    /**
+     * Re-renders a generated name with the villager's current profession,
+     * level and configuration
+     * 
+     * The name parts come from the stored components; only the title changes,
+     * unless the formats were edited since the name was rendered. Names a
+     * player changed since, and names whose components no longer resolve to
+     * the same names, keep their text.
+     * 
+     * @param villager The villager
+     * @return true if the displayed name changed
+     */
+    public boolean refreshTitle(Villager villager) {
+        long components = getComponents(villager);
+        if (components == NameComponents.NONE) {
+            return false;
+        }
+        if (isRenamed(villager)) {
+            detach(villager, villager.getCustomName());
+            return false;
+        }
+        
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        String stored = getStoredName(villager);
+        byte[] data = villager.getPersistentDataContainer().get(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+        if (!describes(villager, pools, components, data, stored)) {
+            detach(villager, stored);
+            return false;
+        }
+        
+        String name = plugin.getNameGenerator().render(pools, components, villager);
+        boolean changed = !name.equals(stored);
+        if (!changed && !isStale(villager)) {
+            return false;
+        }
+        
+        plugin.getMetrics().countPdcWrites(store(villager.getPersistentDataContainer(), pools, name, components,
+            pools.getRenderVersion()));
+        if (changed) {
+            display(villager, name);
+            plugin.getNameRegistry().record(villager, name);
+        }
+        return changed;
+    }
+    
+    /**
+     * Stores and displays a name chosen by a player
+     * 
+     * @param villager The villager
+     * @param name The custom name
+     * @param actor Who renamed the villager, for the history log
+     * @return false if a listener cancelled the name
+     */
+    public boolean applyCustom(Villager villager, String name, String actor) {
+        if (!allow(villager, name, NameCause.COMMAND)) {
+            return false;
+        }
+        
+        String oldName = getStoredName(villager);
+        PersistentDataContainer pdc = villager.getPersistentDataContainer();
+        pdc.set(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING, name);
+        pdc.set(NamedVillagers.getComponentsKey(), PersistentDataType.LONG, NameComponents.NONE);
+        int writes = 2 + removeIfPresent(pdc, NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+        
+        display(villager, name);
+        plugin.getUniquenessIndex().untrack(villager);
+        plugin.getFamilyIndex().untrack(villager);
+        plugin.getNameRegistry().record(villager, name);
+        plugin.getMetrics().countPdcWrites(writes);
+        plugin.getNameHistory().record(villager, oldName, name, NameCause.COMMAND, actor);
+        announce(villager, name, NameCause.COMMAND);
+        return true;
+    }
+    
+    /**
+     * Converts a generated name stored in the other format to the configured one
+     * 
+     * Names converted to the binary format are marked with an unknown render
+     * version, so the next refresh renders them with the current configuration.
+     * Names stored as text alone, as versions before components did, are
+     * looked up in the current pools; the ones that cannot be found there are
+     * marked as assigned by hand.
+     * 
+     * @param villager The villager that just loaded
+     * @return true if the stored data was rewritten
+     */
+    public boolean migrate(Villager villager) {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        PersistentDataContainer pdc = villager.getPersistentDataContainer();
+        Long components = pdc.get(NamedVillagers.getComponentsKey(), PersistentDataType.LONG);
+        byte[] data = pdc.get(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+        String stored = pdc.get(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING);
+        
+        int writes;
+        if (components == null && data == null) {
+            if (stored == null) {
+                return false;
+            }
+            if (isRenamed(villager)) {
+                detach(villager, villager.getCustomName());
+                return true;
+            }
+            long parsed = plugin.getNameGenerator().parse(pools, villager, stored);
+            if (parsed == NameComponents.NONE) {
+                pdc.set(NamedVillagers.getComponentsKey(), PersistentDataType.LONG, NameComponents.NONE);
+                writes = 1;
+            } else {
+                writes = store(pdc, pools, stored, parsed, NameData.UNKNOWN_VERSION);
+            }
+        } else if (pools.isBinaryStorage()) {
+            if (components == null || components == NameComponents.NONE) {
+                return false;
+            }
+            if (isRenamed(villager)) {
+                detach(villager, villager.getCustomName());
+                return true;
+            }
+            if (!describes(villager, pools, components, null, stored)) {
+                detach(villager, stored);
+                return true;
+            }
+            writes = store(pdc, pools, stored, components, NameData.UNKNOWN_VERSION);
+        } else {
+            if (data == null) {
+                return false;
+            }
+            String name = villager.getCustomName();
+            if (!NameData.isValid(data) || name == null) {
+                // Unreadable or no longer displayed; forget it so the villager counts as unnamed
+                pdc.remove(NamedVillagers.getNameDataKey());
+                plugin.getMetrics().countPdcWrites(1);
+                return true;
+            }
+            if (isRenamed(villager) || !describes(villager, pools, NameData.components(data), data, name)) {
+                detach(villager, name);
+                return true;
+            }
+            writes = store(pdc, pools, name, NameData.components(data), NameData.renderVersion(data));
+        }
+        
+        plugin.getMetrics().countPdcWrites(writes);
+        return true;
+    }
+    
+    /**
+     * Drops components that no longer describe a villager's name
+     * 
+     * Called as villagers load, before they are indexed, so surnames and
+     * uniqueness keys are never taken from components a reload moved or from
+     * a villager a player renamed. Names rendered under the current pools are
+     * not checked against them again.
+     * 
+     * @param villager The villager that just loaded
+     * @return false if the name is now kept as text
+     */
+    public boolean verify(Villager villager) {
+        long components = getComponents(villager);
+        if (components == NameComponents.NONE) {
+            return true;
+        }
+        
+        if (isRenamed(villager)) {
+            detach(villager, villager.getCustomName());
+            return false;
+        }
+        
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        byte[] data = villager.getPersistentDataContainer().get(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+        if (NameData.isValid(data) && NameData.renderVersion(data) == pools.getRenderVersion()) {
+            return true;
+        }
+        
+        String name = getStoredName(villager);
+        if (describes(villager, pools, components, data, name)) {
+            return true;
+        }
+        detach(villager, name);
+        return false;
+    }
+    
+    /**
+     * Checks if stored components still resolve to the names they were stored with
+     * 
+     * @param data The NameData entry, or null for the string format
+     * @param name The stored or displayed name, or null if there is none to compare
+     */
+    private boolean describes(Villager villager, NamePoolSnapshot pools, long components, byte[] data, String name) {
+        if (NameData.isValid(data) && NameData.namesHash(data) != NameData.UNKNOWN_HASH) {
+            return NameData.namesHash(data) == pools.getNamesHash(components);
+        }
+        return name == null || plugin.getNameGenerator().showsParts(pools, components, villager, name);
+    }
+    
+    /**
+     * Keeps a name as if assigned by hand, because a player renamed the
+     * villager or its components now point at other names
+     * 
+     * The villager keeps the text it shows and drops out of the uniqueness
+     * and family indexes, since its parts can no longer be told apart.
+     */
+    private void detach(Villager villager, String name) {
+        PersistentDataContainer pdc = villager.getPersistentDataContainer();
+        pdc.set(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING, name);
+        pdc.set(NamedVillagers.getComponentsKey(), PersistentDataType.LONG, NameComponents.NONE);
+        int writes = 2 + removeIfPresent(pdc, NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+        
+        plugin.getUniquenessIndex().untrack(villager);
+        plugin.getFamilyIndex().untrack(villager);
+        plugin.getNameRegistry().record(villager, name);
+        plugin.getMetrics().countPdcWrites(writes);
+        if (plugin.getConfigManager().isDebugEnabled()) {
+            plugin.getLogger().info("Keeping the name of villager " + villager.getUniqueId() + " as assigned by hand: " + name);
+        }
+    }
+    
+    /**
+     * Writes a generated name in the configured format and removes the other format's entries
+     * 
+     * @param name The rendered name, or null in the binary format if it is not known
+     * @return The number of PDC writes
+     */
+    private int store(PersistentDataContainer pdc, NamePoolSnapshot pools, String name, long components, int version) {
+        if (pools.isBinaryStorage()) {
+            pdc.set(NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY,
+                NameData.encode(components, version, pools.getNamesHash(components), name));
+            return 1 + removeIfPresent(pdc, NamedVillagers.getCustomNameKey(), PersistentDataType.STRING)
+                + removeIfPresent(pdc, NamedVillagers.getComponentsKey(), PersistentDataType.LONG);
+        }
+        
+        pdc.set(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING, name);
+        pdc.set(NamedVillagers.getComponentsKey(), PersistentDataType.LONG, components);
+        return 2 + removeIfPresent(pdc, NamedVillagers.getNameDataKey(), PersistentDataType.BYTE_ARRAY);
+    }
+    
+    /**
+     * Removes a PDC entry if it exists
+     * 
+     * @return 1 if an entry was removed, otherwise 0
+     */
+    private int removeIfPresent(PersistentDataContainer pdc, NamespacedKey key, PersistentDataType<?, ?> type) {
+        if (pdc.has(key, type)) {
+            pdc.remove(key);
+            return 1;
+        }
+        return 0;
+    }
+    
+    /**
+     * Asks listeners if a name may be applied, without building the event when nobody listens
+     */
+    private boolean allow(Villager villager, String name, NameCause cause) {
+        if (!VillagerPreNameEvent.hasListeners()) {
+            return true;
+        }
+        VillagerPreNameEvent event = new VillagerPreNameEvent(villager, name, cause);
+        plugin.getServer().getPluginManager().callEvent(event);
+        return !event.isCancelled();
+    }
+    
+    /**
+     * Tells listeners a name was applied, without building the event when nobody listens
+     */
+    private void announce(Villager villager, String name, NameCause cause) {
+        if (VillagerNamedEvent.hasListeners()) {
+            plugin.getServer().getPluginManager().callEvent(new VillagerNamedEvent(villager, name, cause));
+        }
+    }
+    
+    /**
+     * Applies a name as the villager's custom name, visible if the nametag mode allows
+     */
+    private void display(Villager villager, String name) {
+        villager.setCustomName(name);
+        villager.setCustomNameVisible(plugin.getNametagManager().register(villager));
+    }
+}
@@ -0,0 +1,231 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.entity.Villager;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps buffers of pre-generated names topped up in the background
+ * 
+ * One ring buffer exists per profession and biome category, created the first
+ * time that combination is requested. An async task refills buffers that run
+ * low, so a spawn burst only has to pop ready name components and render them.
+ * Buffers belong to a single NamePoolSnapshot and are dropped on reload.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class NameSupply {
+    
+    private static final int PROFESSIONS = Villager.Profession.values().length;
+    
+    private final NamedVillagers plugin;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final AtomicBoolean refilling = new AtomicBoolean();
+    
+    private volatile Buffers buffers;
+    private TaskScheduler.Task refillTask;
+    private int ticksSinceRefill;
+    
+    public NameSupply(NamedVillagers plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Starts the background refill task
+     */
+    public void start() {
+        refillTask = plugin.getTaskScheduler().runTimerAsync(this::tick, 1L, 1L);
+    }
+    
+    /**
+     * Stops the background refill task and drops all buffered names
+     */
+    public void stop() {
+        if (refillTask != null) {
+            refillTask.cancel();
+            refillTask = null;
+        }
+        buffers = null;
+    }
+    
+    /**
+     * Takes a pre-generated name head, if one is ready
+     * 
+     * @param pools The snapshot the caller is generating from
+     * @param profession The profession ordinal
+     * @param category The biome category index
+     * @return A name head, or null on a miss or when the supply is disabled
+     */
+    NameHead poll(NamePoolSnapshot pools, int profession, int category) {
+        if (!pools.isSupplyEnabled()) {
+            return null;
+        }
+        
+        Buffers current = buffersFor(pools);
+        int index = category * PROFESSIONS + profession;
+        NameRingBuffer<NameHead> ring = current.rings.get(index);
+        
+        if (ring == null) {
+            // First request for this combination; let the worker start filling it
+            current.rings.compareAndSet(index, null, new NameRingBuffer<>(pools.getSupplyBufferSize()));
+            misses.increment();
+            return null;
+        }
+        
+        NameHead head = ring.poll();
+        if (head != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return head;
+    }
+    
+    /**
+     * Gets the buffer set for a snapshot, replacing the one from an older snapshot
+     */
+    private Buffers buffersFor(NamePoolSnapshot pools) {
+        Buffers current = buffers;
+        if (current == null || current.pools != pools) {
+            current = new Buffers(pools);
+            buffers = current;
+        }
+        return current;
+    }
+    
+    /**
+     * Runs every tick on an async thread; skips the tick if the previous pass is still running
+     */
+    private void tick() {
+        if (!refilling.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            refill();
+        } finally {
+            refilling.set(false);
+        }
+    }
+    
+    /**
+     * Tops up buffers that ran low, at the configured interval
+     */
+    private void refill() {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        if (!pools.isSupplyEnabled() || ++ticksSinceRefill < pools.getSupplyRefillInterval()) {
+            return;
+        }
+        ticksSinceRefill = 0;
+        
+        Buffers current = buffers;
+        if (current == null || current.pools != pools) {
+            return;
+        }
+        
+        NameGenerator generator = plugin.getNameGenerator();
+        NameRandom random = new NameRandom(ThreadLocalRandom.current().nextLong());
+        int threshold = pools.getSupplyRefillThreshold();
+        
+        for (int index = 0; index < current.rings.length(); index++) {
+            NameRingBuffer<NameHead> ring = current.rings.get(index);
+            if (ring == null || ring.size() > threshold) {
+                continue;
+            }
+            
+            int category = index / PROFESSIONS;
+            int profession = index % PROFESSIONS;
+            while (ring.size() < ring.capacity()) {
+                if (!ring.offer(generator.generateHead(pools, profession, category, random))) {
+                    break;
+                }
+                generated.increment();
+            }
+        }
+    }
+    
+    /**
+     * Gets the number of names served from a buffer
+     * 
+     * @return Hit count since startup
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    /**
+     * Gets the number of requests that found no ready name
+     * 
+     * @return Miss count since startup
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+    
+    /**
+     * Gets the number of names generated by the background worker
+     * 
+     * @return Generated count since startup
+     */
+    public long getGenerated() {
+        return generated.sum();
+    }
+    
+    /**
+     * Gets the number of buffers currently in use
+     * 
+     * @return Active buffer count
+     */
+    public int getActiveBuffers() {
+        Buffers current = buffers;
+        if (current == null) {
+            return 0;
+        }
+        int active = 0;
+        for (int i = 0; i < current.rings.length(); i++) {
+            if (current.rings.get(i) != null) {
+                active++;
+            }
+        }
+        return active;
+    }
+    
+    /**
+     * Gets the number of names ready across all buffers
+     * 
+     * @return Buffered name count
+     */
+    public int getBufferedNames() {
+        Buffers current = buffers;
+        if (current == null) {
+            return 0;
+        }
+        int buffered = 0;
+        for (int i = 0; i < current.rings.length(); i++) {
+            NameRingBuffer<NameHead> ring = current.rings.get(i);
+            if (ring != null) {
+                buffered += ring.size();
+            }
+        }
+        return buffered;
+    }
+    
+    /**
+     * Ring buffers for one snapshot, indexed by category * professions + profession
+     */
+    private static final class Buffers {
+        
+        private final NamePoolSnapshot pools;
+        private final AtomicReferenceArray<NameRingBuffer<NameHead>> rings;
+        
+        private Buffers(NamePoolSnapshot pools) {
+            this.pools = pools;
+            this.rings = new AtomicReferenceArray<>(pools.getCategoryCount() * PROFESSIONS);
+        }
+    }
+}
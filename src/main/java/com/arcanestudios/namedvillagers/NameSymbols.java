@@ -0,0 +1,78 @@
+package com.arcanestudios.namedvillagers;
+
+/**
+ * Reduces name strings to 64-bit symbols for uniqueness checks
+ * 
+ * A symbol is a hash of the text alone, so a name gets the same symbol
+ * whether it comes from a config list, a name pack or a trained model, and
+ * keeps it across reloads and restarts. At 64 bits, two different names
+ * sharing a symbol is too unlikely to matter even for packs of millions of
+ * names.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameSymbols {
+    
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+    
+    private NameSymbols() {
+    }
+    
+    /**
+     * Gets the symbol of a name
+     * 
+     * @param name The name
+     * @return The symbol, never 0
+     */
+    static long of(CharSequence name) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < name.length(); i++) {
+            hash = (hash ^ name.charAt(i)) * FNV_PRIME;
+        }
+        return finish(hash);
+    }
+    
+    /**
+     * Gets the symbol of a name held in the start of a char array
+     * 
+     * @param name The chars
+     * @param length The number of chars that make up the name
+     * @return The symbol, equal to of() for the same text
+     */
+    static long of(char[] name, int length) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < length; i++) {
+            hash = (hash ^ name[i]) * FNV_PRIME;
+        }
+        return finish(hash);
+    }
+    
+    /**
+     * Combines the symbols of a name's parts into a uniqueness key
+     * 
+     * @param prefix Prefix symbol, 0 for none
+     * @param first First name symbol, 0 for none
+     * @param last Last name symbol, 0 for none
+     * @return The key; never 0 when at least one symbol is set
+     */
+    static long key(long prefix, long first, long last) {
+        if ((prefix | first | last) == 0) {
+            return 0L;
+        }
+        long key = NameRandom.mix64(prefix);
+        key = NameRandom.mix64(key * GOLDEN + first);
+        key = NameRandom.mix64(key * GOLDEN + last);
+        return key != 0 ? key : 1;
+    }
+    
+    /**
+     * Spreads the FNV hash over all bits and keeps 0 free for "no symbol"
+     */
+    private static long finish(long hash) {
+        long symbol = NameRandom.mix64(hash);
+        return symbol != 0 ? symbol : 1;
+    }
+}
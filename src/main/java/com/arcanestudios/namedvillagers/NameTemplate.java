@@ -0,0 +1,256 @@
+package com.arcanestudios.namedvillagers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A name format compiled into a flat list of append operations
+ * 
+ * Templates are plain text with placeholders in braces, e.g.
+ * "{first} the {profession}". Text in square brackets is optional: the
+ * whole group is left out when any placeholder inside it is empty, so
+ * "[{legendary} ]{first}" only adds the space when there is a prefix.
+ * Groups cannot be nested.
+ * 
+ * Rendering is a single pass over the operations into a buffer sized from
+ * the longest value each placeholder can take, so it never grows.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameTemplate {
+    
+    static final int LEGENDARY = 0;
+    static final int FIRST = 1;
+    static final int LAST = 2;
+    static final int PROFESSION = 3;
+    static final int LEVEL = 4;
+    static final int PLACEHOLDERS = 5;
+    
+    private static final String[] PLACEHOLDER_NAMES = {"legendary", "first", "last", "profession", "level"};
+    
+    // Operation codes; placeholders use their own index
+    private static final byte TEXT = -1;
+    private static final byte GROUP_START = -2;
+    private static final byte GROUP_END = -3;
+    
+    private final String source;
+    private final byte[] ops;
+    private final String[] texts;
+    private final int capacity;
+    private final boolean[] uses = new boolean[PLACEHOLDERS];
+    
+    private NameTemplate(String source, byte[] ops, String[] texts, int literalLength, int[] maxLengths) {
+        this.source = source;
+        this.ops = ops;
+        this.texts = texts;
+        
+        int size = literalLength;
+        for (byte op : ops) {
+            if (op >= 0) {
+                uses[op] = true;
+                size += maxLengths[op];
+            }
+        }
+        this.capacity = size;
+    }
+    
+    /**
+     * Compiles a template
+     * 
+     * Unknown placeholders and stray brackets are kept as literal text and
+     * reported as warnings.
+     * 
+     * @param source The template text
+     * @param maxLengths Longest value of each placeholder, indexed by placeholder
+     * @param warnings Receives problems found in the template
+     * @return The compiled template
+     */
+    static NameTemplate compile(String source, int[] maxLengths, List<String> warnings) {
+        List<Byte> ops = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int literalLength = 0;
+        boolean inGroup = false;
+        
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            
+            // Placeholder
+            if (c == '{') {
+                int end = source.indexOf('}', i);
+                int placeholder = end < 0 ? -1 : placeholderOf(source.substring(i + 1, end));
+                if (placeholder >= 0) {
+                    literalLength += flushText(literal, ops, texts);
+                    ops.add((byte) placeholder);
+                    i = end + 1;
+                    continue;
+                }
+                warnings.add("Format '" + source + "' has an unknown placeholder at position " + i);
+            }
+            
+            // Optional group
+            if (c == '[' && !inGroup) {
+                literalLength += flushText(literal, ops, texts);
+                ops.add(GROUP_START);
+                inGroup = true;
+                i++;
+                continue;
+            }
+            if (c == ']' && inGroup) {
+                literalLength += flushText(literal, ops, texts);
+                ops.add(GROUP_END);
+                inGroup = false;
+                i++;
+                continue;
+            }
+            if (c == '[' || c == ']') {
+                warnings.add("Format '" + source + "' has a stray '" + c + "' at position " + i);
+            }
+            
+            literal.append(c);
+            i++;
+        }
+        
+        literalLength += flushText(literal, ops, texts);
+        if (inGroup) {
+            warnings.add("Format '" + source + "' has an unclosed '['");
+            ops.add(GROUP_END);
+        }
+        
+        byte[] compiled = new byte[ops.size()];
+        for (int op = 0; op < compiled.length; op++) {
+            compiled[op] = ops.get(op);
+        }
+        return new NameTemplate(source, compiled, texts.toArray(new String[0]), literalLength, maxLengths);
+    }
+    
+    /**
+     * Adds pending literal text as a TEXT operation
+     * 
+     * @return The length of the text added
+     */
+    private static int flushText(StringBuilder literal, List<Byte> ops, List<String> texts) {
+        if (literal.length() == 0) {
+            return 0;
+        }
+        int length = literal.length();
+        ops.add(TEXT);
+        texts.add(literal.toString());
+        literal.setLength(0);
+        return length;
+    }
+    
+    /**
+     * Gets the placeholder index of a name
+     * 
+     * @return The index, or -1 if unknown
+     */
+    private static int placeholderOf(String name) {
+        String key = name.trim().toLowerCase(Locale.ROOT);
+        for (int i = 0; i < PLACEHOLDER_NAMES.length; i++) {
+            if (PLACEHOLDER_NAMES[i].equals(key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Renders a name; null or empty values count as missing
+     * 
+     * @param legendary The legendary prefix
+     * @param first The first name
+     * @param last The last name
+     * @param profession The profession title
+     * @param level The level title
+     * @return The rendered name
+     */
+    String render(String legendary, String first, String last, String profession, String level) {
+        StringBuilder name = new StringBuilder(capacity);
+        int text = 0;
+        int groupStart = -1;
+        boolean groupMissing = false;
+        
+        for (byte op : ops) {
+            switch (op) {
+                case TEXT:
+                    name.append(texts[text++]);
+                    break;
+                case GROUP_START:
+                    groupStart = name.length();
+                    groupMissing = false;
+                    break;
+                case GROUP_END:
+                    // Drop everything the group wrote if one of its values was missing
+                    if (groupMissing) {
+                        name.setLength(groupStart);
+                    }
+                    groupStart = -1;
+                    break;
+                default:
+                    String value = valueOf(op, legendary, first, last, profession, level);
+                    if (value == null || value.isEmpty()) {
+                        groupMissing = true;
+                    } else {
+                        name.append(value);
+                    }
+            }
+        }
+        return name.toString();
+    }
+    
+    /**
+     * Picks the value of a placeholder
+     */
+    private static String valueOf(int placeholder, String legendary, String first, String last,
+            String profession, String level) {
+        switch (placeholder) {
+            case LEGENDARY: return legendary;
+            case FIRST: return first;
+            case LAST: return last;
+            case PROFESSION: return profession;
+            case LEVEL: return level;
+            default: return null;
+        }
+    }
+    
+    /**
+     * Checks if the template shows a placeholder
+     * 
+     * @param placeholder One of the placeholder constants
+     * @return true if it appears anywhere in the template
+     */
+    boolean uses(int placeholder) {
+        return uses[placeholder];
+    }
+    
+    /**
+     * Checks if the rendered name depends on the villager's profession or level
+     * 
+     * @return true if the template shows the profession or level
+     */
+    boolean isDynamic() {
+        return uses[PROFESSION] || uses[LEVEL];
+    }
+    
+    /**
+     * Gets the buffer size a rendered name never exceeds
+     * 
+     * @return Capacity hint in characters
+     */
+    int getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Gets the template text this was compiled from
+     * 
+     * @return The source text
+     */
+    String getSource() {
+        return source;
+    }
+}
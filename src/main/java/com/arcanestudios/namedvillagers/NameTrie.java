@@ -0,0 +1,300 @@
+package com.arcanestudios.namedvillagers;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Prefix tree of name words for tab completion
+ * 
+ * Words are matched ignoring case and suggested in the case they were first
+ * added with. Each word carries a count, e.g. how many villagers have it in
+ * their name, and every node remembers the highest count below it. A lookup
+ * walks down the typed prefix and then only into branches that can still
+ * beat the suggestions found so far, so it costs the length of the prefix
+ * plus the suggestions returned, not the number of words stored.
+ * 
+ * Nodes live in parallel arrays and each node's children form a list sorted
+ * by character, so equally counted words come out alphabetically.
+ * 
+ * Not thread safe; callers guard it or never change it after building.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NameTrie {
+    
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+    
+    private char[] keys = new char[64];
+    private int[] parents = new int[64];
+    private int[] firstChildren = new int[64];
+    private int[] nextSiblings = new int[64];
+    private int[] counts = new int[64];
+    private int[] best = new int[64];
+    private String[] words = new String[64];
+    private int nodeCount = 1;
+    private int freeNode = NONE;
+    private int wordCount;
+    
+    NameTrie() {
+        firstChildren[ROOT] = NONE;
+        nextSiblings[ROOT] = NONE;
+        parents[ROOT] = NONE;
+    }
+    
+    /**
+     * Adds one to a word's count
+     * 
+     * @param word The word, ignored if empty
+     */
+    void add(String word) {
+        if (word.isEmpty()) {
+            return;
+        }
+        
+        int node = ROOT;
+        for (int i = 0; i < word.length(); i++) {
+            node = child(node, Character.toLowerCase(word.charAt(i)), true);
+        }
+        if (counts[node]++ == 0) {
+            words[node] = word;
+            wordCount++;
+        }
+        raise(node, counts[node]);
+    }
+    
+    /**
+     * Takes one off a word's count, forgetting the word when it reaches zero
+     * 
+     * @param word The word
+     */
+    void remove(String word) {
+        int node = find(word);
+        if (node == NONE || counts[node] == 0) {
+            return;
+        }
+        
+        if (--counts[node] == 0) {
+            words[node] = null;
+            wordCount--;
+        }
+        lower(node);
+        prune(node);
+    }
+    
+    /**
+     * Collects the highest counted words starting with a prefix
+     * 
+     * Higher counts come first; equal counts are in alphabetical order.
+     * 
+     * @param prefix The typed prefix, any case
+     * @param limit Maximum number of words
+     * @param out The list the words are appended to
+     */
+    void complete(String prefix, int limit, List<String> out) {
+        if (limit <= 0) {
+            return;
+        }
+        int node = find(prefix);
+        if (node == NONE || best[node] == 0) {
+            return;
+        }
+        
+        Ranking ranking = new Ranking(limit);
+        collect(node, ranking);
+        for (int i = 0; i < ranking.size; i++) {
+            out.add(words[ranking.nodes[i]]);
+        }
+    }
+    
+    /**
+     * Gets the number of distinct words stored
+     * 
+     * @return Word count
+     */
+    int size() {
+        return wordCount;
+    }
+    
+    /**
+     * Walks the subtree in character order, skipping branches that cannot rank
+     */
+    private void collect(int node, Ranking ranking) {
+        if (counts[node] > 0) {
+            ranking.offer(node, counts[node]);
+        }
+        for (int c = firstChildren[node]; c != NONE; c = nextSiblings[c]) {
+            // A later word needs a strictly higher count to displace an earlier one
+            if (!ranking.isFull() || best[c] > ranking.lowest()) {
+                collect(c, ranking);
+            }
+        }
+    }
+    
+    /**
+     * Follows a word down the tree
+     * 
+     * @return The node the word ends at, or NONE if no stored word starts with it
+     */
+    private int find(String word) {
+        int node = ROOT;
+        for (int i = 0; i < word.length() && node != NONE; i++) {
+            node = child(node, Character.toLowerCase(word.charAt(i)), false);
+        }
+        return node;
+    }
+    
+    /**
+     * Gets the child of a node for a character, optionally creating it in sorted position
+     */
+    private int child(int node, char key, boolean create) {
+        int previous = NONE;
+        int c = firstChildren[node];
+        while (c != NONE && keys[c] < key) {
+            previous = c;
+            c = nextSiblings[c];
+        }
+        if (c != NONE && keys[c] == key) {
+            return c;
+        }
+        if (!create) {
+            return NONE;
+        }
+        
+        int created = allocate(key, node);
+        nextSiblings[created] = c;
+        if (previous == NONE) {
+            firstChildren[node] = created;
+        } else {
+            nextSiblings[previous] = created;
+        }
+        return created;
+    }
+    
+    /**
+     * Takes a node from the free list or the end of the arrays
+     */
+    private int allocate(char key, int parent) {
+        int node;
+        if (freeNode != NONE) {
+            node = freeNode;
+            freeNode = nextSiblings[node];
+        } else {
+            if (nodeCount == keys.length) {
+                grow(nodeCount * 2);
+            }
+            node = nodeCount++;
+        }
+        keys[node] = key;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        counts[node] = 0;
+        best[node] = 0;
+        words[node] = null;
+        return node;
+    }
+    
+    /**
+     * Resizes the node arrays
+     */
+    private void grow(int capacity) {
+        keys = Arrays.copyOf(keys, capacity);
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        best = Arrays.copyOf(best, capacity);
+        words = Arrays.copyOf(words, capacity);
+    }
+    
+    /**
+     * Lifts the best count from a node up to the root after its count grew
+     */
+    private void raise(int node, int count) {
+        while (node != NONE && best[node] < count) {
+            best[node] = count;
+            node = parents[node];
+        }
+    }
+    
+    /**
+     * Recomputes the best count from a node up to the root after its count shrank
+     */
+    private void lower(int node) {
+        while (node != NONE) {
+            int value = counts[node];
+            for (int c = firstChildren[node]; c != NONE; c = nextSiblings[c]) {
+                value = Math.max(value, best[c]);
+            }
+            if (value == best[node]) {
+                return;
+            }
+            best[node] = value;
+            node = parents[node];
+        }
+    }
+    
+    /**
+     * Unlinks empty leaves from a node upwards and puts them on the free list
+     */
+    private void prune(int node) {
+        while (node != ROOT && counts[node] == 0 && firstChildren[node] == NONE) {
+            int parent = parents[node];
+            if (firstChildren[parent] == node) {
+                firstChildren[parent] = nextSiblings[node];
+            } else {
+                int c = firstChildren[parent];
+                while (nextSiblings[c] != node) {
+                    c = nextSiblings[c];
+                }
+                nextSiblings[c] = nextSiblings[node];
+            }
+            
+            nextSiblings[node] = freeNode;
+            freeNode = node;
+            node = parent;
+        }
+    }
+    
+    /**
+     * The best words found so far during one lookup, highest count first
+     */
+    private static final class Ranking {
+        
+        private final int[] nodes;
+        private final int[] counts;
+        private int size;
+        
+        private Ranking(int limit) {
+            this.nodes = new int[limit];
+            this.counts = new int[limit];
+        }
+        
+        private boolean isFull() {
+            return size == nodes.length;
+        }
+        
+        private int lowest() {
+            return counts[size - 1];
+        }
+        
+        /**
+         * Inserts a word behind all words counted at least as high, dropping the last if full
+         */
+        private void offer(int node, int count) {
+            if (isFull() && count <= lowest()) {
+                return;
+            }
+            int position = isFull() ? size - 1 : size++;
+            while (position > 0 && counts[position - 1] < count) {
+                nodes[position] = nodes[position - 1];
+                counts[position] = counts[position - 1];
+                position--;
+            }
+            nodes[position] = node;
+            counts[position] = count;
+        }
+    }
+}
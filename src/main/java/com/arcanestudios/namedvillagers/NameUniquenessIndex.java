@@ -0,0 +1,240 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which names are in use by loaded villagers, per world
+ * 
+ * Names are reduced to a key mixed from the 64-bit symbols of the parts the
+ * villager's format shows (prefix, first and last name), and stored in primitive hash
+ * maps: one counting how many villagers use a key, one remembering which key
+ * each villager holds so it can be released exactly. In radius scope the key
+ * is additionally mixed with a coarse chunk cell. The index is rebuilt from
+ * PDC data as entities load and shrinks again as they unload.
+ * 
+ * Safe to use from any thread. Each world's tables are guarded by a lock of
+ * their own, and claim checks and records a name under that one lock, so
+ * villagers named at the same moment on different region threads cannot both
+ * take the same free name.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class NameUniquenessIndex {
+    
+    private final Map<UUID, WorldIndex> worlds = new ConcurrentHashMap<>();
+    
+    /**
+     * Checks if a name is already used near a location
+     * 
+     * @param pools The snapshot the components belong to
+     * @param template The format the name would be shown with
+     * @param location Where the name would be used
+     * @param components The packed name components
+     * @return true if another tracked villager uses the name
+     */
+    boolean isTaken(NamePoolSnapshot pools, NameTemplate template, Location location, long components) {
+        WorldIndex index = worlds.get(location.getWorld().getUID());
+        if (index == null) {
+            return false;
+        }
+        synchronized (index) {
+            return isTaken(index, pools, pools.getUniquenessKey(template, components), location);
+        }
+    }
+    
+    /**
+     * Records a name for a villager unless another villager already uses it nearby
+     * 
+     * @param pools The snapshot the components belong to
+     * @param template The format the name is shown with
+     * @param villager The villager
+     * @param components The packed name components
+     * @return true if the name was free and is now held by the villager
+     */
+    boolean claim(NamePoolSnapshot pools, NameTemplate template, Entity villager, long components) {
+        Location location = villager.getLocation();
+        long nameKey = pools.getUniquenessKey(template, components);
+        WorldIndex index = worlds.computeIfAbsent(location.getWorld().getUID(), uid -> new WorldIndex());
+        synchronized (index) {
+            if (isTaken(index, pools, nameKey, location)) {
+                return false;
+            }
+            track(index, pools, villager, location, nameKey);
+            return true;
+        }
+    }
+    
+    /**
+     * Records the name a villager holds, replacing any earlier record
+     * 
+     * @param pools The snapshot the components belong to
+     * @param template The format the name is shown with
+     * @param villager The villager
+     * @param components The packed name components, or NameComponents.NONE to release
+     */
+    void track(NamePoolSnapshot pools, NameTemplate template, Entity villager, long components) {
+        Location location = villager.getLocation();
+        long nameKey = pools.getUniquenessKey(template, components);
+        WorldIndex index = worlds.computeIfAbsent(location.getWorld().getUID(), uid -> new WorldIndex());
+        synchronized (index) {
+            track(index, pools, villager, location, nameKey);
+        }
+    }
+    
+    /**
+     * Checks a name key against one world's tables; the caller holds the lock
+     */
+    private static boolean isTaken(WorldIndex index, NamePoolSnapshot pools, long nameKey, Location location) {
+        if (nameKey == 0) {
+            return false;
+        }
+        
+        if (pools.getUniquenessScope() == NamePoolSnapshot.SCOPE_WORLD) {
+            return index.counts.containsKey(nameKey);
+        }
+        
+        // Radius scope: the cell and its neighbours cover at least the configured radius
+        int cellSize = pools.getUniquenessRadius();
+        int cellX = Math.floorDiv(location.getBlockX() >> 4, cellSize);
+        int cellZ = Math.floorDiv(location.getBlockZ() >> 4, cellSize);
+        for (int dx = -1; dx <= 1; dx++) {
+            for (int dz = -1; dz <= 1; dz++) {
+                if (index.counts.containsKey(cellKey(nameKey, cellX + dx, cellZ + dz))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Records a name in one world's tables; the caller holds the lock
+     */
+    private static void track(WorldIndex index, NamePoolSnapshot pools, Entity villager, Location location,
+            long nameKey) {
+        long entityKey = entityKey(villager.getUniqueId());
+        if (nameKey == 0) {
+            long previous = index.entities.remove(entityKey);
+            if (previous != 0) {
+                release(index, previous);
+            }
+            return;
+        }
+        
+        long key = nameKey;
+        if (pools.getUniquenessScope() == NamePoolSnapshot.SCOPE_RADIUS) {
+            int cellSize = pools.getUniquenessRadius();
+            key = cellKey(nameKey, Math.floorDiv(location.getBlockX() >> 4, cellSize),
+                Math.floorDiv(location.getBlockZ() >> 4, cellSize));
+        }
+        
+        long previous = index.entities.put(entityKey, key);
+        if (previous == key) {
+            return;
+        }
+        if (previous != 0) {
+            release(index, previous);
+        }
+        index.counts.addTo(key, 1);
+    }
+    
+    /**
+     * Forgets the name a villager holds
+     * 
+     * @param villager The villager
+     */
+    public void untrack(Entity villager) {
+        WorldIndex index = worlds.get(villager.getWorld().getUID());
+        if (index == null) {
+            return;
+        }
+        
+        synchronized (index) {
+            long previous = index.entities.remove(entityKey(villager.getUniqueId()));
+            if (previous != 0) {
+                release(index, previous);
+            }
+        }
+    }
+    
+    /**
+     * Drops everything recorded for a world
+     * 
+     * @param world The world
+     */
+    public void clearWorld(World world) {
+        worlds.remove(world.getUID());
+    }
+    
+    /**
+     * Gets the number of tracked villagers across all worlds
+     * 
+     * @return Tracked villager count
+     */
+    public int size() {
+        int size = 0;
+        for (WorldIndex index : worlds.values()) {
+            synchronized (index) {
+                size += index.entities.size();
+            }
+        }
+        return size;
+    }
+    
+    /**
+     * Gets the memory held by the index tables in bytes
+     * 
+     * @return Approximate footprint
+     */
+    public long footprintBytes() {
+        long bytes = 0;
+        for (WorldIndex index : worlds.values()) {
+            synchronized (index) {
+                bytes += index.entities.footprintBytes() + index.counts.footprintBytes();
+            }
+        }
+        return bytes;
+    }
+    
+    /**
+     * Decrements the use count of a key, removing it at zero
+     */
+    private static void release(WorldIndex index, long key) {
+        if (index.counts.addTo(key, -1) <= 0) {
+            index.counts.remove(key);
+        }
+    }
+    
+    /**
+     * Mixes a name key with a chunk cell
+     */
+    private static long cellKey(long nameKey, int cellX, int cellZ) {
+        long cell = ((long) cellX << 32) | (cellZ & 0xffffffffL);
+        long key = NameRandom.mix64(nameKey ^ NameRandom.mix64(cell));
+        return key != 0 ? key : 1;
+    }
+    
+    /**
+     * Reduces a UUID to a non-zero map key
+     */
+    private static long entityKey(UUID uuid) {
+        long key = NameRandom.mix64(uuid.getMostSignificantBits() ^ Long.rotateLeft(uuid.getLeastSignificantBits(), 32));
+        return key != 0 ? key : 1;
+    }
+    
+    /**
+     * Index tables for one world
+     */
+    private static final class WorldIndex {
+        
+        private final LongLongHashMap counts = new LongLongHashMap();
+        private final LongLongHashMap entities = new LongLongHashMap();
+    }
+}
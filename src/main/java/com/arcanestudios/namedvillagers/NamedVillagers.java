@@ -1,8 +1,15 @@
 package com.arcanestudios.namedvillagers;
 
 import org.bukkit.NamespacedKey;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
 /**
  * NamedVillagers - Automatic villager naming system
  * 
@@ -16,9 +23,26 @@ public class NamedVillagers extends JavaPlugin {
     
     private static NamedVillagers instance;
     private static NamespacedKey customNameKey;
+    private static NamespacedKey componentsKey;
+    private static NamespacedKey nameDataKey;
+    private static NamespacedKey replayKey;
     
-    private ConfigManager configManager;
+    // Swapped as a single reference on reload; readers always see a complete config
+    private volatile ConfigManager configManager;
     private NameGenerator nameGenerator;
+    private NameSupply nameSupply;
+    private NamePoolIds namePoolIds;
+    private NameUniquenessIndex uniquenessIndex;
+    private FamilyIndex familyIndex;
+    private NameStore nameStore;
+    private NameRegistry nameRegistry;
+    private NameHistory nameHistory;
+    private NamingQueue namingQueue;
+    private NametagManager nametagManager;
+    private BypassTracker bypassTracker;
+    private PluginMetrics metrics;
+    private TaskScheduler taskScheduler;
+    private final AtomicBoolean reloading = new AtomicBoolean();
     
     @Override
     public void onEnable() {
@@ -26,14 +50,79 @@ public class NamedVillagers extends JavaPlugin {
         
         // Initialize the NamespacedKey for PDC storage
         customNameKey = new NamespacedKey(this, "custom_name");
+        componentsKey = new NamespacedKey(this, "name_components");
+        nameDataKey = new NamespacedKey(this, "name");
+        replayKey = new NamespacedKey(this, "name_replay");
+        
+        // Pick the scheduler before anything starts a task
+        taskScheduler = TaskScheduler.create(this);
         
         // Initialize configuration
         saveDefaultConfig();
+        getPackFolder().mkdirs();
+        namePoolIds = new NamePoolIds(this);
+        try {
+            namePoolIds.load();
+        } catch (IOException e) {
+            getLogger().warning("Could not read pool ids, stored names may not re-render: " + e.getMessage());
+        }
         configManager = new ConfigManager(this);
+        for (String warning : configManager.getWarnings()) {
+            getLogger().warning("Config: " + warning);
+        }
+        
+        // Initialize runtime metrics before anything that records into them
+        metrics = new PluginMetrics(this);
         
         // Initialize name generator
         nameGenerator = new NameGenerator(this);
         
+        // Initialize name storage, the uniqueness index and the family index
+        uniquenessIndex = new NameUniquenessIndex();
+        familyIndex = new FamilyIndex();
+        nameStore = new NameStore(this);
+        nametagManager = new NametagManager(this);
+        bypassTracker = new BypassTracker(this);
+        
+        // Load the persistent name registry
+        nameRegistry = new NameRegistry(this);
+        try {
+            nameRegistry.open();
+        } catch (IOException e) {
+            getLogger().warning("Could not open name registry, lookups will not persist: " + e.getMessage());
+        }
+        nameRegistry.start();
+        
+        // Open the rename history log
+        nameHistory = new NameHistory(this);
+        try {
+            nameHistory.open();
+        } catch (IOException e) {
+            getLogger().warning("Could not open name history, renames will not be logged: " + e.getMessage());
+        }
+        nameHistory.start();
+        
+        // Start the background name supply
+        nameSupply = new NameSupply(this);
+        nameSupply.start();
+        
+        // Start naming villagers found unnamed as chunks load
+        namingQueue = new NamingQueue(this);
+        namingQueue.start();
+        
+        // Start showing and hiding nametags around players
+        nametagManager.start();
+        
+        // Start following players who keep villagers near them unnamed
+        bypassTracker.start();
+        
+        // Start writing metrics to the data folder, if configured
+        metrics.start();
+        
+        // Offer names to other plugins
+        getServer().getServicesManager().register(NameService.class, new PluginNameService(this), this,
+            ServicePriority.Normal);
+            
         // Register event listener
         getServer().getPluginManager().registerEvents(new VillagerListener(this), this);
         
@@ -46,10 +135,35 @@ public class NamedVillagers extends JavaPlugin {
         getLogger().info("NamedVillagers v" + getDescription().getVersion() + " has been enabled!");
         getLogger().info("Automatic naming: " + (configManager.isAutoNamingEnabled() ? "ENABLED" : "DISABLED"));
         getLogger().info("Legendary chance: " + configManager.getLegendaryChance() + "%");
+        if (taskScheduler.isRegionThreaded()) {
+            getLogger().info("Region-threaded server detected, naming runs on each villager's region");
+        }
     }
     
     @Override
     public void onDisable() {
+        getServer().getServicesManager().unregisterAll(this);
+        if (nameSupply != null) {
+            nameSupply.stop();
+        }
+        if (namingQueue != null) {
+            namingQueue.stop();
+        }
+        if (nametagManager != null) {
+            nametagManager.stop();
+        }
+        if (bypassTracker != null) {
+            bypassTracker.stop();
+        }
+        if (nameRegistry != null) {
+            nameRegistry.close();
+        }
+        if (nameHistory != null) {
+            nameHistory.close();
+        }
+        if (metrics != null) {
+            metrics.stop();
+        }
         getLogger().info("NamedVillagers has been disabled!");
         instance = null;
     }
@@ -72,6 +186,33 @@ public class NamedVillagers extends JavaPlugin {
         return customNameKey;
     }
     
+    /**
+     * Gets the NamespacedKey used for storing packed name components in PDC
+     * 
+     * @return The name components NamespacedKey
+     */
+    public static NamespacedKey getComponentsKey() {
+        return componentsKey;
+    }
+    
+    /**
+     * Gets the NamespacedKey used for storing generated names in the binary format
+     * 
+     * @return The name data NamespacedKey
+     */
+    public static NamespacedKey getNameDataKey() {
+        return nameDataKey;
+    }
+    
+    /**
+     * Gets the NamespacedKey used for storing how a deterministic name was chosen
+     * 
+     * @return The name replay NamespacedKey
+     */
+    public static NamespacedKey getReplayKey() {
+        return replayKey;
+    }
+    
     /**
      * Gets the configuration manager
      * 
@@ -91,12 +232,176 @@ public class NamedVillagers extends JavaPlugin {
     }
     
     /**
-     * Reloads the plugin configuration and reinitializes components
+     * Gets the pre-generated name supply
+     * 
+     * @return The NameSupply instance
      */
-    public void reloadPlugin() {
-        reloadConfig();
-        configManager = new ConfigManager(this);
-        nameGenerator = new NameGenerator(this);
-        getLogger().info("Configuration reloaded successfully!");
+    public NameSupply getNameSupply() {
+        return nameSupply;
+    }
+    
+    /**
+     * Gets the table that keeps name pool ids stable across reloads
+     * 
+     * @return The NamePoolIds instance
+     */
+    NamePoolIds getNamePoolIds() {
+        return namePoolIds;
+    }
+    
+    /**
+     * Gets the folder name packs are read from
+     * 
+     * @return The packs folder inside the data folder
+     */
+    public File getPackFolder() {
+        return new File(getDataFolder(), "packs");
+    }
+    
+    /**
+     * Gets the per-world name uniqueness index
+     * 
+     * @return The NameUniquenessIndex instance
+     */
+    public NameUniquenessIndex getUniquenessIndex() {
+        return uniquenessIndex;
+    }
+    
+    /**
+     * Gets the per-chunk index of family surnames
+     * 
+     * @return The FamilyIndex instance
+     */
+    public FamilyIndex getFamilyIndex() {
+        return familyIndex;
+    }
+    
+    /**
+     * Gets the PDC name store
+     * 
+     * @return The NameStore instance
+     */
+    public NameStore getNameStore() {
+        return nameStore;
+    }
+    
+    /**
+     * Gets the queue of villagers waiting for a name
+     * 
+     * @return The NamingQueue instance
+     */
+    public NamingQueue getNamingQueue() {
+        return namingQueue;
+    }
+    
+    /**
+     * Gets the manager deciding which nametags are visible
+     * 
+     * @return The NametagManager instance
+     */
+    public NametagManager getNametagManager() {
+        return nametagManager;
+    }
+    
+    /**
+     * Gets the positions of players with the bypass permission
+     * 
+     * @return The BypassTracker instance
+     */
+    public BypassTracker getBypassTracker() {
+        return bypassTracker;
+    }
+    
+    /**
+     * Gets the runtime counters and latency histograms
+     * 
+     * @return The PluginMetrics instance
+     */
+    public PluginMetrics getMetrics() {
+        return metrics;
+    }
+    
+    /**
+     * Gets the persistent name registry
+     * 
+     * @return The NameRegistry instance
+     */
+    public NameRegistry getNameRegistry() {
+        return nameRegistry;
+    }
+    
+    /**
+     * Gets the log of villager renames
+     * 
+     * @return The NameHistory instance
+     */
+    public NameHistory getNameHistory() {
+        return nameHistory;
+    }
+    
+    /**
+     * Gets the scheduler that places tasks on the right threads
+     * 
+     * @return The TaskScheduler instance
+     */
+    TaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
+    
+    /**
+     * Reloads the plugin configuration without blocking the main thread
+     * 
+     * The file is parsed, validated and compiled asynchronously. The new
+     * ConfigManager is then published on the main thread (the global region on
+     * region-threaded servers) in a single reference swap, so the running
+     * generator is never left with a half-loaded state.
+     * 
+     * @param callback Invoked on the main thread or global region with the outcome
+     * @return false if another reload is still in progress
+     */
+    public boolean reloadPlugin(Consumer<ReloadResult> callback) {
+        if (!reloading.compareAndSet(false, true)) {
+            return false;
+        }
+        
+        saveDefaultConfig();
+        taskScheduler.runAsync(() -> {
+            long start = System.nanoTime();
+            ConfigManager loaded;
+            
+            try {
+                FileConfiguration config = ConfigManager.loadConfiguration(this);
+                loaded = new ConfigManager(this, config);
+            } catch (Exception e) {
+                long loadNanos = System.nanoTime() - start;
+                taskScheduler.run(() -> {
+                    reloading.set(false);
+                    getLogger().warning("Configuration reload failed, keeping current settings: " + e.getMessage());
+                    callback.accept(ReloadResult.failure(String.valueOf(e.getMessage()), loadNanos));
+                });
+                return;
+            }
+            
+            long loadNanos = System.nanoTime() - start;
+            taskScheduler.run(() -> {
+                long swapStart = System.nanoTime();
+                configManager = loaded;
+                long swapNanos = System.nanoTime() - swapStart;
+                reloading.set(false);
+                
+                // Timers read their interval when scheduled
+                nameRegistry.reschedule();
+                nameHistory.reschedule();
+                metrics.reschedule();
+                
+                for (String warning : loaded.getWarnings()) {
+                    getLogger().warning("Config: " + warning);
+                }
+                getLogger().info("Configuration reloaded successfully!");
+                callback.accept(ReloadResult.success(loaded.getWarnings(), loadNanos, swapNanos));
+            });
+        });
+        
+        return true;
     }
 }
@@ -0,0 +1,511 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.entity.Villager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Decides which named villagers show their nametag
+ * 
+ * Every villager carrying a name from the plugin is kept in a chunk-keyed
+ * index while it is loaded. In radius mode a scan every few ticks looks up
+ * the chunks around each player and marks the villagers within the radius;
+ * in look mode only the villager closest to each player's line of sight is
+ * marked. Villagers that became marked are shown, villagers no longer marked
+ * are hidden, and only villagers near players or currently shown are ever
+ * visited, however many named villagers are loaded.
+ * 
+ * Changes are not applied during the scan. They wait in a queue that is
+ * worked off a fixed number of toggles per tick, so a player walking into a
+ * trading hall does not flip hundreds of nametags in one tick.
+ * 
+ * Index positions are refreshed whenever a scan passes a villager; the scan
+ * covers one chunk more than the radius, so villagers that wandered into a
+ * neighbouring chunk are still found.
+ * 
+ * Safe to call from any thread. The scan runs on the main thread, or the
+ * global region on region-threaded servers, where it only reads positions;
+ * the toggles themselves run on each villager's own region there.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class NametagManager {
+    
+    // Height of a villager's head above its feet, aimed at in look mode
+    private static final double HEAD_HEIGHT = 1.6;
+    private static final double LOOK_TOLERANCE_SQUARED = 0.8 * 0.8;
+    private static final int CHUNK_MARGIN = 1;
+    
+    private final NamedVillagers plugin;
+    
+    // All guarded by this
+    private final Map<UUID, Tag> tags = new HashMap<>();
+    private final Map<UUID, Map<Long, List<Tag>>> chunks = new HashMap<>();
+    private final Set<Tag> wantedShown = new HashSet<>();
+    private final LinkedHashMap<UUID, Tag> pending = new LinkedHashMap<>();
+    private int wantedHidden;
+    private long scans;
+    
+    private TaskScheduler.Task task;
+    private long ticks;
+    
+    public NametagManager(NamedVillagers plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Starts the scan and toggle task
+     */
+    public void start() {
+        task = plugin.getTaskScheduler().runTimer(this::tick, 1L, 1L);
+    }
+    
+    /**
+     * Stops the task and forgets all villagers, leaving their nametags as they are
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        synchronized (this) {
+            tags.clear();
+            chunks.clear();
+            wantedShown.clear();
+            pending.clear();
+            wantedHidden = 0;
+        }
+    }
+    
+    /**
+     * Registers a villager that is about to display a name
+     * 
+     * @param villager The villager
+     * @return Whether its nametag should be visible right away
+     */
+    public synchronized boolean register(Villager villager) {
+        boolean always = plugin.getConfigManager().getSnapshot().getNametagMode() == NamePoolSnapshot.NAMETAGS_ALWAYS;
+        Tag tag = tags.get(villager.getUniqueId());
+        if (tag == null) {
+            tag = add(villager, always);
+        } else {
+            tag.villager = villager;
+        }
+        
+        // The caller applies the state, so nothing is left to toggle
+        if (always && !tag.wanted) {
+            want(tag, true);
+        }
+        pending.remove(villager.getUniqueId());
+        tag.shown = tag.wanted;
+        return tag.wanted;
+    }
+    
+    /**
+     * Tracks a loaded villager with a name, keeping its current nametag state
+     * until the next scan
+     * 
+     * @param villager The villager
+     */
+    public synchronized void track(Villager villager) {
+        Tag tag = tags.get(villager.getUniqueId());
+        if (tag == null) {
+            add(villager, villager.isCustomNameVisible());
+        } else {
+            tag.villager = villager;
+        }
+    }
+    
+    /**
+     * Forgets a villager that unloaded, died or lost its name
+     * 
+     * @param entity The villager
+     */
+    public synchronized void untrack(Entity entity) {
+        Tag tag = tags.remove(entity.getUniqueId());
+        if (tag == null) {
+            return;
+        }
+        
+        unindex(tag);
+        pending.remove(entity.getUniqueId());
+        if (tag.wanted) {
+            wantedShown.remove(tag);
+        } else {
+            wantedHidden--;
+        }
+    }
+    
+    /**
+     * Forgets all villagers of an unloaded world
+     * 
+     * @param world The world
+     */
+    public synchronized void clearWorld(World world) {
+        Map<Long, List<Tag>> worldChunks = chunks.remove(world.getUID());
+        if (worldChunks == null) {
+            return;
+        }
+        for (List<Tag> list : worldChunks.values()) {
+            for (Tag tag : list) {
+                tags.remove(tag.id);
+                pending.remove(tag.id);
+                if (tag.wanted) {
+                    wantedShown.remove(tag);
+                } else {
+                    wantedHidden--;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Scans every few ticks and applies this tick's share of toggles
+     */
+    void tick() {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        if (++ticks % pools.getNametagUpdateInterval() == 0) {
+            scan(pools);
+        }
+        toggle(pools.getNametagTogglesPerTick());
+    }
+    
+    /**
+     * Works out which villagers should show their nametag and queues the changes
+     */
+    synchronized void scan(NamePoolSnapshot pools) {
+        int mode = pools.getNametagMode();
+        if (mode == NamePoolSnapshot.NAMETAGS_ALWAYS) {
+            // Only after switching modes are there hidden nametags to bring back
+            if (wantedHidden > 0) {
+                for (Tag tag : tags.values()) {
+                    if (!tag.wanted) {
+                        want(tag, true);
+                    }
+                }
+            }
+            return;
+        }
+        
+        long scan = ++scans;
+        List<Tag> seen = new ArrayList<>();
+        List<Tag> moved = new ArrayList<>();
+        for (World world : plugin.getServer().getWorlds()) {
+            Map<Long, List<Tag>> worldChunks = chunks.get(world.getUID());
+            if (worldChunks == null) {
+                continue;
+            }
+            
+            for (Player player : world.getPlayers()) {
+                if (mode == NamePoolSnapshot.NAMETAGS_RADIUS) {
+                    markInRadius(worldChunks, world, player.getLocation(), pools.getNametagRadius(), scan, seen, moved);
+                } else {
+                    markLookedAt(worldChunks, world, player.getEyeLocation(), pools.getNametagLookDistance(), scan,
+                        seen, moved);
+                }
+            }
+        }
+        
+        for (Tag tag : moved) {
+            if (tag.villager.isValid()) {
+                unindex(tag);
+                index(tag);
+            } else {
+                untrack(tag.villager);
+            }
+        }
+        
+        // Hide what nobody sees any more, then show what somebody sees now
+        Iterator<Tag> iterator = wantedShown.iterator();
+        while (iterator.hasNext()) {
+            Tag tag = iterator.next();
+            if (tag.seen != scan) {
+                iterator.remove();
+                setWanted(tag, false);
+            }
+        }
+        for (Tag tag : seen) {
+            if (!tag.wanted) {
+                want(tag, true);
+            }
+        }
+    }
+    
+    /**
+     * Applies up to a number of queued toggles
+     */
+    private void toggle(int limit) {
+        List<Tag> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(Math.min(limit, pending.size()));
+            Iterator<Tag> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < limit) {
+                Tag tag = iterator.next();
+                iterator.remove();
+                tag.shown = tag.wanted;
+                batch.add(tag);
+            }
+        }
+        
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        for (Tag tag : batch) {
+            Villager villager = tag.villager;
+            boolean visible = tag.shown;
+            if (scheduler.isRegionThreaded()) {
+                scheduler.runFor(villager, () -> apply(villager, visible));
+            } else {
+                apply(villager, visible);
+            }
+        }
+        plugin.getMetrics().recordNametagToggles(batch.size());
+    }
+    
+    /**
+     * Shows or hides one nametag on the thread owning the villager
+     */
+    private static void apply(Villager villager, boolean visible) {
+        if (villager.isValid()) {
+            villager.setCustomNameVisible(visible);
+        }
+    }
+    
+    /**
+     * Marks the villagers within a radius of a player
+     */
+    private void markInRadius(Map<Long, List<Tag>> worldChunks, World world, Location center, int radius, long scan,
+            List<Tag> seen, List<Tag> moved) {
+        double radiusSquared = (double) radius * radius;
+        int reach = (radius + 15) / 16 + CHUNK_MARGIN;
+        int chunkX = center.getBlockX() >> 4;
+        int chunkZ = center.getBlockZ() >> 4;
+        
+        for (int x = chunkX - reach; x <= chunkX + reach; x++) {
+            for (int z = chunkZ - reach; z <= chunkZ + reach; z++) {
+                List<Tag> list = worldChunks.get(chunkKey(x, z));
+                if (list == null) {
+                    continue;
+                }
+                for (Tag tag : list) {
+                    Location location = locate(tag, world, moved);
+                    if (location != null && tag.seen != scan && location.distanceSquared(center) <= radiusSquared) {
+                        tag.seen = scan;
+                        seen.add(tag);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Marks the villager a player is looking at, if any
+     * 
+     * The villager whose head lies closest along the player's line of sight,
+     * within a small distance of it, wins. Blocks in between are not checked.
+     */
+    private void markLookedAt(Map<Long, List<Tag>> worldChunks, World world, Location eye, int distance, long scan,
+            List<Tag> seen, List<Tag> moved) {
+        double yaw = Math.toRadians(eye.getYaw());
+        double pitch = Math.toRadians(eye.getPitch());
+        double directionX = -Math.sin(yaw) * Math.cos(pitch);
+        double directionY = -Math.sin(pitch);
+        double directionZ = Math.cos(yaw) * Math.cos(pitch);
+        int reach = (distance + 15) / 16 + CHUNK_MARGIN;
+        int chunkX = eye.getBlockX() >> 4;
+        int chunkZ = eye.getBlockZ() >> 4;
+        
+        Tag best = null;
+        double bestDistance = distance;
+        for (int x = chunkX - reach; x <= chunkX + reach; x++) {
+            for (int z = chunkZ - reach; z <= chunkZ + reach; z++) {
+                List<Tag> list = worldChunks.get(chunkKey(x, z));
+                if (list == null) {
+                    continue;
+                }
+                for (Tag tag : list) {
+                    Location location = locate(tag, world, moved);
+                    if (location == null) {
+                        continue;
+                    }
+                    
+                    // Project the head onto the line of sight and measure how far off it is
+                    double toX = location.getX() - eye.getX();
+                    double toY = location.getY() + HEAD_HEIGHT - eye.getY();
+                    double toZ = location.getZ() - eye.getZ();
+                    double along = toX * directionX + toY * directionY + toZ * directionZ;
+                    if (along <= 0 || along > bestDistance) {
+                        continue;
+                    }
+                    double offSquared = toX * toX + toY * toY + toZ * toZ - along * along;
+                    if (offSquared <= LOOK_TOLERANCE_SQUARED) {
+                        best = tag;
+                        bestDistance = along;
+                    }
+                }
+            }
+        }
+        
+        if (best != null && best.seen != scan) {
+            best.seen = scan;
+            seen.add(best);
+        }
+    }
+    
+    /**
+     * Gets a villager's position, noting it for re-indexing if it left its chunk
+     * 
+     * Villagers removed without an event, such as by other plugins, are noted
+     * as well and dropped instead.
+     * 
+     * @return The location, or null if the villager is gone or now in another world
+     */
+    private static Location locate(Tag tag, World world, List<Tag> moved) {
+        Location location = tag.villager.getLocation();
+        if (!tag.villager.isValid() || location.getWorld() != world) {
+            moved.add(tag);
+            return null;
+        }
+        if (chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4) != tag.chunk) {
+            moved.add(tag);
+        }
+        return location;
+    }
+    
+    /**
+     * Creates and indexes a tag
+     */
+    private Tag add(Villager villager, boolean shown) {
+        Tag tag = new Tag(villager, shown);
+        tags.put(tag.id, tag);
+        index(tag);
+        if (shown) {
+            wantedShown.add(tag);
+        } else {
+            wantedHidden++;
+        }
+        return tag;
+    }
+    
+    /**
+     * Changes the wanted state of a tag and queues the toggle if needed
+     */
+    private void want(Tag tag, boolean visible) {
+        if (visible) {
+            wantedShown.add(tag);
+        } else {
+            wantedShown.remove(tag);
+        }
+        setWanted(tag, visible);
+    }
+    
+    /**
+     * Updates the wanted state and the toggle queue, leaving wantedShown to the caller
+     */
+    private void setWanted(Tag tag, boolean visible) {
+        if (tag.wanted != visible) {
+            wantedHidden += visible ? -1 : 1;
+            tag.wanted = visible;
+        }
+        if (tag.shown != visible) {
+            pending.put(tag.id, tag);
+        } else {
+            pending.remove(tag.id);
+        }
+    }
+    
+    /**
+     * Adds a tag to the chunk index at the villager's current position
+     */
+    private void index(Tag tag) {
+        Location location = tag.villager.getLocation();
+        tag.worldId = location.getWorld().getUID();
+        tag.chunk = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+        chunks.computeIfAbsent(tag.worldId, id -> new HashMap<>())
+            .computeIfAbsent(tag.chunk, key -> new ArrayList<>(4))
+            .add(tag);
+    }
+    
+    /**
+     * Removes a tag from the chunk index
+     */
+    private void unindex(Tag tag) {
+        Map<Long, List<Tag>> worldChunks = chunks.get(tag.worldId);
+        if (worldChunks == null) {
+            return;
+        }
+        List<Tag> list = worldChunks.get(tag.chunk);
+        if (list != null && list.remove(tag) && list.isEmpty()) {
+            worldChunks.remove(tag.chunk);
+        }
+    }
+    
+    /**
+     * Gets the number of named villagers being tracked
+     * 
+     * @return Tracked villager count
+     */
+    public synchronized int size() {
+        return tags.size();
+    }
+    
+    /**
+     * Gets the number of villagers whose nametag is or is about to be shown
+     * 
+     * @return Shown nametag count
+     */
+    public synchronized int getShownCount() {
+        return wantedShown.size();
+    }
+    
+    /**
+     * Gets the number of toggles waiting for a later tick
+     * 
+     * @return Queued toggle count
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+    
+    /**
+     * Packs chunk coordinates into one key
+     */
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+    
+    /**
+     * One tracked villager
+     */
+    private static final class Tag {
+        
+        private final UUID id;
+        private Villager villager;
+        private UUID worldId;
+        private long chunk;
+        private boolean wanted;
+        private boolean shown;
+        private long seen;
+        
+        private Tag(Villager villager, boolean shown) {
+            this.id = villager.getUniqueId();
+            this.villager = villager;
+            this.wanted = shown;
+            this.shown = shown;
+        }
+    }
+}
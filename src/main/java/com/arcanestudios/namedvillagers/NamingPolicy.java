@@ -0,0 +1,154 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.EntityType;
+import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Precomputed rules for which spawns receive an automatic name
+ * 
+ * The naming-policy section and settings.auto-name are compiled into one
+ * bitset with a bit per entity type and spawn reason pair, so the spawn
+ * handler can reject the thousands of non-villager spawns a mob farm produces
+ * with a single array read. World and bypass checks only run for spawns that
+ * pass the bitset.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class NamingPolicy {
+    
+    private static final EntityType[] TYPES = EntityType.values();
+    private static final SpawnReason[] REASONS = SpawnReason.values();
+    
+    // Bit (type * REASONS.length + reason) is set when that spawn may be named
+    private final long[] allowed;
+    private final Set<String> skippedWorlds;
+    private final double bypassRadiusSquared;
+    
+    private NamingPolicy(long[] allowed, Set<String> skippedWorlds, double bypassRadius) {
+        this.allowed = allowed;
+        this.skippedWorlds = skippedWorlds;
+        this.bypassRadiusSquared = bypassRadius * bypassRadius;
+    }
+    
+    /**
+     * Compiles the naming-policy section into a policy
+     * 
+     * @param policy The naming-policy section, or null for the defaults
+     * @param autoName Whether automatic naming is enabled at all
+     * @param warnings Receives problems found in the section
+     * @return The compiled policy
+     */
+    static NamingPolicy compile(ConfigurationSection policy, boolean autoName, List<String> warnings) {
+        boolean[] types = new boolean[TYPES.length];
+        List<String> typeNames = policy != null && policy.isList("entity-types")
+            ? policy.getStringList("entity-types")
+            : Collections.singletonList("villager");
+        for (String name : typeNames) {
+            EntityType type = find(TYPES, name);
+            if (type == EntityType.VILLAGER) {
+                types[type.ordinal()] = true;
+            } else if (type == null) {
+                warnings.add("naming-policy.entity-types: unknown entity type '" + name + "'");
+            } else {
+                warnings.add("naming-policy.entity-types: only villager can be named (got '" + name + "')");
+            }
+        }
+        
+        boolean[] reasons = new boolean[REASONS.length];
+        Arrays.fill(reasons, true);
+        List<String> skippedReasons = policy != null ? policy.getStringList("skip-spawn-reasons") : Collections.emptyList();
+        for (String name : skippedReasons) {
+            SpawnReason reason = find(REASONS, name);
+            if (reason == null) {
+                warnings.add("naming-policy.skip-spawn-reasons: unknown spawn reason '" + name + "'");
+                continue;
+            }
+            reasons[reason.ordinal()] = false;
+        }
+        
+        // With auto-naming off no bit is set, so the listener needs no separate check
+        long[] allowed = new long[(TYPES.length * REASONS.length + 63) >>> 6];
+        if (autoName) {
+            for (int type = 0; type < TYPES.length; type++) {
+                for (int reason = 0; reason < REASONS.length && types[type]; reason++) {
+                    if (reasons[reason]) {
+                        int bit = type * REASONS.length + reason;
+                        allowed[bit >>> 6] |= 1L << bit;
+                    }
+                }
+            }
+        }
+        
+        Set<String> worlds = policy != null
+            ? new HashSet<>(policy.getStringList("skip-worlds"))
+            : Collections.emptySet();
+        double radius = policy != null ? Math.max(0.0, policy.getDouble("bypass-radius", 16.0)) : 16.0;
+        return new NamingPolicy(allowed, worlds, radius);
+    }
+    
+    /**
+     * Checks if a spawn of this type and reason may be named
+     * 
+     * @param type The spawned entity type
+     * @param reason Why it spawned
+     * @return true if the spawn passes the type and reason rules
+     */
+    boolean allows(EntityType type, SpawnReason reason) {
+        int bit = type.ordinal() * REASONS.length + reason.ordinal();
+        return (allowed[bit >>> 6] & (1L << bit)) != 0;
+    }
+    
+    /**
+     * Checks if villagers in a world may be named automatically
+     * 
+     * @param world The world
+     * @return false if the world is listed in skip-worlds
+     */
+    boolean allowsWorld(World world) {
+        return skippedWorlds.isEmpty() || !skippedWorlds.contains(world.getName());
+    }
+    
+    /**
+     * Checks if a player with the bypass permission is near a location
+     * 
+     * @param location Where the villager spawned
+     * @param bypassers The positions of players with the bypass permission
+     * @return true if naming should be skipped for the bypassing player
+     */
+    boolean isBypassed(Location location, BypassTracker bypassers) {
+        return bypassRadiusSquared != 0.0 && bypassers.isNear(location, bypassRadiusSquared);
+    }
+    
+    /**
+     * Checks if bypassing players are honoured at all
+     * 
+     * @return false if the bypass radius is 0
+     */
+    boolean hasBypassRadius() {
+        return bypassRadiusSquared != 0.0;
+    }
+    
+    /**
+     * Finds an enum constant by case-insensitive name
+     */
+    private static <E extends Enum<E>> E find(E[] values, String name) {
+        String wanted = name.trim().toUpperCase(Locale.ROOT);
+        for (E value : values) {
+            if (value.name().equals(wanted)) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
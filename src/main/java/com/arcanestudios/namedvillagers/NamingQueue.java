@@ -0,0 +1,368 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Villager;
+import org.bukkit.event.entity.CreatureSpawnEvent.SpawnReason;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Central queue of villagers waiting for a generated name
+ * 
+ * Spawns, cures and chunk-load backfill all enqueue a small request here
+ * instead of naming inside the event or scheduling a task of their own.
+ * Villagers whose title went stale after a level-up or profession change
+ * are queued for a refresh. A single task drains the queue every tick until
+ * the configured time budget is spent, so bursts spread over as many ticks
+ * as they need.
+ * 
+ * Ordering: spawn and cure requests are served first, then title refreshes,
+ * then backfill, and each lane is first in, first out. A villager is queued
+ * at most once; a newer request replaces the older one's kind and keeps its
+ * place, a spawn or cure request moves a villager out of the other lanes,
+ * and a refresh is ignored while the villager still waits for its name.
+ * Requests are checked again when served and dropped if the villager
+ * unloaded, died or was named in the meantime, or if a reload turned
+ * naming off for them.
+ * 
+ * Requests may be queued from any thread; the lanes are guarded by the
+ * queue's lock. On region-threaded servers the drain task hands each request
+ * to the thread owning its villager instead of serving it, and the time
+ * budget limits how many are handed out per tick, going by the measured
+ * average time to serve one.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class NamingQueue {
+    
+    public static final int SPAWN = 0;
+    public static final int CURE = 1;
+    public static final int BACKFILL = 2;
+    public static final int REFRESH = 3;
+    
+    private static final long MIN_SERVE_ESTIMATE_NANOS = 20_000L;
+    
+    private final NamedVillagers plugin;
+    
+    // Insertion ordered; re-queuing a UUID keeps its place
+    private final LinkedHashMap<UUID, Request> urgent = new LinkedHashMap<>();
+    private final LinkedHashMap<UUID, Request> refresh = new LinkedHashMap<>();
+    private final LinkedHashMap<UUID, Request> backfill = new LinkedHashMap<>();
+    
+    private TaskScheduler.Task drainTask;
+    
+    // Requests may be served on several threads at once
+    private final LongAdder named = new LongAdder();
+    private final LongAdder refreshed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram serveTime = new LatencyHistogram();
+    
+    public NamingQueue(NamedVillagers plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Starts the drain task
+     */
+    public void start() {
+        drainTask = plugin.getTaskScheduler().runTimer(this::drain, 1L, 1L);
+    }
+    
+    /**
+     * Stops the drain task and forgets all queued villagers
+     */
+    public void stop() {
+        if (drainTask != null) {
+            drainTask.cancel();
+            drainTask = null;
+        }
+        synchronized (this) {
+            urgent.clear();
+            refresh.clear();
+            backfill.clear();
+        }
+    }
+    
+    /**
+     * Queues a villager for naming
+     * 
+     * @param villager The villager
+     * @param kind SPAWN, CURE, BACKFILL or REFRESH
+     */
+    public void enqueue(Villager villager, int kind) {
+        enqueue(villager, kind, kind == CURE ? SpawnReason.CURED : null);
+    }
+    
+    /**
+     * Queues a villager for naming, remembering why it spawned so the
+     * naming policy can be checked again when it is served
+     * 
+     * @param villager The villager
+     * @param kind SPAWN, CURE, BACKFILL or REFRESH
+     * @param reason The spawn reason, or null if unknown
+     */
+    public synchronized void enqueue(Villager villager, int kind, SpawnReason reason) {
+        UUID id = villager.getUniqueId();
+        Request queued = urgent.get(id);
+        
+        if (kind == REFRESH) {
+            // A villager still waiting for its name gets the current title anyway
+            if (queued == null && !backfill.containsKey(id)) {
+                queued = refresh.get(id);
+                if (queued == null) {
+                    refresh.put(id, new Request(villager, kind));
+                } else {
+                    queued.villager = villager;
+                }
+            }
+            return;
+        }
+        
+        if (kind == BACKFILL) {
+            if (queued == null) {
+                queued = backfill.get(id);
+            }
+            if (queued == null) {
+                backfill.put(id, new Request(villager, kind));
+            } else {
+                // Already waiting; the chunk reloaded, so keep the live entity
+                queued.villager = villager;
+            }
+            return;
+        }
+        
+        if (queued == null) {
+            // A spawn or cure overtakes pending work of the same villager
+            refresh.remove(id);
+            backfill.remove(id);
+            Request request = new Request(villager, kind);
+            request.reason = reason;
+            urgent.put(id, request);
+        } else {
+            queued.villager = villager;
+            queued.kind = kind;
+            queued.reason = reason;
+        }
+    }
+    
+    /**
+     * Names queued villagers until the tick budget is used up; runs every tick
+     */
+    void drain() {
+        if (size() == 0) {
+            return;
+        }
+        
+        ConfigManager config = plugin.getConfigManager();
+        long budget = config.getSnapshot().getQueueBudgetMicros() * 1000L;
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        if (scheduler.isRegionThreaded()) {
+            dispatch(scheduler, config, budget);
+            return;
+        }
+        
+        long start = System.nanoTime();
+        Request request;
+        while (System.nanoTime() - start < budget && (request = poll()) != null) {
+            serve(request, config);
+        }
+    }
+    
+    /**
+     * Hands requests to the threads owning their villagers, as many as the
+     * budget covers
+     */
+    private void dispatch(TaskScheduler scheduler, ConfigManager config, long budget) {
+        long estimate = Math.max(MIN_SERVE_ESTIMATE_NANOS, (long) serveTime.getMean());
+        long count = Math.max(1L, budget / estimate);
+        Request request;
+        while (count-- > 0 && (request = poll()) != null) {
+            Request dispatched = request;
+            if (!scheduler.runFor(request.villager, () -> serve(dispatched, config))) {
+                // The villager was removed before its region got to it
+                dropped.increment();
+            }
+        }
+    }
+    
+    /**
+     * Takes the next request, spawns and cures first
+     * 
+     * @return The request, or null if all lanes are empty
+     */
+    private synchronized Request poll() {
+        LinkedHashMap<UUID, Request> lane = !urgent.isEmpty() ? urgent : !refresh.isEmpty() ? refresh : backfill;
+        Iterator<Request> iterator = lane.values().iterator();
+        if (!iterator.hasNext()) {
+            return null;
+        }
+        Request request = iterator.next();
+        iterator.remove();
+        return request;
+    }
+    
+    /**
+     * Serves one request on the thread owning its villager
+     */
+    private void serve(Request request, ConfigManager config) {
+        long start = System.nanoTime();
+        if (request.kind == REFRESH) {
+            if (request.villager.isValid() && plugin.getNameStore().refreshTitle(request.villager)) {
+                refreshed.increment();
+            }
+        } else if (isStillNeeded(request) && isAllowed(request, config.getSnapshot())) {
+            GeneratedName name = plugin.getNameGenerator().generate(request.villager);
+            NameCause cause = request.kind == CURE ? NameCause.CURE
+                : request.kind == BACKFILL ? NameCause.BACKFILL : NameCause.SPAWN;
+            if (plugin.getNameStore().applyGenerated(request.villager, name, cause)) {
+                named.increment();
+                if (config.isDebugEnabled()) {
+                    plugin.getLogger().info("Generated name for villager: " + name.getName());
+                }
+            } else {
+                dropped.increment();
+            }
+        } else {
+            dropped.increment();
+        }
+        
+        long now = System.nanoTime();
+        serveTime.record(now - start);
+        latency.record(now - request.queuedAt);
+    }
+    
+    /**
+     * Checks if a request should still be served
+     */
+    private boolean isStillNeeded(Request request) {
+        Villager villager = request.villager;
+        if (!villager.isValid() || villager.isDead()) {
+            return false;
+        }
+        
+        // Cured villagers are renamed on purpose; the rest only get a name if they have none
+        if (request.kind == CURE) {
+            return true;
+        }
+        return !plugin.getNameStore().hasStoredName(villager) && villager.customName() == null;
+    }
+    
+    /**
+     * Checks the request against the naming policy of the configuration
+     * being served with, which a reload may have changed since it was queued
+     */
+    private boolean isAllowed(Request request, NamePoolSnapshot pools) {
+        NamingPolicy policy = pools.getNamingPolicy();
+        if (!policy.allowsWorld(request.villager.getWorld())) {
+            return false;
+        }
+        if (request.kind == BACKFILL) {
+            return pools.isBackfillEnabled() && pools.isAutoNamingEnabled();
+        }
+        return request.reason != null
+            ? policy.allows(EntityType.VILLAGER, request.reason)
+            : pools.isAutoNamingEnabled();
+    }
+    
+    /**
+     * Gets the number of villagers waiting for a name
+     * 
+     * @return Queue depth across all lanes
+     */
+    public synchronized int size() {
+        return urgent.size() + refresh.size() + backfill.size();
+    }
+    
+    /**
+     * Gets the number of spawn and cure requests waiting
+     * 
+     * @return Urgent lane depth
+     */
+    public synchronized int getUrgentSize() {
+        return urgent.size();
+    }
+    
+    /**
+     * Gets the number of title refreshes waiting
+     * 
+     * @return Refresh lane depth
+     */
+    public synchronized int getRefreshSize() {
+        return refresh.size();
+    }
+    
+    /**
+     * Gets the number of backfill requests waiting
+     * 
+     * @return Backfill lane depth
+     */
+    public synchronized int getBackfillSize() {
+        return backfill.size();
+    }
+    
+    /**
+     * Gets the number of villagers named from the queue
+     * 
+     * @return Named count since startup
+     */
+    public long getNamed() {
+        return named.sum();
+    }
+    
+    /**
+     * Gets the number of names whose title was refreshed
+     * 
+     * @return Refreshed count since startup
+     */
+    public long getRefreshed() {
+        return refreshed.sum();
+    }
+    
+    /**
+     * Gets the number of requests skipped because the villager was gone or already named
+     * 
+     * @return Dropped count since startup
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+    
+    /**
+     * Gets the average time from enqueue to being served
+     * 
+     * @return Average drain latency in milliseconds
+     */
+    public double getAverageLatencyMillis() {
+        return latency.getMean() / 1_000_000.0;
+    }
+    
+    /**
+     * Gets the longest time a request waited before being served
+     * 
+     * @return Maximum drain latency in milliseconds
+     */
+    public double getMaxLatencyMillis() {
+        return latency.getMax() / 1_000_000.0;
+    }
+    
+    /**
+     * One queued naming request
+     */
+    private static final class Request {
+        
+        private final long queuedAt = System.nanoTime();
+        private Villager villager;
+        private int kind;
+        private SpawnReason reason;
+        
+        private Request(Villager villager, int kind) {
+            this.villager = villager;
+            this.kind = kind;
+        }
+    }
+}
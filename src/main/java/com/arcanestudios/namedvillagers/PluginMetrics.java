@@ -0,0 +1,380 @@
+package com.arcanestudios.namedvillagers;
+
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runtime counters and latency histograms for the naming path
+ * 
+ * Recording is lock-free and allocation-free so it can stay on in production:
+ * counters are LongAdders and latencies go into LatencyHistograms. Values are
+ * cumulative since startup. They are shown by /nv stats and can be written to
+ * metrics.csv or metrics.json in the data folder at a fixed interval.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class PluginMetrics {
+    
+    private static final String[] HISTOGRAM_NAMES = {"spawn_handler", "generate", "apply"};
+    
+    private final NamedVillagers plugin;
+    
+    private final LongAdder spawns = new LongAdder();
+    private final LongAdder named = new LongAdder();
+    private final LongAdder skippedStored = new LongAdder();
+    private final LongAdder skippedDisplayName = new LongAdder();
+    private final LongAdder skippedPolicy = new LongAdder();
+    private final LongAdder cured = new LongAdder();
+    private final LongAdder pdcWrites = new LongAdder();
+    private final LongAdder nametagToggles = new LongAdder();
+    private final AtomicLong nametagTogglesPeak = new AtomicLong();
+    
+    private final LatencyHistogram spawnHandler = new LatencyHistogram();
+    private final LatencyHistogram generate = new LatencyHistogram();
+    private final LatencyHistogram apply = new LatencyHistogram();
+    
+    private TaskScheduler.Task exportTask;
+    private long exportInterval;
+    
+    public PluginMetrics(NamedVillagers plugin) {
+        this.plugin = plugin;
+    }
+    
+    /**
+     * Starts the periodic export, if an interval is configured
+     */
+    public void start() {
+        exportInterval = plugin.getConfigManager().getSnapshot().getMetricsExportInterval();
+        if (exportInterval > 0) {
+            exportTask = plugin.getTaskScheduler().runTimerAsync(this::export, exportInterval, exportInterval);
+        }
+    }
+    
+    /**
+     * Restarts the periodic export if a reload changed its interval, turning it on or off as needed
+     */
+    public void reschedule() {
+        if (plugin.getConfigManager().getSnapshot().getMetricsExportInterval() != exportInterval) {
+            stop();
+            start();
+        }
+    }
+    
+    /**
+     * Stops the periodic export
+     */
+    public void stop() {
+        if (exportTask != null) {
+            exportTask.cancel();
+            exportTask = null;
+        }
+    }
+    
+    /**
+     * Counts a villager spawn event
+     */
+    public void countSpawn() {
+        spawns.increment();
+    }
+    
+    /**
+     * Counts a generated name applied to a villager
+     */
+    public void countNamed() {
+        named.increment();
+    }
+    
+    /**
+     * Counts a spawn skipped because the villager already had a stored name
+     */
+    public void countSkippedStored() {
+        skippedStored.increment();
+    }
+    
+    /**
+     * Counts a spawn skipped because the villager already had a display name
+     */
+    public void countSkippedDisplayName() {
+        skippedDisplayName.increment();
+    }
+    
+    /**
+     * Counts a villager spawn skipped by the naming policy
+     */
+    public void countSkippedPolicy() {
+        skippedPolicy.increment();
+    }
+    
+    /**
+     * Counts a zombie villager cured into a villager
+     */
+    public void countCure() {
+        cured.increment();
+    }
+    
+    /**
+     * Counts writes to villager PersistentDataContainers
+     * 
+     * @param writes Number of values set or removed
+     */
+    public void countPdcWrites(int writes) {
+        pdcWrites.add(writes);
+    }
+    
+    /**
+     * Records the nametags shown or hidden in one tick
+     * 
+     * @param toggles Number of nametags toggled
+     */
+    public void recordNametagToggles(int toggles) {
+        nametagToggles.add(toggles);
+        nametagTogglesPeak.accumulateAndGet(toggles, Math::max);
+    }
+    
+    /**
+     * Records the time spent in the spawn event handler
+     * 
+     * @param nanos Elapsed nanoseconds
+     */
+    public void recordSpawnHandler(long nanos) {
+        spawnHandler.record(nanos);
+    }
+    
+    /**
+     * Records the time spent generating one name
+     * 
+     * @param nanos Elapsed nanoseconds
+     */
+    public void recordGenerate(long nanos) {
+        generate.record(nanos);
+    }
+    
+    /**
+     * Records the time spent storing and displaying one name
+     * 
+     * @param nanos Elapsed nanoseconds
+     */
+    public void recordApply(long nanos) {
+        apply.record(nanos);
+    }
+    
+    /**
+     * Gets the number of villager spawn events seen
+     * 
+     * @return Count since startup
+     */
+    public long getSpawns() {
+        return spawns.sum();
+    }
+    
+    /**
+     * Gets the number of generated names applied
+     * 
+     * @return Count since startup
+     */
+    public long getNamed() {
+        return named.sum();
+    }
+    
+    /**
+     * Gets the number of spawns skipped because a name was already stored
+     * 
+     * @return Count since startup
+     */
+    public long getSkippedStored() {
+        return skippedStored.sum();
+    }
+    
+    /**
+     * Gets the number of spawns skipped because of an existing display name
+     * 
+     * @return Count since startup
+     */
+    public long getSkippedDisplayName() {
+        return skippedDisplayName.sum();
+    }
+    
+    /**
+     * Gets the number of villager spawns skipped by the naming policy
+     * 
+     * @return Count since startup
+     */
+    public long getSkippedPolicy() {
+        return skippedPolicy.sum();
+    }
+    
+    /**
+     * Gets the number of zombie villagers cured
+     * 
+     * @return Count since startup
+     */
+    public long getCured() {
+        return cured.sum();
+    }
+    
+    /**
+     * Gets the number of PersistentDataContainer values set or removed
+     * 
+     * @return Count since startup
+     */
+    public long getPdcWrites() {
+        return pdcWrites.sum();
+    }
+    
+    /**
+     * Gets the number of nametags shown or hidden
+     * 
+     * @return Count since startup
+     */
+    public long getNametagToggles() {
+        return nametagToggles.sum();
+    }
+    
+    /**
+     * Gets the most nametags shown or hidden in a single tick
+     * 
+     * @return Peak since startup
+     */
+    public long getNametagTogglesPeak() {
+        return nametagTogglesPeak.get();
+    }
+    
+    /**
+     * Gets the spawn handler latency histogram
+     */
+    LatencyHistogram getSpawnHandler() {
+        return spawnHandler;
+    }
+    
+    /**
+     * Gets the name generation latency histogram
+     */
+    LatencyHistogram getGenerate() {
+        return generate;
+    }
+    
+    /**
+     * Gets the name application latency histogram
+     */
+    LatencyHistogram getApply() {
+        return apply;
+    }
+    
+    /**
+     * Writes the current values to the data folder in the configured format
+     * 
+     * CSV appends one row per export; JSON overwrites the file with the latest values.
+     */
+    void export() {
+        boolean json = plugin.getConfigManager().getSnapshot().isMetricsExportJson();
+        File file = new File(plugin.getDataFolder(), json ? "metrics.json" : "metrics.csv");
+        
+        try {
+            if (json) {
+                Files.write(file.toPath(), toJson().getBytes(StandardCharsets.UTF_8));
+            } else {
+                String row = toCsvRow() + "\n";
+                if (!file.exists()) {
+                    row = csvHeader() + "\n" + row;
+                }
+                Files.write(file.toPath(), row.getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Could not write metrics: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Builds the CSV column names
+     */
+    private String csvHeader() {
+        StringBuilder header = new StringBuilder("time,spawns,named,skipped_stored,skipped_display_name,skipped_policy,cured,pdc_writes,"
+            + "nametag_toggles,nametag_toggles_peak");
+        for (String name : HISTOGRAM_NAMES) {
+            for (String column : new String[] {"count", "mean_us", "p50_us", "p90_us", "p99_us", "max_us"}) {
+                header.append(',').append(name).append('_').append(column);
+            }
+        }
+        return header.toString();
+    }
+    
+    /**
+     * Builds one CSV row of current values
+     */
+    private String toCsvRow() {
+        StringBuilder row = new StringBuilder(Instant.now().toString());
+        for (long counter : counters()) {
+            row.append(',').append(counter);
+        }
+        for (LatencyHistogram histogram : histograms()) {
+            row.append(',').append(histogram.getCount())
+                .append(',').append(micros(histogram.getMean()))
+                .append(',').append(micros(histogram.getPercentile(50)))
+                .append(',').append(micros(histogram.getPercentile(90)))
+                .append(',').append(micros(histogram.getPercentile(99)))
+                .append(',').append(micros(histogram.getMax()));
+        }
+        return row.toString();
+    }
+    
+    /**
+     * Builds a JSON object of current values
+     */
+    private String toJson() {
+        String[] names = {"spawns", "named", "skipped_stored", "skipped_display_name", "skipped_policy", "cured", "pdc_writes",
+            "nametag_toggles", "nametag_toggles_peak"};
+        long[] values = counters();
+        
+        StringBuilder json = new StringBuilder("{\n  \"time\": \"").append(Instant.now()).append("\",\n  \"counters\": {");
+        for (int i = 0; i < names.length; i++) {
+            json.append(i == 0 ? "\n" : ",\n").append("    \"").append(names[i]).append("\": ").append(values[i]);
+        }
+        json.append("\n  },\n  \"latency_us\": {");
+        
+        LatencyHistogram[] histograms = histograms();
+        for (int i = 0; i < histograms.length; i++) {
+            LatencyHistogram histogram = histograms[i];
+            json.append(i == 0 ? "\n" : ",\n").append("    \"").append(HISTOGRAM_NAMES[i]).append("\": {")
+                .append("\"count\": ").append(histogram.getCount())
+                .append(", \"mean\": ").append(micros(histogram.getMean()))
+                .append(", \"p50\": ").append(micros(histogram.getPercentile(50)))
+                .append(", \"p90\": ").append(micros(histogram.getPercentile(90)))
+                .append(", \"p99\": ").append(micros(histogram.getPercentile(99)))
+                .append(", \"max\": ").append(micros(histogram.getMax()))
+                .append('}');
+        }
+        return json.append("\n  }\n}\n").toString();
+    }
+    
+    /**
+     * Gets all counters in export column order
+     */
+    private long[] counters() {
+        return new long[] {getSpawns(), getNamed(), getSkippedStored(), getSkippedDisplayName(), getSkippedPolicy(), getCured(),
+            getPdcWrites(), getNametagToggles(), getNametagTogglesPeak()};
+    }
+    
+    /**
+     * Gets all histograms in the order of HISTOGRAM_NAMES
+     */
+    private LatencyHistogram[] histograms() {
+        return new LatencyHistogram[] {spawnHandler, generate, apply};
+    }
+    
+    /**
+     * Formats nanoseconds as microseconds with one decimal
+     */
+    private static String micros(double nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1000.0);
+    }
+}
@@ -0,0 +1,36 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.entity.Entity;
+
+import java.util.List;
+
+/**
+ * The NameService registered by the plugin
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class PluginNameService implements NameService {
+    
+    private final NamedVillagers plugin;
+    
+    PluginNameService(NamedVillagers plugin) {
+        this.plugin = plugin;
+    }
+    
+    @Override
+    public String generateName(NameContext context) {
+        return plugin.getNameGenerator().generateName(context.getProfession(), context.getLevel(), context.getBiome(),
+            context.getSeed());
+    }
+    
+    @Override
+    public List<String> generateNames(List<NameContext> contexts) {
+        return plugin.getNameGenerator().generateNames(contexts);
+    }
+    
+    @Override
+    public String getStoredName(Entity entity) {
+        return plugin.getNameStore().getStoredName(entity);
+    }
+}
@@ -0,0 +1,227 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Chunk;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Villager;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Regenerates the names of villagers in a set of chunks over several ticks
+ * 
+ * The chunk list is fixed when the job starts. Each tick the job walks on
+ * from where it stopped, one villager at a time, until the time budget is
+ * spent. Chunks that unloaded in the meantime are skipped. Only names the
+ * plugin generated are replaced: names set with /nv <name>, with a name tag
+ * or by other plugins are always kept, and unnamed villagers are named
+ * unless the job is limited to generated names.
+ * 
+ * On region-threaded servers each chunk is handed to the region that owns
+ * it instead, and the time budget limits how many chunks are handed out per
+ * tick, going by the measured average time per chunk.
+ * 
+ * The job's own position is kept on the main thread or global region.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class RegenerateJob {
+    
+    private static final long REPORT_INTERVAL_TICKS = 100L;
+    private static final long MIN_CHUNK_ESTIMATE_NANOS = 50_000L;
+    
+    private final NamedVillagers plugin;
+    private final CommandSender sender;
+    private final List<Chunk> chunks;
+    private final boolean onlyGenerated;
+    
+    private int chunkIndex;
+    private Entity[] entities;
+    private int entityIndex;
+    private long ticks;
+    private long startedAt;
+    private volatile TaskScheduler.Task task;
+    
+    // Updated from region threads while chunks are processed in parallel
+    private final AtomicInteger renamed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final LatencyHistogram chunkTime = new LatencyHistogram();
+    
+    public RegenerateJob(NamedVillagers plugin, CommandSender sender, List<Chunk> chunks, boolean onlyGenerated) {
+        this.plugin = plugin;
+        this.sender = sender;
+        this.chunks = chunks;
+        this.onlyGenerated = onlyGenerated;
+    }
+    
+    /**
+     * Starts working through the chunks
+     */
+    public void start() {
+        startedAt = System.nanoTime();
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        task = scheduler.runTimer(scheduler.isRegionThreaded() ? this::dispatch : this::tick, 1L, 1L);
+    }
+    
+    /**
+     * Stops the job, keeping the names regenerated so far
+     */
+    public void cancel() {
+        TaskScheduler.Task task = this.task;
+        if (task != null) {
+            task.cancel();
+            this.task = null;
+        }
+    }
+    
+    /**
+     * Checks if the job is still running
+     * 
+     * @return true until the job finished or was cancelled
+     */
+    public boolean isRunning() {
+        return task != null;
+    }
+    
+    /**
+     * Processes villagers until the tick budget is used up
+     */
+    private void tick() {
+        long budget = plugin.getConfigManager().getSnapshot().getRegenerateBudgetMicros() * 1000L;
+        long start = System.nanoTime();
+        
+        while (System.nanoTime() - start < budget) {
+            if (entities == null || entityIndex >= entities.length) {
+                if (!nextChunk()) {
+                    finish();
+                    return;
+                }
+                continue;
+            }
+            
+            Entity entity = entities[entityIndex++];
+            if (entity.getType() == EntityType.VILLAGER && entity.isValid()) {
+                regenerate((Villager) entity);
+            }
+        }
+        
+        report();
+    }
+    
+    /**
+     * Hands chunks to their regions, as many per tick as the budget covers
+     */
+    private void dispatch() {
+        if (chunkIndex >= chunks.size()) {
+            // Everything is handed out; wait for the regions still working
+            if (outstanding.get() == 0) {
+                finish();
+            }
+            return;
+        }
+        
+        long budget = plugin.getConfigManager().getSnapshot().getRegenerateBudgetMicros() * 1000L;
+        long estimate = Math.max(MIN_CHUNK_ESTIMATE_NANOS, (long) chunkTime.getMean());
+        long count = Math.max(1L, budget / estimate);
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        while (count-- > 0 && chunkIndex < chunks.size()) {
+            Chunk chunk = chunks.get(chunkIndex++);
+            outstanding.incrementAndGet();
+            scheduler.runAt(chunk.getWorld(), chunk.getX(), chunk.getZ(), () -> regenerateChunk(chunk));
+        }
+        report();
+    }
+    
+    /**
+     * Regenerates the villagers of one chunk; runs on the region owning it
+     */
+    private void regenerateChunk(Chunk chunk) {
+        long start = System.nanoTime();
+        try {
+            if (!isRunning() || !chunk.isLoaded()) {
+                return;
+            }
+            for (Entity entity : chunk.getEntities()) {
+                if (entity.getType() == EntityType.VILLAGER && entity.isValid()) {
+                    regenerate((Villager) entity);
+                }
+            }
+        } finally {
+            chunkTime.record(System.nanoTime() - start);
+            outstanding.decrementAndGet();
+        }
+    }
+    
+    /**
+     * Reports progress now and then
+     */
+    private void report() {
+        if (++ticks % REPORT_INTERVAL_TICKS == 0) {
+            sender.sendMessage(plugin.getConfigManager().getMessage("regenerate-progress")
+                .replace("{done}", String.valueOf(chunkIndex))
+                .replace("{total}", String.valueOf(chunks.size()))
+                .replace("{renamed}", String.valueOf(renamed.get())));
+        }
+    }
+    
+    /**
+     * Moves on to the next chunk that is still loaded
+     * 
+     * @return false once all chunks are done
+     */
+    private boolean nextChunk() {
+        while (chunkIndex < chunks.size()) {
+            Chunk chunk = chunks.get(chunkIndex++);
+            if (chunk.isLoaded()) {
+                entities = chunk.getEntities();
+                entityIndex = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Regenerates one villager's name if the job may touch it
+     */
+    private void regenerate(Villager villager) {
+        NameStore store = plugin.getNameStore();
+        
+        // Names without components were set by a player or come from another plugin
+        if (store.getComponents(villager) == NameComponents.NONE) {
+            if (onlyGenerated || store.hasStoredName(villager) || villager.customName() != null) {
+                skipped.incrementAndGet();
+                return;
+            }
+        } else if (store.isRenamed(villager)) {
+            // Generated once, then renamed with a name tag
+            skipped.incrementAndGet();
+            return;
+        }
+        
+        // Release the old name first so it does not count against the new one
+        plugin.getUniquenessIndex().untrack(villager);
+        GeneratedName name = plugin.getNameGenerator().generate(villager);
+        if (store.applyGenerated(villager, name, NameCause.REGENERATE, sender.getName())) {
+            renamed.incrementAndGet();
+        } else {
+            skipped.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Stops the task and reports the result
+     */
+    private void finish() {
+        cancel();
+        double seconds = (System.nanoTime() - startedAt) / 1_000_000_000.0;
+        sender.sendMessage(plugin.getConfigManager().getMessage("regenerate-done")
+            .replace("{renamed}", String.valueOf(renamed.get()))
+            .replace("{skipped}", String.valueOf(skipped.get()))
+            .replace("{time}", String.format("%.1f", seconds)));
+    }
+}
@@ -0,0 +1,187 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Runs tasks through the schedulers of region-threaded servers
+ * 
+ * The scheduler API of those servers is not part of the Bukkit API the
+ * plugin compiles against, so its methods are looked up once by name when
+ * the scheduler is created and called through method handles afterwards.
+ * Entity work goes to the entity's own scheduler, which follows the entity
+ * across regions, and plugin-wide timers run on the global region.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+final class RegionTaskScheduler implements TaskScheduler {
+    
+    private static final String MARKER_CLASS = "io.papermc.paper.threadedregions.RegionizedServer";
+    private static final String SCHEDULER_PACKAGE = "io.papermc.paper.threadedregions.scheduler.";
+    private static final long MILLIS_PER_TICK = 50L;
+    
+    private final Plugin plugin;
+    private final MethodHandle globalExecute;
+    private final MethodHandle globalTimer;
+    private final MethodHandle regionExecute;
+    private final MethodHandle asyncRun;
+    private final MethodHandle asyncTimer;
+    private final MethodHandle entityScheduler;
+    private final MethodHandle entityExecute;
+    private final MethodHandle cancel;
+    
+    RegionTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> global = Class.forName(SCHEDULER_PACKAGE + "GlobalRegionScheduler");
+            Class<?> region = Class.forName(SCHEDULER_PACKAGE + "RegionScheduler");
+            Class<?> async = Class.forName(SCHEDULER_PACKAGE + "AsyncScheduler");
+            Class<?> entity = Class.forName(SCHEDULER_PACKAGE + "EntityScheduler");
+            Class<?> scheduled = Class.forName(SCHEDULER_PACKAGE + "ScheduledTask");
+            Server server = plugin.getServer();
+            
+            // The plugin-wide schedulers never change, so their handles are bound once
+            Object globalScheduler = lookup.findVirtual(Server.class, "getGlobalRegionScheduler",
+                MethodType.methodType(global)).invoke(server);
+            Object regionScheduler = lookup.findVirtual(Server.class, "getRegionScheduler",
+                MethodType.methodType(region)).invoke(server);
+            Object asyncScheduler = lookup.findVirtual(Server.class, "getAsyncScheduler",
+                MethodType.methodType(async)).invoke(server);
+                
+            globalExecute = lookup.findVirtual(global, "execute",
+                MethodType.methodType(void.class, Plugin.class, Runnable.class)).bindTo(globalScheduler);
+            globalTimer = lookup.findVirtual(global, "runAtFixedRate",
+                MethodType.methodType(scheduled, Plugin.class, Consumer.class, long.class, long.class))
+                .bindTo(globalScheduler);
+            regionExecute = lookup.findVirtual(region, "execute",
+                MethodType.methodType(void.class, Plugin.class, World.class, int.class, int.class, Runnable.class))
+                .bindTo(regionScheduler);
+            asyncRun = lookup.findVirtual(async, "runNow",
+                MethodType.methodType(scheduled, Plugin.class, Consumer.class)).bindTo(asyncScheduler);
+            asyncTimer = lookup.findVirtual(async, "runAtFixedRate",
+                MethodType.methodType(scheduled, Plugin.class, Consumer.class, long.class, long.class, TimeUnit.class))
+                .bindTo(asyncScheduler);
+            entityScheduler = lookup.findVirtual(Entity.class, "getScheduler", MethodType.methodType(entity));
+            entityExecute = lookup.findVirtual(entity, "execute",
+                MethodType.methodType(boolean.class, Plugin.class, Runnable.class, Runnable.class, long.class));
+            cancel = lookup.findVirtual(scheduled, "cancel", MethodType.methodType(Class.forName(
+                SCHEDULER_PACKAGE + "ScheduledTask$CancelledState")));
+        } catch (Throwable e) {
+            throw new IllegalStateException("Region scheduler API is incomplete", e);
+        }
+    }
+    
+    /**
+     * Checks if the server ticks its regions on separate threads
+     * 
+     * @return true on a region-threaded server
+     */
+    static boolean isSupported() {
+        try {
+            Class.forName(MARKER_CLASS);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+    
+    @Override
+    public void run(Runnable task) {
+        try {
+            globalExecute.invoke(plugin, task);
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+    
+    @Override
+    public Task runTimer(Runnable task, long delay, long period) {
+        Consumer<Object> consumer = scheduled -> task.run();
+        try {
+            return handle(globalTimer.invoke(plugin, consumer, Math.max(1L, delay), period));
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+    
+    @Override
+    public void runAsync(Runnable task) {
+        Consumer<Object> consumer = scheduled -> task.run();
+        try {
+            asyncRun.invoke(plugin, consumer);
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+    
+    @Override
+    public Task runTimerAsync(Runnable task, long delay, long period) {
+        Consumer<Object> consumer = scheduled -> task.run();
+        try {
+            return handle(asyncTimer.invoke(plugin, consumer, delay * MILLIS_PER_TICK, period * MILLIS_PER_TICK,
+                TimeUnit.MILLISECONDS));
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+    
+    @Override
+    public boolean runFor(Entity entity, Runnable task) {
+        try {
+            Object scheduler = entityScheduler.invoke(entity);
+            return (boolean) entityExecute.invoke(scheduler, plugin, task, (Runnable) null, 1L);
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+    
+    @Override
+    public void runAt(World world, int chunkX, int chunkZ, Runnable task) {
+        try {
+            regionExecute.invoke(plugin, world, chunkX, chunkZ, task);
+        } catch (Throwable e) {
+            throw failure(e);
+        }
+    }
+    
+    @Override
+    public boolean isRegionThreaded() {
+        return true;
+    }
+    
+    /**
+     * Wraps a scheduled task of the server in a handle
+     */
+    private Task handle(Object scheduled) {
+        return () -> {
+            try {
+                cancel.invoke(scheduled);
+            } catch (Throwable e) {
+                throw failure(e);
+            }
+        };
+    }
+    
+    /**
+     * Passes unchecked exceptions on and wraps anything else
+     */
+    private static RuntimeException failure(Throwable e) {
+        if (e instanceof RuntimeException) {
+            return (RuntimeException) e;
+        }
+        if (e instanceof Error) {
+            throw (Error) e;
+        }
+        return new IllegalStateException("Region scheduler call failed", e);
+    }
+}
@@ -0,0 +1,95 @@
+package com.arcanestudios.namedvillagers;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of an asynchronous configuration reload
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public final class ReloadResult {
+    
+    private final boolean success;
+    private final String error;
+    private final List<String> warnings;
+    private final long loadNanos;
+    private final long swapNanos;
+    
+    private ReloadResult(boolean success, String error, List<String> warnings, long loadNanos, long swapNanos) {
+        this.success = success;
+        this.error = error;
+        this.warnings = warnings;
+        this.loadNanos = loadNanos;
+        this.swapNanos = swapNanos;
+    }
+    
+    /**
+     * Creates a result for a reload that was applied
+     * 
+     * @param warnings Validation warnings of the new configuration
+     * @param loadNanos Time spent parsing and compiling off the main thread
+     * @param swapNanos Time spent on the main thread publishing the result
+     * @return The result
+     */
+    static ReloadResult success(List<String> warnings, long loadNanos, long swapNanos) {
+        return new ReloadResult(true, null, warnings, loadNanos, swapNanos);
+    }
+    
+    /**
+     * Creates a result for a reload that was rejected
+     * 
+     * @param error Description of what went wrong
+     * @param loadNanos Time spent before the failure
+     * @return The result
+     */
+    static ReloadResult failure(String error, long loadNanos) {
+        return new ReloadResult(false, error, Collections.emptyList(), loadNanos, 0L);
+    }
+    
+    /**
+     * Checks if the new configuration is now live
+     * 
+     * @return true if the reload was applied
+     */
+    public boolean isSuccess() {
+        return success;
+    }
+    
+    /**
+     * Gets the reason the reload was rejected
+     * 
+     * @return The error message, or null on success
+     */
+    public String getError() {
+        return error;
+    }
+    
+    /**
+     * Gets the validation warnings of the new configuration
+     * 
+     * @return Unmodifiable list of warnings
+     */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+    
+    /**
+     * Gets the total reload time in milliseconds
+     * 
+     * @return Load time plus main thread time
+     */
+    public double getTotalMillis() {
+        return (loadNanos + swapNanos) / 1_000_000.0;
+    }
+    
+    /**
+     * Gets the time the reload held the main thread in milliseconds
+     * 
+     * @return Main thread time
+     */
+    public double getTickMillis() {
+        return swapNanos / 1_000_000.0;
+    }
+}
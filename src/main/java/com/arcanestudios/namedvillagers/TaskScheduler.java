@@ -0,0 +1,103 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * Runs the plugin's tasks on whichever threads the server expects them on
+ * 
+ * On a regular server everything that touches the world runs on the main
+ * thread. Region-threaded servers tick each region of the world on a thread
+ * of its own, so work on an entity has to run on the thread that owns it and
+ * repeating plugin-wide tasks run on the global region instead. Callers say
+ * what a task needs and the implementation picks the thread.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+interface TaskScheduler {
+    
+    /**
+     * Picks the scheduler for the running server
+     * 
+     * @param plugin The plugin that owns the tasks
+     * @return The region scheduler if the server has one, otherwise the Bukkit scheduler
+     */
+    static TaskScheduler create(Plugin plugin) {
+        return RegionTaskScheduler.isSupported()
+            ? new RegionTaskScheduler(plugin)
+            : new BukkitTaskScheduler(plugin);
+    }
+    
+    /**
+     * Runs a task on the next tick, on the main thread or the global region
+     * 
+     * @param task The task
+     */
+    void run(Runnable task);
+    
+    /**
+     * Repeats a task on the main thread or the global region
+     * 
+     * @param task The task
+     * @param delay Ticks before the first run, at least 1
+     * @param period Ticks between runs
+     * @return A handle to cancel the task
+     */
+    Task runTimer(Runnable task, long delay, long period);
+    
+    /**
+     * Runs a task off the server threads
+     * 
+     * @param task The task
+     */
+    void runAsync(Runnable task);
+    
+    /**
+     * Repeats a task off the server threads
+     * 
+     * @param task The task
+     * @param delay Ticks before the first run
+     * @param period Ticks between runs
+     * @return A handle to cancel the task
+     */
+    Task runTimerAsync(Runnable task, long delay, long period);
+    
+    /**
+     * Runs a task on the next tick, on the thread that owns an entity
+     * 
+     * @param entity The entity the task works on
+     * @param task The task
+     * @return false if the entity was removed and the task will never run
+     */
+    boolean runFor(Entity entity, Runnable task);
+    
+    /**
+     * Runs a task on the next tick, on the thread that owns a chunk
+     * 
+     * @param world The world
+     * @param chunkX Chunk X coordinate
+     * @param chunkZ Chunk Z coordinate
+     * @param task The task
+     */
+    void runAt(World world, int chunkX, int chunkZ, Runnable task);
+    
+    /**
+     * Checks if the server ticks regions in parallel
+     * 
+     * @return true if entity work must go through runFor
+     */
+    boolean isRegionThreaded();
+    
+    /**
+     * A scheduled repeating task
+     */
+    interface Task {
+        
+        /**
+         * Stops the task; a run already in progress finishes
+         */
+        void cancel();
+    }
+}
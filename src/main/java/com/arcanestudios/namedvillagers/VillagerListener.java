@@ -1,5 +1,6 @@
 package com.arcanestudios.namedvillagers;
 
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Villager;
 import org.bukkit.entity.ZombieVillager;
@@ -7,9 +8,16 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.CreatureSpawnEvent;
+import org.bukkit.event.entity.EntityBreedEvent;
+import org.bukkit.event.entity.EntityDeathEvent;
 import org.bukkit.event.entity.EntityTransformEvent;
-import org.bukkit.persistence.PersistentDataContainer;
-import org.bukkit.persistence.PersistentDataType;
+import org.bukkit.event.entity.VillagerAcquireTradeEvent;
+import org.bukkit.event.entity.VillagerCareerChangeEvent;
+import org.bukkit.event.world.EntitiesLoadEvent;
+import org.bukkit.event.world.EntitiesUnloadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Listens for villager spawn events and applies custom names
@@ -32,36 +40,58 @@ public class VillagerListener implements Listener {
      */
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = true)
     public void onVillagerSpawn(CreatureSpawnEvent event) {
-        // Only process villagers
-        if (event.getEntityType() != EntityType.VILLAGER) {
-            return;
-        }
-        
-        // Check if auto-naming is enabled
-        if (!plugin.getConfigManager().isAutoNamingEnabled()) {
+        // Every mob spawn lands here; the type, reason and auto-name rules are one bitset read
+        ConfigManager config = plugin.getConfigManager();
+        NamingPolicy policy = config.getSnapshot().getNamingPolicy();
+        EntityType type = event.getEntityType();
+        if (!policy.allows(type, event.getSpawnReason())) {
+            if (type == EntityType.VILLAGER) {
+                plugin.getMetrics().countSpawn();
+                plugin.getMetrics().countSkippedPolicy();
+            }
             return;
         }
         
-        Villager villager = (Villager) event.getEntity();
+        PluginMetrics metrics = plugin.getMetrics();
+        long start = System.nanoTime();
+        metrics.countSpawn();
         
-        // Check if villager already has a custom name in PDC
-        if (hasCustomName(villager)) {
-            if (plugin.getConfigManager().isDebugEnabled()) {
-                plugin.getLogger().info("Villager already has custom name, skipping generation");
+        try {
+            Villager villager = (Villager) event.getEntity();
+            if (!policy.allowsWorld(villager.getWorld())) {
+                metrics.countSkippedPolicy();
+                return;
             }
-            return;
-        }
-        
-        // Check if villager already has a display name (from another plugin or manual naming)
-        if (villager.customName() != null) {
-            if (plugin.getConfigManager().isDebugEnabled()) {
-                plugin.getLogger().info("Villager has display name, skipping auto-generation");
+            
+            // Check if villager already has a custom name in PDC
+            if (plugin.getNameStore().hasStoredName(villager)) {
+                metrics.countSkippedStored();
+                if (config.isDebugEnabled()) {
+                    plugin.getLogger().info("Villager already has custom name, skipping generation");
+                }
+                return;
             }
-            return;
+            
+            // Check if villager already has a display name (from another plugin or manual naming)
+            if (villager.customName() != null) {
+                metrics.countSkippedDisplayName();
+                if (config.isDebugEnabled()) {
+                    plugin.getLogger().info("Villager has display name, skipping auto-generation");
+                }
+                return;
+            }
+            
+            // Players with namedvillagers.bypass keep villagers spawned near them unnamed
+            if (policy.isBypassed(event.getLocation(), plugin.getBypassTracker())) {
+                metrics.countSkippedPolicy();
+                return;
+            }
+            
+            // Name it on the next queue drain
+            plugin.getNamingQueue().enqueue(villager, NamingQueue.SPAWN, event.getSpawnReason());
+        } finally {
+            metrics.recordSpawnHandler(System.nanoTime() - start);
         }
-        
-        // Generate and apply a new name
-        applyGeneratedName(villager);
     }
     
     /**
@@ -82,9 +112,10 @@ public class VillagerListener implements Listener {
         
         ZombieVillager zombieVillager = (ZombieVillager) event.getEntity();
         Villager villager = (Villager) event.getTransformedEntity();
+        plugin.getMetrics().countCure();
         
         // Check if zombie villager had a stored name
-        String storedName = getStoredName(zombieVillager);
+        String storedName = plugin.getNameStore().getStoredName(zombieVillager);
         
         if (storedName != null) {
             // Preserve the name if rename-on-cure is false
@@ -93,60 +124,197 @@ public class VillagerListener implements Listener {
                 if (plugin.getConfigManager().isDebugEnabled()) {
                     plugin.getLogger().info("Preserving villager name after cure: " + storedName);
                 }
+                plugin.getNameRegistry().remove(zombieVillager.getUniqueId());
+                plugin.getNameRegistry().record(villager, storedName);
+                
+                // The cured villager joins the world after this event
+                plugin.getTaskScheduler().runFor(villager, () -> {
+                    if (villager.isValid()) {
+                        plugin.getNametagManager().track(villager);
+                        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+                        if (pools.isFamilySurnames()) {
+                            plugin.getFamilyIndex().track(pools, villager, plugin.getNameStore().getComponents(villager));
+                        }
+                    }
+                });
                 return;
             }
         }
         
         // Generate a new name if rename-on-cure is true or no name existed
-        if (plugin.getConfigManager().isAutoNamingEnabled()) {
-            // Delay name application by 1 tick to ensure entity is fully transformed
-            plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
-                if (villager.isValid() && !villager.isDead()) {
-                    applyGeneratedName(villager);
-                }
-            }, 1L);
+        NamingPolicy policy = plugin.getConfigManager().getSnapshot().getNamingPolicy();
+        if (policy.allows(EntityType.VILLAGER, CreatureSpawnEvent.SpawnReason.CURED)
+                && policy.allowsWorld(villager.getWorld()) && !policy.isBypassed(villager.getLocation(), plugin.getBypassTracker())) {
+            // The queue drains on a later tick, once the entity is fully transformed
+            plugin.getNamingQueue().enqueue(villager, NamingQueue.CURE);
         }
     }
     
     /**
-     * Applies a generated name to a villager
+     * Passes a parent's surname on to a villager born from breeding
+     * 
+     * The child is named a few ticks after it spawns and picks the surname up then.
      */
-    private void applyGeneratedName(Villager villager) {
-        String name = plugin.getNameGenerator().generateName(villager);
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onVillagerBreed(EntityBreedEvent event) {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        if (event.getEntityType() != EntityType.VILLAGER || !pools.isFamilySurnames()) {
+            return;
+        }
         
-        // Store the name in PDC
-        storeCustomName(villager, name);
+        // Either parent may pass on the surname; fall back to the other if the first has none
+        NameStore store = plugin.getNameStore();
+        boolean motherFirst = ThreadLocalRandom.current().nextBoolean();
+        long first = store.getComponents(motherFirst ? event.getMother() : event.getFather());
+        long second = store.getComponents(motherFirst ? event.getFather() : event.getMother());
+        plugin.getFamilyIndex().expectChild(pools, event.getEntity(),
+            NameComponents.surname(first) != 0 ? first : second);
+    }
+    
+    /**
+     * Marks a villager's title as stale when it changes profession
+     * 
+     * The event fires before the change; the queue renders the title on a
+     * later tick, once the new profession is set.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCareerChange(VillagerCareerChangeEvent event) {
+        markTitleDirty(event.getEntity());
+    }
+    
+    /**
+     * Marks a villager's title as stale when it gains trades, which happens on level-up
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onAcquireTrade(VillagerAcquireTradeEvent event) {
+        if (event.getEntity() instanceof Villager) {
+            markTitleDirty((Villager) event.getEntity());
+        }
+    }
+    
+    /**
+     * Queues a title refresh if the villager's name depends on its profession or level
+     */
+    private void markTitleDirty(Villager villager) {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        if (!pools.hasDynamicTemplates()) {
+            return;
+        }
         
-        // Apply the name as the villager's custom name
-        villager.setCustomName(name);
-        villager.setCustomNameVisible(true);
+        // Only generated names have a title to refresh
+        if (plugin.getNameStore().getComponents(villager) != NameComponents.NONE) {
+            plugin.getNamingQueue().enqueue(villager, NamingQueue.REFRESH);
+        }
+    }
+    
+    /**
+     * Rebuilds the uniqueness index from PDC data, refreshes registry
+     * positions and queues unnamed villagers as chunks load
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesLoad(EntitiesLoadEvent event) {
+        NamePoolSnapshot pools = plugin.getConfigManager().getSnapshot();
+        boolean backfill = pools.isBackfillEnabled() && pools.isAutoNamingEnabled()
+            && pools.getNamingPolicy().allowsWorld(event.getWorld());
+        NameStore store = plugin.getNameStore();
+        NameUniquenessIndex index = plugin.getUniquenessIndex();
+        NameRegistry registry = plugin.getNameRegistry();
+        NametagManager nametags = plugin.getNametagManager();
+        FamilyIndex families = plugin.getFamilyIndex();
         
-        if (plugin.getConfigManager().isDebugEnabled()) {
-            plugin.getLogger().info("Generated name for villager: " + name);
+        for (Entity entity : event.getEntities()) {
+            if (entity.getType() != EntityType.VILLAGER) {
+                continue;
+            }
+            
+            // Convert names stored in the other format, drop components the pools no longer
+            // match, then render names the config has outdated
+            Villager villager = (Villager) entity;
+            store.migrate(villager);
+            store.verify(villager);
+            String name = store.getStoredName(villager);
+            if (store.isStale(villager) || name == null && store.getComponents(villager) != NameComponents.NONE) {
+                plugin.getNamingQueue().enqueue(villager, NamingQueue.REFRESH);
+            }
+            
+            if (name == null) {
+                // Villagers from before the plugin, or from while auto-naming was off
+                if (backfill && villager.customName() == null && !store.hasStoredName(villager)) {
+                    plugin.getNamingQueue().enqueue(villager, NamingQueue.BACKFILL);
+                }
+                continue;
+            }
+            registry.record(entity, name);
+            nametags.track(villager);
+            if (pools.isUniqueNames()) {
+                index.track(pools, plugin.getNameGenerator().getTemplate(pools, villager), entity, store.getComponents(entity));
+            }
+            if (pools.isFamilySurnames()) {
+                families.track(pools, entity, store.getComponents(entity));
+            }
+        }
+    }
+    
+    /**
+     * Releases the names of villagers whose chunk unloads and records where
+     * they were left
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onEntitiesUnload(EntitiesUnloadEvent event) {
+        NameStore store = plugin.getNameStore();
+        NameUniquenessIndex index = plugin.getUniquenessIndex();
+        NameRegistry registry = plugin.getNameRegistry();
+        NametagManager nametags = plugin.getNametagManager();
+        FamilyIndex families = plugin.getFamilyIndex();
+        
+        for (Entity entity : event.getEntities()) {
+            if (entity.getType() != EntityType.VILLAGER) {
+                continue;
+            }
+            
+            index.untrack(entity);
+            nametags.untrack(entity);
+            families.untrack(entity);
+            String name = store.getStoredName(entity);
+            if (name != null) {
+                registry.record(entity, name);
+            }
         }
     }
     
     /**
-     * Checks if a villager has a custom name stored in PDC
+     * Releases the name of a villager that died
      */
-    private boolean hasCustomName(Villager villager) {
-        PersistentDataContainer pdc = villager.getPersistentDataContainer();
-        return pdc.has(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING);
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onVillagerDeath(EntityDeathEvent event) {
+        if (event.getEntityType() == EntityType.VILLAGER) {
+            plugin.getUniquenessIndex().untrack(event.getEntity());
+            plugin.getNametagManager().untrack(event.getEntity());
+            plugin.getFamilyIndex().untrack(event.getEntity());
+            plugin.getNameRegistry().remove(event.getEntity().getUniqueId());
+        }
     }
     
     /**
-     * Gets the stored custom name from PDC
+     * Drops villagers turned into zombie villagers from the registry
      */
-    private String getStoredName(org.bukkit.entity.Entity entity) {
-        PersistentDataContainer pdc = entity.getPersistentDataContainer();
-        return pdc.get(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING);
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onVillagerInfected(EntityTransformEvent event) {
+        if (event.getEntity().getType() == EntityType.VILLAGER) {
+            plugin.getUniquenessIndex().untrack(event.getEntity());
+            plugin.getNametagManager().untrack(event.getEntity());
+            plugin.getFamilyIndex().untrack(event.getEntity());
+            plugin.getNameRegistry().remove(event.getEntity().getUniqueId());
+        }
     }
     
     /**
-     * Stores a custom name in the villager's PDC
+     * Drops the uniqueness, nametag and family data of an unloaded world
      */
-    private void storeCustomName(Villager villager, String name) {
-        PersistentDataContainer pdc = villager.getPersistentDataContainer();
-        pdc.set(NamedVillagers.getCustomNameKey(), PersistentDataType.STRING, name);
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldUnload(WorldUnloadEvent event) {
+        plugin.getUniquenessIndex().clearWorld(event.getWorld());
+        plugin.getNametagManager().clearWorld(event.getWorld());
+        plugin.getFamilyIndex().clearWorld(event.getWorld());
     }
 }
@@ -0,0 +1,66 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.entity.Villager;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.entity.EntityEvent;
+
+/**
+ * Called after NamedVillagers gave a villager a name
+ * 
+ * Only called while a listener is registered for it.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class VillagerNamedEvent extends EntityEvent {
+    
+    private static final HandlerList HANDLERS = new HandlerList();
+    
+    private final String name;
+    private final NameCause cause;
+    
+    public VillagerNamedEvent(Villager villager, String name, NameCause cause) {
+        super(villager);
+        this.name = name;
+        this.cause = cause;
+    }
+    
+    @Override
+    public Villager getEntity() {
+        return (Villager) entity;
+    }
+    
+    /**
+     * Gets the name that was applied
+     * 
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Gets why the villager was named
+     * 
+     * @return The cause
+     */
+    public NameCause getCause() {
+        return cause;
+    }
+    
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+    
+    /**
+     * Checks if any plugin listens for the event, so it is only built when needed
+     */
+    static boolean hasListeners() {
+        return HANDLERS.getRegisteredListeners().length > 0;
+    }
+}
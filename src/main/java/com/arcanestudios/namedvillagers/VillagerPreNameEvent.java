@@ -0,0 +1,79 @@
+package com.arcanestudios.namedvillagers;
+
+import org.bukkit.entity.Villager;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.entity.EntityEvent;
+
+/**
+ * Called before NamedVillagers gives a villager a name
+ * 
+ * Cancelling keeps the villager's current name. Only called while a listener
+ * is registered for it.
+ * 
+ * @author Arcane Studios
+ * @version 1.0.0
+ */
+public class VillagerPreNameEvent extends EntityEvent implements Cancellable {
+    
+    private static final HandlerList HANDLERS = new HandlerList();
+    
+    private final String name;
+    private final NameCause cause;
+    private boolean cancelled;
+    
+    public VillagerPreNameEvent(Villager villager, String name, NameCause cause) {
+        super(villager);
+        this.name = name;
+        this.cause = cause;
+    }
+    
+    @Override
+    public Villager getEntity() {
+        return (Villager) entity;
+    }
+    
+    /**
+     * Gets the name about to be applied
+     * 
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * Gets why the villager is being named
+     * 
+     * @return The cause
+     */
+    public NameCause getCause() {
+        return cause;
+    }
+    
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    @Override
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+    
+    @Override
+    public HandlerList getHandlers() {
+        return HANDLERS;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return HANDLERS;
+    }
+    
+    /**
+     * Checks if any plugin listens for the event, so it is only built when needed
+     */
+    static boolean hasListeners() {
+        return HANDLERS.getRegisteredListeners().length > 0;
+    }
+}